@@ -1,15 +1,39 @@
 package org.pl.controller;
 
 
+import org.pl.exception.AccountNotFoundException;
+import org.pl.exception.HoldNotFoundException;
+import org.pl.exception.InsufficientFundsException;
+import org.pl.exception.JournalUnavailableException;
+import org.pl.exception.VersionConflictException;
+import org.pl.hold.CapturedHold;
+import org.pl.hold.FundsHold;
+import org.pl.payment_service.server.payment.model.BalanceDebitRequest;
 import org.pl.payment_service.server.payment.model.BalanceResponse;
+import org.pl.payment_service.server.payment.model.BalanceAmountItem;
 import org.pl.payment_service.server.payment.model.BalanceUpdateRequest;
+import org.pl.payment_service.server.payment.model.BulkAmountRequest;
+import org.pl.payment_service.server.payment.model.BulkBalanceQueryRequest;
+import org.pl.payment_service.server.payment.model.BulkBalanceResponse;
+import org.pl.payment_service.server.payment.model.BulkBalanceResult;
+import org.pl.payment_service.server.payment.model.ErrorResponse;
+import org.pl.payment_service.server.payment.model.HoldRequest;
+import org.pl.payment_service.server.payment.model.HoldResponse;
+import org.pl.repository.AccountBalance;
+import org.pl.repository.AccountLedger;
+import org.pl.repository.BulkOutcome;
 import org.pl.service.UserBalanceService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 //import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.math.BigDecimal;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
 
 @RestController
 class UserBalanceController implements org.pl.payment_service.server.payment.api.DefaultApi {
@@ -23,24 +47,207 @@ class UserBalanceController implements org.pl.payment_service.server.payment.api
     @Override
 //    @PreAuthorize("hasAuthority('SERVICE')")
     public ResponseEntity<BalanceResponse> getUserBalance(Long userId) {
-        BigDecimal balance = userBalanceService.getUserBalance(userId);
-        BalanceResponse balanceResponse = new BalanceResponse();
-        balanceResponse.setUserId(userId);
-        balanceResponse.setBalance(balance);
-        return new ResponseEntity<>(balanceResponse, HttpStatus.OK);
+        return toResponse(userId, userBalanceService.getAccountBalance(userId));
     }
 
     @Override
 //    @PreAuthorize("hasAuthority('SERVICE')")
     public ResponseEntity<BalanceResponse> updateUserBalance(
             Long userId,
-            BalanceUpdateRequest balanceUpdateRequest
+            BalanceUpdateRequest balanceUpdateRequest,
+            String ifMatch
+    ) {
+        BigDecimal newBalance = balanceUpdateRequest.getBalance();
+        AccountBalance accountBalance = ifMatch == null || ifMatch.isBlank()
+                ? userBalanceService.updateUserBalance(userId, newBalance)
+                : userBalanceService.updateUserBalance(userId, newBalance, parseVersion(ifMatch));
+        return toResponse(userId, accountBalance);
+    }
+
+    @Override
+//    @PreAuthorize("hasAuthority('SERVICE')")
+    public ResponseEntity<BalanceResponse> debitUserBalance(
+            Long userId,
+            BalanceDebitRequest balanceDebitRequest
     ) {
-        BigDecimal balance = userBalanceService.getUserBalance(userId);
+        return toResponse(userId, userBalanceService.debitUserBalance(userId, balanceDebitRequest.getAmount()));
+    }
+
+    @Override
+//    @PreAuthorize("hasAuthority('SERVICE')")
+    public ResponseEntity<HoldResponse> holdUserBalance(Long userId, HoldRequest holdRequest) {
+        FundsHold hold = userBalanceService.holdUserBalance(
+                userId, holdRequest.getAmount(), holdRequest.getTtlSeconds());
+
+        HoldResponse holdResponse = new HoldResponse();
+        holdResponse.setHoldId(hold.id());
+        holdResponse.setUserId(hold.userId());
+        holdResponse.setAmount(AccountLedger.toAmount(hold.cents()));
+        holdResponse.setAvailable(AccountLedger.toAmount(hold.available()));
+        holdResponse.setExpiresAt(hold.expiresAt().atOffset(ZoneOffset.UTC));
+        return new ResponseEntity<>(holdResponse, HttpStatus.CREATED);
+    }
+
+    @Override
+//    @PreAuthorize("hasAuthority('SERVICE')")
+    public ResponseEntity<BalanceResponse> captureHold(UUID holdId) {
+        CapturedHold captured = userBalanceService.captureHold(holdId);
+        return toResponse(captured.hold().userId(), captured.balance());
+    }
+
+    @Override
+//    @PreAuthorize("hasAuthority('SERVICE')")
+    public ResponseEntity<Void> releaseHold(UUID holdId) {
+        userBalanceService.releaseHold(holdId);
+        return ResponseEntity.noContent().build();
+    }
+
+    @Override
+//    @PreAuthorize("hasAuthority('SERVICE')")
+    public ResponseEntity<BulkBalanceResponse> getUserBalances(BulkBalanceQueryRequest bulkBalanceQueryRequest) {
+        List<Long> userIds = bulkBalanceQueryRequest.getUserIds();
+        return toBulkResponse(userIds, userBalanceService.getUserBalances(userIds));
+    }
+
+    @Override
+//    @PreAuthorize("hasAuthority('SERVICE')")
+    public ResponseEntity<BulkBalanceResponse> debitUserBalances(BulkAmountRequest bulkAmountRequest) {
+        List<Long> userIds = userIds(bulkAmountRequest);
+        return toBulkResponse(userIds, userBalanceService.debitUserBalances(
+                bulkAmountRequest.getRequestId(), userIds, amounts(bulkAmountRequest)));
+    }
+
+    @Override
+//    @PreAuthorize("hasAuthority('SERVICE')")
+    public ResponseEntity<BulkBalanceResponse> creditUserBalances(BulkAmountRequest bulkAmountRequest) {
+        List<Long> userIds = userIds(bulkAmountRequest);
+        return toBulkResponse(userIds, userBalanceService.creditUserBalances(
+                bulkAmountRequest.getRequestId(), userIds, amounts(bulkAmountRequest)));
+    }
+
+    @ExceptionHandler(AccountNotFoundException.class)
+    public ResponseEntity<ErrorResponse> handleAccountNotFound(AccountNotFoundException e) {
+        ErrorResponse errorResponse = new ErrorResponse();
+        errorResponse.setCode("USER_NOT_FOUND");
+        errorResponse.setMessage(e.getMessage());
+        return new ResponseEntity<>(errorResponse, HttpStatus.NOT_FOUND);
+    }
+
+    @ExceptionHandler(HoldNotFoundException.class)
+    public ResponseEntity<ErrorResponse> handleHoldNotFound(HoldNotFoundException e) {
+        ErrorResponse errorResponse = new ErrorResponse();
+        errorResponse.setCode("HOLD_NOT_FOUND");
+        errorResponse.setMessage(e.getMessage());
+        return new ResponseEntity<>(errorResponse, HttpStatus.NOT_FOUND);
+    }
+
+    @ExceptionHandler(InsufficientFundsException.class)
+    public ResponseEntity<ErrorResponse> handleInsufficientFunds(InsufficientFundsException e) {
+        ErrorResponse errorResponse = new ErrorResponse();
+        errorResponse.setCode("INSUFFICIENT_FUNDS");
+        errorResponse.setMessage(e.getMessage());
+        errorResponse.setBalance(e.getCurrentBalance());
+        return new ResponseEntity<>(errorResponse, HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(VersionConflictException.class)
+    public ResponseEntity<ErrorResponse> handleVersionConflict(VersionConflictException e) {
+        ErrorResponse errorResponse = new ErrorResponse();
+        errorResponse.setCode("VERSION_CONFLICT");
+        errorResponse.setMessage(e.getMessage());
+        return new ResponseEntity<>(errorResponse, HttpStatus.PRECONDITION_FAILED);
+    }
+
+    @ExceptionHandler(JournalUnavailableException.class)
+    public ResponseEntity<ErrorResponse> handleJournalUnavailable(JournalUnavailableException e) {
+        ErrorResponse errorResponse = new ErrorResponse();
+        errorResponse.setCode("JOURNAL_UNAVAILABLE");
+        errorResponse.setMessage(e.getMessage());
+        return new ResponseEntity<>(errorResponse, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<ErrorResponse> handleIllegalArgument(IllegalArgumentException e) {
+        ErrorResponse errorResponse = new ErrorResponse();
+        errorResponse.setCode("INVALID_REQUEST");
+        errorResponse.setMessage(e.getMessage());
+        return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * Ответ с балансом; версия передаётся и в теле, и в заголовке ETag
+     */
+    private ResponseEntity<BalanceResponse> toResponse(Long userId, AccountBalance accountBalance) {
         BalanceResponse balanceResponse = new BalanceResponse();
         balanceResponse.setUserId(userId);
-        balanceResponse.setBalance(balance);
-        userBalanceService.updateUserBalance(userId, balanceUpdateRequest.getBalance());
-        return new ResponseEntity<>(balanceResponse, (HttpStatus.OK));
+        balanceResponse.setBalance(AccountLedger.toAmount(accountBalance.cents()));
+        balanceResponse.setVersion(accountBalance.version());
+        return ResponseEntity.ok()
+                .eTag(String.valueOf(accountBalance.version()))
+                .body(balanceResponse);
+    }
+
+    private static List<Long> userIds(BulkAmountRequest bulkAmountRequest) {
+        List<Long> userIds = new ArrayList<>(bulkAmountRequest.getItems().size());
+        for (BalanceAmountItem item : bulkAmountRequest.getItems()) {
+            userIds.add(item.getUserId());
+        }
+        return userIds;
+    }
+
+    private static List<BigDecimal> amounts(BulkAmountRequest bulkAmountRequest) {
+        List<BigDecimal> amounts = new ArrayList<>(bulkAmountRequest.getItems().size());
+        for (BalanceAmountItem item : bulkAmountRequest.getItems()) {
+            amounts.add(item.getAmount());
+        }
+        return amounts;
+    }
+
+    /**
+     * Результаты пакетной операции в порядке запроса; коды статусов совпадают с кодами ошибок одиночных операций
+     */
+    private ResponseEntity<BulkBalanceResponse> toBulkResponse(List<Long> userIds, BulkOutcome[] outcomes) {
+        List<BulkBalanceResult> results = new ArrayList<>(outcomes.length);
+        for (int i = 0; i < outcomes.length; i++) {
+            BulkOutcome outcome = outcomes[i];
+            BulkBalanceResult result = new BulkBalanceResult();
+            result.setUserId(userIds.get(i));
+            switch (outcome.status()) {
+                case OK -> {
+                    result.setStatus(BulkBalanceResult.StatusEnum.OK);
+                    result.setBalance(AccountLedger.toAmount(outcome.cents()));
+                    result.setVersion(outcome.version());
+                }
+                case INSUFFICIENT_FUNDS -> {
+                    result.setStatus(BulkBalanceResult.StatusEnum.INSUFFICIENT_FUNDS);
+                    result.setBalance(AccountLedger.toAmount(outcome.cents()));
+                }
+                case ACCOUNT_NOT_FOUND -> result.setStatus(BulkBalanceResult.StatusEnum.USER_NOT_FOUND);
+                case INVALID_AMOUNT -> result.setStatus(BulkBalanceResult.StatusEnum.INVALID_REQUEST);
+                case JOURNAL_UNAVAILABLE -> result.setStatus(BulkBalanceResult.StatusEnum.JOURNAL_UNAVAILABLE);
+            }
+            results.add(result);
+        }
+        BulkBalanceResponse bulkBalanceResponse = new BulkBalanceResponse();
+        bulkBalanceResponse.setResults(results);
+        return ResponseEntity.ok(bulkBalanceResponse);
+    }
+
+    /**
+     * Версия из If-Match: "17", W/"17" или 17
+     */
+    private long parseVersion(String ifMatch) {
+        String value = ifMatch.trim();
+        if (value.startsWith("W/")) {
+            value = value.substring(2);
+        }
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            value = value.substring(1, value.length() - 1);
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("If-Match должен содержать версию баланса: " + ifMatch);
+        }
     }
-}
\ No newline at end of file
+}
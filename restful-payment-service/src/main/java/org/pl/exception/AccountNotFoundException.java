@@ -0,0 +1,10 @@
+package org.pl.exception;
+
+/**
+ * Счёт пользователя не найден
+ */
+public class AccountNotFoundException extends RuntimeException {
+    public AccountNotFoundException(Long userId) {
+        super("User not found: " + userId);
+    }
+}
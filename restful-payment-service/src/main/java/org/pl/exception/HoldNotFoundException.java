@@ -0,0 +1,12 @@
+package org.pl.exception;
+
+import java.util.UUID;
+
+/**
+ * Удержание не найдено: неизвестный id, уже списано, снято или истекло
+ */
+public class HoldNotFoundException extends RuntimeException {
+    public HoldNotFoundException(UUID holdId) {
+        super("Hold not found: " + holdId);
+    }
+}
@@ -0,0 +1,19 @@
+package org.pl.exception;
+
+import java.math.BigDecimal;
+
+/**
+ * Списание отклонено: баланс меньше суммы списания. Баланс при этом не изменяется
+ */
+public class InsufficientFundsException extends RuntimeException {
+    private final BigDecimal currentBalance;
+
+    public InsufficientFundsException(BigDecimal currentBalance, BigDecimal amount) {
+        super(String.format("Недостаточно средств. Баланс: %s, требуется: %s", currentBalance, amount));
+        this.currentBalance = currentBalance;
+    }
+
+    public BigDecimal getCurrentBalance() {
+        return currentBalance;
+    }
+}
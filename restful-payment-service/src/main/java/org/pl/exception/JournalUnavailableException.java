@@ -0,0 +1,11 @@
+package org.pl.exception;
+
+/**
+ * Журнал балансов не может подтвердить запись на диск. После такой ошибки счета не читаются и не меняются
+ * до перезапуска, который восстановит их из того, что журнал успел сохранить
+ */
+public class JournalUnavailableException extends RuntimeException {
+    public JournalUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,18 @@
+package org.pl.exception;
+
+/**
+ * Условное изменение отклонено: версия счёта изменилась с момента чтения
+ */
+public class VersionConflictException extends RuntimeException {
+    private final long currentVersion;
+
+    public VersionConflictException(Long userId, long expectedVersion, long currentVersion) {
+        super(String.format("Баланс пользователя %d изменён: ожидалась версия %d, текущая %d",
+                userId, expectedVersion, currentVersion));
+        this.currentVersion = currentVersion;
+    }
+
+    public long getCurrentVersion() {
+        return currentVersion;
+    }
+}
@@ -0,0 +1,9 @@
+package org.pl.hold;
+
+import org.pl.repository.AccountBalance;
+
+/**
+ * Результат capture: списанное удержание и баланс счёта после списания
+ */
+public record CapturedHold(FundsHold hold, AccountBalance balance) {
+}
@@ -0,0 +1,11 @@
+package org.pl.hold;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Удержание средств на счёте: сумма в копейках и срок, после которого удержание снимается автоматически.
+ * available - доступная сумма счёта сразу после удержания
+ */
+public record FundsHold(UUID id, long userId, long cents, long available, Instant expiresAt) {
+}
@@ -0,0 +1,188 @@
+package org.pl.hold;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.pl.exception.HoldNotFoundException;
+import org.pl.repository.AccountLedger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Открытые удержания средств. Удержание резервирует сумму в AccountLedger, capture списывает её,
+ * release и истечение срока возвращают её в доступные. Каждое удержание завершается ровно один раз:
+ * кто первым удалил его из таблицы (capture, release или колесо таймеров), тот и меняет счёт.
+ * <p>
+ * Сроки отслеживает TimerWheel, которое продвигает отдельный поток раз в тик, поэтому постановка
+ * удержания не сортирует очередь сроков. Удержания живут только в памяти: после перезапуска сервиса
+ * незавершённые удержания пропадают вместе с зарезервированными суммами, и capture отвечает HOLD_NOT_FOUND.
+ * <p>
+ * capture идемпотентен: результат списания хранится capturedRetentionSeconds, и повторный capture того же удержания
+ * (клиент не дождался ответа или получил 5xx) возвращает тот же баланс, не списывая второй раз.
+ * Параллельный повтор ждёт первый вызов. Результаты хранятся только в памяти: HOLD_NOT_FOUND означает, что
+ * по удержанию ничего не списано в текущем процессе. Если ответ на capture был потерян, а сервис затем перезапущен,
+ * повтор тоже получит HOLD_NOT_FOUND, хотя списание уже в журнале, поэтому клиент, не дождавшийся ответа
+ * на предыдущую попытку, должен считать исход неизвестным.
+ */
+@Component
+public class HoldRegistry {
+
+    private final AccountLedger accountLedger;
+    private final long defaultTtlSeconds;
+    private final long maxTtlSeconds;
+    private final long tickMillis;
+    private final long capturedRetentionMillis;
+    private final Map<UUID, FundsHold> holds = new ConcurrentHashMap<>();
+    private final Map<UUID, Capture> captures = new ConcurrentHashMap<>();
+    private final TimerWheel<UUID> expiryWheel;
+    private final ScheduledExecutorService expiryExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "hold-expiry");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Clock clock = Clock.systemUTC();
+
+    public HoldRegistry(
+            AccountLedger accountLedger,
+            @Value("${ledger.holds.default-ttl-seconds:300}") long defaultTtlSeconds,
+            @Value("${ledger.holds.max-ttl-seconds:3600}") long maxTtlSeconds,
+            @Value("${ledger.holds.wheel.tick-millis:100}") long tickMillis,
+            @Value("${ledger.holds.wheel.slots:512}") int slots,
+            @Value("${ledger.holds.captured-retention-seconds:3600}") long capturedRetentionSeconds
+    ) {
+        this.accountLedger = accountLedger;
+        this.defaultTtlSeconds = defaultTtlSeconds;
+        this.maxTtlSeconds = maxTtlSeconds;
+        this.tickMillis = tickMillis;
+        this.capturedRetentionMillis = capturedRetentionSeconds * 1000;
+        this.expiryWheel = new TimerWheel<>(tickMillis, slots, clock.millis());
+    }
+
+    @PostConstruct
+    public void start() {
+        expiryExecutor.scheduleWithFixedDelay(this::expireDue, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Удерживает сумму на счёте; ttlSeconds == null - срок по умолчанию
+     */
+    public FundsHold hold(long userId, long cents, Integer ttlSeconds) {
+        long ttl = ttlSeconds == null ? defaultTtlSeconds : ttlSeconds;
+        if (ttl <= 0 || ttl > maxTtlSeconds) {
+            throw new IllegalArgumentException("Срок удержания должен быть от 1 до " + maxTtlSeconds + " секунд: " + ttl);
+        }
+        long available = accountLedger.hold(userId, cents);
+        FundsHold hold = new FundsHold(UUID.randomUUID(), userId, cents, available, clock.instant().plusSeconds(ttl));
+        holds.put(hold.id(), hold);
+        expiryWheel.schedule(hold.id(), hold.expiresAt().toEpochMilli());
+        return hold;
+    }
+
+    /**
+     * Списывает удержанную сумму; истёкшее, но ещё не снятое колесом удержание не списывается.
+     * Повторный capture уже списанного удержания возвращает результат первого
+     */
+    public CapturedHold capture(UUID holdId) {
+        long now = clock.millis();
+        Capture capture = new Capture(new CompletableFuture<>(), now + capturedRetentionMillis);
+        Capture existing = captures.putIfAbsent(holdId, capture);
+        if (existing != null) {
+            return existing.await();
+        }
+        FundsHold hold = holds.remove(holdId);
+        if (hold == null || now >= hold.expiresAt().toEpochMilli()) {
+            // Ничего не списано: повтор снова ответит HOLD_NOT_FOUND
+            captures.remove(holdId);
+            HoldNotFoundException notFound = new HoldNotFoundException(holdId);
+            capture.result().completeExceptionally(notFound);
+            if (hold != null) {
+                accountLedger.release(hold.userId(), hold.cents());
+            }
+            throw notFound;
+        }
+        expiryWheel.schedule(holdId, capture.retainUntilMillis());
+        try {
+            CapturedHold captured = new CapturedHold(hold, accountLedger.capture(hold.userId(), hold.cents()));
+            capture.result().complete(captured);
+            return captured;
+        } catch (RuntimeException e) {
+            // Списание могло остаться неподтверждённым журналом: повторы получают ту же ошибку, а не HOLD_NOT_FOUND
+            capture.result().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public void release(UUID holdId) {
+        FundsHold hold = take(holdId);
+        accountLedger.release(hold.userId(), hold.cents());
+    }
+
+    public int size() {
+        return holds.size();
+    }
+
+    /**
+     * Снимает удержания, срок которых наступил, и забывает результаты списаний старше capturedRetentionSeconds.
+     * Таймеры уже завершённых удержаний просто пропускаются
+     */
+    void expireDue() {
+        try {
+            long now = clock.millis();
+            expiryWheel.advance(now, holdId -> {
+                FundsHold hold = holds.remove(holdId);
+                if (hold != null) {
+                    accountLedger.release(hold.userId(), hold.cents());
+                    System.out.println("Удержание " + holdId + " истекло, возвращено "
+                            + AccountLedger.toAmount(hold.cents()) + " на счёт " + hold.userId());
+                }
+                captures.computeIfPresent(holdId, (id, capture) -> capture.retainUntilMillis() <= now ? null : capture);
+            });
+        } catch (RuntimeException e) {
+            // Исключение остановило бы периодическую задачу, и удержания перестали бы истекать
+            System.err.println("Ошибка при снятии истёкших удержаний: " + e.getMessage());
+        }
+    }
+
+    void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    @PreDestroy
+    public void close() {
+        expiryExecutor.shutdownNow();
+    }
+
+    /**
+     * Списание удержания: результат или ошибка первого вызова и срок, до которого его помнить
+     */
+    private record Capture(CompletableFuture<CapturedHold> result, long retainUntilMillis) {
+
+        CapturedHold await() {
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+    }
+
+    private FundsHold take(UUID holdId) {
+        FundsHold hold = holds.remove(holdId);
+        if (hold == null) {
+            throw new HoldNotFoundException(holdId);
+        }
+        return hold;
+    }
+}
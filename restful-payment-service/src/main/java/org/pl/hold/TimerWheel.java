@@ -0,0 +1,76 @@
+package org.pl.hold;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Хешированное колесо таймеров: время делится на тики, каждый тик попадает в ячейку (tick mod slots).
+ * Постановка таймера - добавление в список ячейки за O(1), продвижение на тик обходит одну ячейку;
+ * таймер дальше одного оборота колеса лежит в своей ячейке, пока его срок не наступит.
+ * Отмены нет: владелец таймера сам проверяет при срабатывании, актуален ли он ещё.
+ */
+public class TimerWheel<T> {
+
+    private final long tickMillis;
+    private final List<Timer<T>>[] slots;
+    private final int mask;
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public TimerWheel(long tickMillis, int slots, long startMillis) {
+        if (tickMillis <= 0 || slots <= 0) {
+            throw new IllegalArgumentException("Тик и число ячеек колеса должны быть положительными");
+        }
+        int count = Integer.highestOneBit(slots * 2 - 1);
+        this.tickMillis = tickMillis;
+        this.slots = new List[count];
+        for (int i = 0; i < count; i++) {
+            this.slots[i] = new ArrayList<>();
+        }
+        this.mask = count - 1;
+        this.currentTick = startMillis / tickMillis;
+    }
+
+    /**
+     * Ставит таймер на момент deadlineMillis; просроченный срабатывает на ближайшем тике
+     */
+    public synchronized void schedule(T item, long deadlineMillis) {
+        long tick = Math.max(Math.ceilDiv(deadlineMillis, tickMillis), currentTick + 1);
+        slots[(int) tick & mask].add(new Timer<>(item, tick));
+        size++;
+    }
+
+    /**
+     * Продвигает колесо до момента nowMillis и передаёт в expired все таймеры, срок которых наступил.
+     * После долгой паузы обходится не больше одного оборота: каждая ячейка проверяется один раз
+     */
+    public void advance(long nowMillis, Consumer<T> expired) {
+        List<T> due = new ArrayList<>();
+        synchronized (this) {
+            long targetTick = nowMillis / tickMillis;
+            long ticks = Math.min(targetTick - currentTick, slots.length);
+            for (long i = 1; i <= ticks; i++) {
+                slots[(int) (currentTick + i) & mask].removeIf(timer -> {
+                    if (timer.tick > targetTick) {
+                        return false;
+                    }
+                    due.add(timer.item);
+                    return true;
+                });
+            }
+            currentTick = Math.max(currentTick, targetTick);
+            size -= due.size();
+        }
+        // Обработчики вызываются без блокировки колеса: они могут ставить новые таймеры
+        due.forEach(expired);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private record Timer<T>(T item, long tick) {
+    }
+}
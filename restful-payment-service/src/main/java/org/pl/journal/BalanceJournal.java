@@ -0,0 +1,50 @@
+package org.pl.journal;
+
+import java.util.function.Consumer;
+
+/**
+ * Журнал изменений балансов, в котором AccountLedger хранит состояние счетов.
+ * Каждая запись - итоговый баланс счёта после изменения, поэтому повтор записей идемпотентен.
+ * Номер записи возрастает и служит версией счёта: версия - номер записи его последнего изменения.
+ * append вызывается под блокировкой счёта и только добавляет запись в журнал;
+ * ждать записи на диск нужно отдельно через awaitDurable, уже без блокировки счёта.
+ * После ошибки записи на диск журнал становится недоступным навсегда: append и awaitDurable бросают
+ * JournalUnavailableException, isAvailable возвращает false.
+ */
+public interface BalanceJournal {
+
+    /**
+     * Восстанавливает счета при старте: передаёт в visitor содержимое снимка и записи журнала после него
+     */
+    void recover(AccountVisitor visitor);
+
+    /**
+     * Источник данных для снимков: обходит все счета. Регистрируется после recover
+     */
+    void registerSnapshotSource(Consumer<AccountVisitor> accounts);
+
+    /**
+     * Добавляет запись о новом балансе счёта и возвращает её номер
+     */
+    long append(long userId, long cents);
+
+    /**
+     * Ждёт, пока запись с номером seq и все предыдущие окажутся на диске
+     */
+    void awaitDurable(long seq);
+
+    /**
+     * true, если запись seq уже на диске; после ошибки журнала отделяет сохранённые записи от потерянных
+     */
+    boolean isDurable(long seq);
+
+    /**
+     * false после ошибки записи или закрытия журнала: новые записи не будут сохранены
+     */
+    boolean isAvailable();
+
+    @FunctionalInterface
+    interface AccountVisitor {
+        void accept(long userId, long cents, long version);
+    }
+}
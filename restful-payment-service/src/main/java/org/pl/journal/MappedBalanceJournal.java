@@ -0,0 +1,554 @@
+package org.pl.journal;
+
+import jakarta.annotation.PreDestroy;
+import org.pl.exception.JournalUnavailableException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Журнал балансов на диске: сегменты фиксированного размера, отображённые в память (MappedByteBuffer),
+ * и периодические снимки всех счетов.
+ * <p>
+ * Запись - 32 байта: номер, id счёта, баланс в копейках, CRC32 этих 24 байт. При восстановлении сегмент читается
+ * до первой записи с неверной контрольной суммой, поэтому недописанная при сбое запись отбрасывается.
+ * <p>
+ * fsync выполняет один фоновый поток: за один force() на диск уходят все записи, добавленные к этому моменту,
+ * так что параллельные запросы делят одну синхронизацию (group commit).
+ * <p>
+ * Снимок (id, баланс и версия каждого счёта) пишется в фоне каждые snapshotEvery записей: текущий сегмент
+ * закрывается, счета обходятся без общей блокировки, и после записи снимка сегменты до него удаляются.
+ * Снимок становится видимым только после того, как все попавшие в него версии подтверждены на диске.
+ * Поскольку записи хранят итоговый баланс, изменения, попавшие в снимок и в журнал после него,
+ * при повторе дают то же состояние.
+ * Время восстановления пропорционально размеру снимка и хвоста журнала, а не всей истории.
+ * <p>
+ * Первая ошибка force() делает журнал недоступным: записи после последнего подтверждённого номера могли не попасть
+ * на диск, поэтому новые записи не принимаются, а ждущие подтверждения получают JournalUnavailableException.
+ */
+@Component
+@ConditionalOnProperty(name = "ledger.journal.enabled", havingValue = "true", matchIfMissing = true)
+public class MappedBalanceJournal implements BalanceJournal {
+
+    static final int RECORD_SIZE = 32;
+    private static final int PAYLOAD_SIZE = 24;
+    private static final long SNAPSHOT_MAGIC = 0x4C45444745525331L;
+    private static final int SNAPSHOT_ENTRY_SIZE = 24;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+
+    private final Path directory;
+    private final int segmentRecords;
+    private final long snapshotEvery;
+
+    // Добавление записей
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ByteBuffer payload = ByteBuffer.allocate(PAYLOAD_SIZE);
+    private final CRC32 crc = new CRC32();
+    private MappedByteBuffer segment;
+    private long segmentStartSeq;
+    private int segmentPosition;
+    private long nextSeq = 1;
+    private long lastSeq;
+
+    // Групповой fsync: ждущие потоки сообщают requestedSeq, фоновый поток поднимает durableSeq
+    private final Object durableMonitor = new Object();
+    private long requestedSeq;
+    private volatile long durableSeq;
+    private volatile boolean running;
+    private volatile Throwable failure;
+    private Thread flusher;
+    private final AtomicLong forceCount = new AtomicLong();
+
+    // Снимки
+    private final ExecutorService snapshotExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ledger-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean snapshotScheduled = new AtomicBoolean();
+    private volatile long snapshotSeq;
+    private volatile Consumer<AccountVisitor> snapshotSource;
+
+    public MappedBalanceJournal(
+            @Value("${ledger.journal.dir:data/journal}") String directory,
+            @Value("${ledger.journal.segment-records:1048576}") int segmentRecords,
+            @Value("${ledger.journal.snapshot-every:1000000}") long snapshotEvery
+    ) {
+        this.directory = Path.of(directory);
+        this.segmentRecords = segmentRecords;
+        this.snapshotEvery = snapshotEvery;
+        try {
+            Files.createDirectories(this.directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось создать каталог журнала " + directory, e);
+        }
+    }
+
+    @Override
+    public void recover(AccountVisitor visitor) {
+        long started = System.nanoTime();
+        long[] snapshot = loadSnapshot(visitor);
+        long fromSeq = snapshot[0];
+        // Нумерация продолжается и после версий из снимка: иначе новая запись получила бы версию,
+        // которую клиент уже видел у другого баланса, и устаревший If-Match совпал бы с ней
+        long last = Math.max(fromSeq - 1, snapshot[1]);
+        long replayed = 0;
+        for (Path path : files(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            long[] result = replaySegment(path, fromSeq, visitor);
+            last = Math.max(last, result[0]);
+            replayed += result[1];
+        }
+
+        appendLock.lock();
+        try {
+            snapshotSeq = fromSeq;
+            nextSeq = last + 1;
+            lastSeq = last;
+            durableSeq = last;
+            openSegment(nextSeq);
+        } finally {
+            appendLock.unlock();
+        }
+        System.out.println("Журнал балансов восстановлен: снимок с записи " + fromSeq + ", повторено записей "
+                + replayed + ", за " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + " мс");
+
+        running = true;
+        flusher = new Thread(this::flushLoop, "ledger-journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @Override
+    public void registerSnapshotSource(Consumer<AccountVisitor> accounts) {
+        this.snapshotSource = accounts;
+    }
+
+    @Override
+    public long append(long userId, long cents) {
+        appendLock.lock();
+        try {
+            if (segment == null) {
+                throw new IllegalStateException("Журнал балансов не восстановлен");
+            }
+            if (!isAvailable()) {
+                throw unavailable();
+            }
+            if (segmentPosition == segmentRecords) {
+                try {
+                    rollSegment();
+                } catch (RuntimeException e) {
+                    fail(e);
+                    throw unavailable();
+                }
+            }
+            long seq = nextSeq++;
+            payload.clear();
+            payload.putLong(seq).putLong(userId).putLong(cents).flip();
+            crc.reset();
+            crc.update(payload);
+
+            int offset = segmentPosition * RECORD_SIZE;
+            segment.put(offset, payload.array(), 0, PAYLOAD_SIZE);
+            segment.putInt(offset + PAYLOAD_SIZE, (int) crc.getValue());
+            segmentPosition++;
+            lastSeq = seq;
+            return seq;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public void awaitDurable(long seq) {
+        if (seq <= durableSeq) {
+            return;
+        }
+        synchronized (durableMonitor) {
+            if (seq > requestedSeq) {
+                requestedSeq = seq;
+                durableMonitor.notifyAll();
+            }
+            while (durableSeq < seq) {
+                if (failure != null || !running) {
+                    throw unavailable();
+                }
+                try {
+                    durableMonitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Прервано ожидание записи журнала", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Пишет снимок всех счетов и удаляет сегменты и снимки, которые он заменяет
+     */
+    void snapshot() {
+        Consumer<AccountVisitor> source = snapshotSource;
+        if (source == null || !isAvailable()) {
+            return;
+        }
+        long fromSeq;
+        appendLock.lock();
+        try {
+            // Все записи до fromSeq остаются в закрытых сегментах, которые снимок позволит удалить
+            if (segmentPosition > 0) {
+                rollSegment();
+            }
+            fromSeq = segmentStartSeq;
+        } finally {
+            appendLock.unlock();
+        }
+
+        Path target = directory.resolve(SNAPSHOT_PREFIX + number(fromSeq) + SNAPSHOT_SUFFIX);
+        Path temp = directory.resolve(SNAPSHOT_PREFIX + number(fromSeq) + ".tmp");
+        long[] count = {0};
+        long[] maxVersion = {0};
+        try {
+            try (FileOutputStream file = new FileOutputStream(temp.toFile());
+                 CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file, 1 << 16), new CRC32());
+                 DataOutputStream out = new DataOutputStream(checked)) {
+                out.writeLong(SNAPSHOT_MAGIC);
+                out.writeLong(fromSeq);
+                source.accept((userId, cents, version) -> {
+                    try {
+                        out.writeLong(userId);
+                        out.writeLong(cents);
+                        out.writeLong(version);
+                        count[0]++;
+                        maxVersion[0] = Math.max(maxVersion[0], version);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                out.writeLong(count[0]);
+                out.flush();
+                out.writeLong(checked.getChecksum().getValue());
+                out.flush();
+                file.getFD().sync();
+            }
+            // Счета копируются из памяти, где могут быть записи нового сегмента, ещё не синхронизированные с диском.
+            // Снимок публикуется только после их подтверждения: иначе после сбоя он сохранил бы изменение,
+            // о котором клиент не получил ответа, а при ошибке журнала - изменение, которое реестр откатит
+            awaitDurable(maxVersion[0]);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory();
+        } catch (IOException | UncheckedIOException | JournalUnavailableException e) {
+            System.out.println("Не удалось записать снимок балансов: " + e.getMessage());
+            deleteQuietly(temp);
+            return;
+        }
+        snapshotSeq = fromSeq;
+        System.out.println("Снимок балансов записан: счетов " + count[0] + ", с записи " + fromSeq);
+        deleteBefore(fromSeq);
+    }
+
+    @Override
+    public boolean isDurable(long seq) {
+        return seq <= durableSeq;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return running && failure == null;
+    }
+
+    long forceCount() {
+        return forceCount.get();
+    }
+
+    @PreDestroy
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        synchronized (durableMonitor) {
+            durableMonitor.notifyAll();
+        }
+        try {
+            flusher.join();
+            // Снимок в работе дописывается до конца: иначе файл .tmp останется, а старые сегменты не удалятся
+            snapshotExecutor.shutdown();
+            if (!snapshotExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+                System.out.println("Снимок балансов не завершился за минуту, журнал закрывается без него");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            return;
+        }
+        appendLock.lock();
+        try {
+            segment.force();
+            durableSeq = lastSeq;
+        } finally {
+            appendLock.unlock();
+        }
+        synchronized (durableMonitor) {
+            durableMonitor.notifyAll();
+        }
+    }
+
+    private void flushLoop() {
+        while (running) {
+            synchronized (durableMonitor) {
+                while (running && requestedSeq <= durableSeq) {
+                    try {
+                        durableMonitor.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+            if (!running) {
+                return;
+            }
+
+            long target;
+            MappedByteBuffer buffer;
+            appendLock.lock();
+            try {
+                target = lastSeq;
+                buffer = segment;
+            } finally {
+                appendLock.unlock();
+            }
+            try {
+                // Записи предыдущих сегментов уже на диске: rollSegment синхронизирует сегмент перед сменой
+                buffer.force();
+                forceCount.incrementAndGet();
+            } catch (RuntimeException e) {
+                fail(e);
+                return;
+            }
+            synchronized (durableMonitor) {
+                durableSeq = target;
+                durableMonitor.notifyAll();
+            }
+            if (target - snapshotSeq >= snapshotEvery && snapshotSource != null
+                    && snapshotScheduled.compareAndSet(false, true)) {
+                snapshotExecutor.execute(() -> {
+                    try {
+                        snapshot();
+                    } finally {
+                        snapshotScheduled.set(false);
+                    }
+                });
+            }
+        }
+    }
+
+    private void fail(RuntimeException e) {
+        System.out.println("Ошибка записи журнала балансов, журнал недоступен: " + e.getMessage());
+        synchronized (durableMonitor) {
+            failure = e;
+            durableMonitor.notifyAll();
+        }
+    }
+
+    private JournalUnavailableException unavailable() {
+        return new JournalUnavailableException("Журнал балансов недоступен", failure);
+    }
+
+    private void rollSegment() {
+        segment.force();
+        openSegment(nextSeq);
+    }
+
+    private void openSegment(long startSeq) {
+        Path path = directory.resolve(SEGMENT_PREFIX + number(startSeq) + SEGMENT_SUFFIX);
+        // Сегмент с таким началом может остаться только пустым: иначе восстановление продолжило бы нумерацию после него
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) segmentRecords * RECORD_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть сегмент журнала " + path, e);
+        }
+        syncDirectory();
+        segmentStartSeq = startSeq;
+        segmentPosition = 0;
+    }
+
+    /**
+     * Загружает самый новый целый снимок; возвращает {номер первой записи после него, наибольшую версию в нём}
+     * ({1, 0}, если снимка нет)
+     */
+    private long[] loadSnapshot(AccountVisitor visitor) {
+        List<Path> snapshots = files(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            Path path = snapshots.get(i);
+            try {
+                long fromSeq = verifySnapshot(path);
+                if (fromSeq < 0) {
+                    System.out.println("Снимок повреждён, пропускаем: " + path.getFileName());
+                    continue;
+                }
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+                    in.skipNBytes(16);
+                    long count = (Files.size(path) - 32) / SNAPSHOT_ENTRY_SIZE;
+                    long maxVersion = 0;
+                    for (long n = 0; n < count; n++) {
+                        long userId = in.readLong();
+                        long cents = in.readLong();
+                        long version = in.readLong();
+                        maxVersion = Math.max(maxVersion, version);
+                        visitor.accept(userId, cents, version);
+                    }
+                    return new long[]{fromSeq, maxVersion};
+                }
+            } catch (IOException e) {
+                System.out.println("Не удалось прочитать снимок " + path.getFileName() + ": " + e.getMessage());
+            }
+        }
+        return new long[]{1, 0};
+    }
+
+    /**
+     * Проверяет заголовок и CRC снимка; возвращает его номер записи или -1, если снимок повреждён
+     */
+    private long verifySnapshot(Path path) throws IOException {
+        long length = Files.size(path);
+        if (length < 32 || (length - 32) % SNAPSHOT_ENTRY_SIZE != 0) {
+            return -1;
+        }
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path), 1 << 16)) {
+            CheckedInputStream checked = new CheckedInputStream(in, new CRC32());
+            DataInputStream data = new DataInputStream(checked);
+            if (data.readLong() != SNAPSHOT_MAGIC) {
+                return -1;
+            }
+            long fromSeq = data.readLong();
+            data.skipNBytes(length - 32);
+            long count = data.readLong();
+            long expected = checked.getChecksum().getValue();
+            long stored = new DataInputStream(in).readLong();
+            return stored == expected && count == (length - 32) / SNAPSHOT_ENTRY_SIZE ? fromSeq : -1;
+        }
+    }
+
+    /**
+     * Повторяет записи сегмента с номером не меньше fromSeq; возвращает {последний номер, число повторённых}
+     */
+    private long[] replaySegment(Path path, long fromSeq, AccountVisitor visitor) {
+        long last = 0;
+        long replayed = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            byte[] record = new byte[PAYLOAD_SIZE];
+            CRC32 checksum = new CRC32();
+            for (int offset = 0; offset + RECORD_SIZE <= buffer.capacity(); offset += RECORD_SIZE) {
+                long seq = buffer.getLong(offset);
+                if (seq == 0) {
+                    break;
+                }
+                buffer.get(offset, record);
+                checksum.reset();
+                checksum.update(record);
+                if ((int) checksum.getValue() != buffer.getInt(offset + PAYLOAD_SIZE) || seq <= last) {
+                    System.out.println("Журнал " + path.getFileName() + ": запись " + seq + " не дописана, хвост отброшен");
+                    break;
+                }
+                last = seq;
+                if (seq >= fromSeq) {
+                    visitor.accept(buffer.getLong(offset + 8), buffer.getLong(offset + 16), seq);
+                    replayed++;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать сегмент журнала " + path, e);
+        }
+        return new long[]{last, replayed};
+    }
+
+    private void deleteBefore(long fromSeq) {
+        for (Path path : files(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            if (sequenceOf(path, SEGMENT_PREFIX, SEGMENT_SUFFIX) < fromSeq) {
+                deleteQuietly(path);
+            }
+        }
+        for (Path path : files(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (sequenceOf(path, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX) < fromSeq) {
+                deleteQuietly(path);
+            }
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.out.println("Не удалось удалить " + path.getFileName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Файлы журнала с заданными префиксом и суффиксом в порядке номеров
+     */
+    private List<Path> files(String prefix, String suffix) {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths
+                    .filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(prefix) && name.endsWith(suffix);
+                    })
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать каталог журнала " + directory, e);
+        }
+    }
+
+    private static long sequenceOf(Path path, String prefix, String suffix) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+    }
+
+    // Номер с ведущими нулями, чтобы лексикографический порядок файлов совпадал с порядком номеров
+    private static String number(long seq) {
+        return String.format("%020d", seq);
+    }
+
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Не все файловые системы позволяют синхронизировать каталог
+        }
+    }
+}
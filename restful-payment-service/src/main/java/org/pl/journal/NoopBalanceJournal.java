@@ -0,0 +1,45 @@
+package org.pl.journal;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Журнал без хранения (ledger.journal.enabled=false): балансы живут только в памяти и теряются при перезапуске.
+ * Номера записей только выдаются, чтобы версии счетов возрастали так же, как с журналом на диске
+ */
+@Component
+@ConditionalOnProperty(name = "ledger.journal.enabled", havingValue = "false")
+public class NoopBalanceJournal implements BalanceJournal {
+
+    private final AtomicLong seq = new AtomicLong();
+
+    @Override
+    public void recover(AccountVisitor visitor) {
+    }
+
+    @Override
+    public void registerSnapshotSource(Consumer<AccountVisitor> accounts) {
+    }
+
+    @Override
+    public long append(long userId, long cents) {
+        return seq.incrementAndGet();
+    }
+
+    @Override
+    public void awaitDurable(long seq) {
+    }
+
+    @Override
+    public boolean isDurable(long seq) {
+        return true;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+}
@@ -0,0 +1,7 @@
+package org.pl.repository;
+
+/**
+ * Состояние счёта: баланс в копейках и версия - номер записи журнала о последнем изменении счёта
+ */
+public record AccountBalance(long cents, long version) {
+}
@@ -0,0 +1,592 @@
+package org.pl.repository;
+
+import org.pl.exception.AccountNotFoundException;
+import org.pl.exception.InsufficientFundsException;
+import org.pl.exception.JournalUnavailableException;
+import org.pl.exception.VersionConflictException;
+import org.pl.journal.BalanceJournal;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Балансы пользователей в памяти, в копейках (long). Счета разбиты на полосы (stripes) по хешу id:
+ * у каждой полосы своя блокировка и своя открытая хеш-таблица long -> long без упаковки в объекты.
+ * Операции над одним счётом выполняются под блокировкой его полосы и линеаризуемы,
+ * операции над счетами разных полос идут параллельно - общей блокировки нет.
+ * <p>
+ * Каждое изменение сначала добавляется в BalanceJournal под блокировкой полосы, затем применяется в памяти;
+ * ответ возвращается после того, как журнал подтвердит запись на диск. При старте счета восстанавливаются из журнала.
+ * Номер записи журнала становится версией счёта: по ней compareAndSet меняет баланс, только если его никто не изменил.
+ * Если журнал не подтвердил запись, изменение откатывается, а реестр перестаёт читать и менять счета
+ * (JournalUnavailableException) до перезапуска: в памяти могли остаться изменения, которых нет на диске.
+ * <p>
+ * Удержанные средства (hold) хранятся рядом с балансом и только в памяти: удержание и его снятие не меняют баланс
+ * и не пишутся в журнал, а уменьшают доступную сумму (баланс минус удержано). В журнал попадает только списание
+ * при capture. Инвариант: баланс не меньше удержанной суммы, поэтому capture всегда проходит.
+ * <p>
+ * Пакетные операции (getAll, debitAll, creditAll) группируют позиции по полосам и блокируют каждую полосу один раз;
+ * ответ ждёт одного подтверждения журнала на весь пакет, а не по одному на позицию. Если журнал отказал посреди
+ * пакета, позиции, записи которых не подтверждены, откатываются и получают JOURNAL_UNAVAILABLE,
+ * подтверждённые остаются OK: клиент видит, какие позиции применены.
+ */
+@Component
+public class AccountLedger {
+
+    // Демонстрационный пользователь с случайным балансом, как раньше в синглтоне User
+    static final long DEMO_USER_ID = 1L;
+
+    private final Stripe[] stripes;
+    private final int stripeMask;
+    private final BalanceJournal journal;
+
+    public AccountLedger(@Value("${ledger.stripes:0}") int stripes, BalanceJournal journal) {
+        int count = Integer.highestOneBit(Math.max(1,
+                stripes > 0 ? stripes : Runtime.getRuntime().availableProcessors() * 16) * 2 - 1);
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        this.stripeMask = count - 1;
+        this.journal = journal;
+
+        journal.recover(this::restore);
+        journal.registerSnapshotSource(this::forEachAccount);
+        if (!exists(DEMO_USER_ID)) {
+            open(DEMO_USER_ID, ThreadLocalRandom.current().nextLong(10_000_000L));
+        }
+    }
+
+    /**
+     * Баланс счёта в копейках
+     */
+    public long balance(long userId) {
+        return get(userId).cents();
+    }
+
+    /**
+     * Баланс счёта вместе с версией для условного изменения
+     */
+    public AccountBalance get(long userId) {
+        Stripe stripe = stripe(userId);
+        synchronized (stripe) {
+            int slot = requireSlot(stripe, userId);
+            return new AccountBalance(stripe.values[slot], stripe.versions[slot]);
+        }
+    }
+
+    public boolean exists(long userId) {
+        Stripe stripe = stripe(userId);
+        synchronized (stripe) {
+            checkJournal();
+            return stripe.find(userId) >= 0;
+        }
+    }
+
+    /**
+     * Устанавливает баланс, при необходимости открывая счёт
+     */
+    public AccountBalance open(long userId, long cents) {
+        Stripe stripe = stripe(userId);
+        long seq;
+        long previous = 0;
+        long previousVersion = 0;
+        synchronized (stripe) {
+            checkJournal();
+            int existing = stripe.find(userId);
+            if (existing >= 0) {
+                checkCoversHeld(stripe, existing, cents);
+                previous = stripe.values[existing];
+                previousVersion = stripe.versions[existing];
+            }
+            seq = journal.append(userId, cents);
+            // Слот вычисляется до обращения к values: вставка может заменить массивы при расширении
+            int slot = stripe.findOrInsert(userId);
+            stripe.values[slot] = cents;
+            stripe.versions[slot] = seq;
+        }
+        awaitDurable(stripe, userId, seq, previous, previousVersion, 0);
+        return new AccountBalance(cents, seq);
+    }
+
+    /**
+     * Устанавливает баланс существующего счёта, только если его версия равна expectedVersion.
+     * Иначе бросает VersionConflictException, и клиент перечитывает баланс и повторяет изменение
+     */
+    public AccountBalance compareAndSet(long userId, long expectedVersion, long cents) {
+        Stripe stripe = stripe(userId);
+        long previous;
+        long seq;
+        synchronized (stripe) {
+            int slot = requireSlot(stripe, userId);
+            if (stripe.versions[slot] != expectedVersion) {
+                throw new VersionConflictException(userId, expectedVersion, stripe.versions[slot]);
+            }
+            checkCoversHeld(stripe, slot, cents);
+            previous = stripe.values[slot];
+            seq = journal.append(userId, cents);
+            stripe.values[slot] = cents;
+            stripe.versions[slot] = seq;
+        }
+        awaitDurable(stripe, userId, seq, previous, expectedVersion, 0);
+        return new AccountBalance(cents, seq);
+    }
+
+    /**
+     * Проверяет доступную сумму и списывает одной операцией; возвращает новый баланс
+     */
+    public AccountBalance debit(long userId, long cents) {
+        Stripe stripe = stripe(userId);
+        long previous;
+        long previousVersion;
+        long balance;
+        long seq;
+        synchronized (stripe) {
+            int slot = requireSlot(stripe, userId);
+            previous = stripe.values[slot];
+            previousVersion = stripe.versions[slot];
+            long available = previous - stripe.held[slot];
+            if (available < cents) {
+                throw new InsufficientFundsException(toAmount(available), toAmount(cents));
+            }
+            balance = previous - cents;
+            seq = journal.append(userId, balance);
+            stripe.values[slot] = balance;
+            stripe.versions[slot] = seq;
+        }
+        awaitDurable(stripe, userId, seq, previous, previousVersion, 0);
+        return new AccountBalance(balance, seq);
+    }
+
+    /**
+     * Зачисляет сумму на существующий счёт; возвращает новый баланс
+     */
+    public AccountBalance credit(long userId, long cents) {
+        Stripe stripe = stripe(userId);
+        long previous;
+        long previousVersion;
+        long balance;
+        long seq;
+        synchronized (stripe) {
+            int slot = requireSlot(stripe, userId);
+            previous = stripe.values[slot];
+            previousVersion = stripe.versions[slot];
+            balance = Math.addExact(previous, cents);
+            seq = journal.append(userId, balance);
+            stripe.values[slot] = balance;
+            stripe.versions[slot] = seq;
+        }
+        awaitDurable(stripe, userId, seq, previous, previousVersion, 0);
+        return new AccountBalance(balance, seq);
+    }
+
+    /**
+     * Удерживает сумму из доступной; баланс и версия не меняются. Возвращает доступную сумму после удержания
+     */
+    public long hold(long userId, long cents) {
+        Stripe stripe = stripe(userId);
+        synchronized (stripe) {
+            int slot = requireSlot(stripe, userId);
+            long available = stripe.values[slot] - stripe.held[slot];
+            if (available < cents) {
+                throw new InsufficientFundsException(toAmount(available), toAmount(cents));
+            }
+            stripe.held[slot] += cents;
+            return available - cents;
+        }
+    }
+
+    /**
+     * Снимает удержание без списания
+     */
+    public void release(long userId, long cents) {
+        Stripe stripe = stripe(userId);
+        synchronized (stripe) {
+            int slot = requireSlot(stripe, userId);
+            checkHeld(stripe, slot, userId, cents);
+            stripe.held[slot] -= cents;
+        }
+    }
+
+    /**
+     * Списывает ранее удержанную сумму и снимает удержание; возвращает новый баланс
+     */
+    public AccountBalance capture(long userId, long cents) {
+        Stripe stripe = stripe(userId);
+        long previous;
+        long previousVersion;
+        long balance;
+        long seq;
+        synchronized (stripe) {
+            int slot = requireSlot(stripe, userId);
+            checkHeld(stripe, slot, userId, cents);
+            previous = stripe.values[slot];
+            previousVersion = stripe.versions[slot];
+            balance = previous - cents;
+            seq = journal.append(userId, balance);
+            stripe.values[slot] = balance;
+            stripe.versions[slot] = seq;
+            stripe.held[slot] -= cents;
+        }
+        awaitDurable(stripe, userId, seq, previous, previousVersion, cents);
+        return new AccountBalance(balance, seq);
+    }
+
+    /**
+     * Удержанная сумма счёта в копейках
+     */
+    public long held(long userId) {
+        Stripe stripe = stripe(userId);
+        synchronized (stripe) {
+            return stripe.held[requireSlot(stripe, userId)];
+        }
+    }
+
+    /**
+     * Балансы многих счетов за один проход по полосам
+     */
+    public BulkOutcome[] getAll(long[] userIds) {
+        return applyAll(userIds, null, BulkOperation.READ);
+    }
+
+    /**
+     * Списывает cents[i] со счёта userIds[i]; каждая позиция - независимое атомарное списание, как debit.
+     * Позиции одного счёта применяются в порядке запроса. cents[i] <= 0 - позиция INVALID_AMOUNT
+     */
+    public BulkOutcome[] debitAll(long[] userIds, long[] cents) {
+        return applyAll(userIds, cents, BulkOperation.DEBIT);
+    }
+
+    /**
+     * Зачисляет cents[i] на счёт userIds[i]; правила те же, что у debitAll
+     */
+    public BulkOutcome[] creditAll(long[] userIds, long[] cents) {
+        return applyAll(userIds, cents, BulkOperation.CREDIT);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Обходит все счета для снимка журнала. Полоса копируется под своей блокировкой,
+     * обход копии идёт без блокировки, поэтому запись снимка не задерживает операции
+     */
+    private void forEachAccount(BalanceJournal.AccountVisitor visitor) {
+        for (Stripe stripe : stripes) {
+            long[] keys;
+            long[] values;
+            long[] versions;
+            boolean[] used;
+            synchronized (stripe) {
+                keys = stripe.keys.clone();
+                values = stripe.values.clone();
+                versions = stripe.versions.clone();
+                used = stripe.used.clone();
+            }
+            for (int i = 0; i < keys.length; i++) {
+                if (used[i]) {
+                    visitor.accept(keys[i], values[i], versions[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Позиции раскладываются по полосам сортировкой подсчётом (порядок внутри полосы сохраняется),
+     * затем каждая полоса обрабатывается под одной блокировкой. Все изменения пакета ждут одного fsync.
+     * Прежние баланс и версия позиций запоминаются, чтобы откатить неподтверждённые при отказе журнала
+     */
+    private BulkOutcome[] applyAll(long[] userIds, long[] cents, BulkOperation operation) {
+        checkJournal();
+        int count = userIds.length;
+        int[] stripeOf = new int[count];
+        int[] starts = new int[stripes.length + 1];
+        for (int i = 0; i < count; i++) {
+            stripeOf[i] = stripeIndex(userIds[i]);
+            starts[stripeOf[i] + 1]++;
+        }
+        for (int s = 0; s < stripes.length; s++) {
+            starts[s + 1] += starts[s];
+        }
+        int[] next = starts.clone();
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[next[stripeOf[i]]++] = i;
+        }
+
+        BulkOutcome[] outcomes = new BulkOutcome[count];
+        long[] previous = operation == BulkOperation.READ ? null : new long[count];
+        long[] previousVersions = operation == BulkOperation.READ ? null : new long[count];
+        long lastSeq = -1;
+        try {
+            for (int s = 0; s < stripes.length; s++) {
+                if (starts[s] == starts[s + 1]) {
+                    continue;
+                }
+                Stripe stripe = stripes[s];
+                synchronized (stripe) {
+                    for (int k = starts[s]; k < starts[s + 1]; k++) {
+                        int i = order[k];
+                        if (previous != null) {
+                            int slot = stripe.find(userIds[i]);
+                            previous[i] = slot < 0 ? 0 : stripe.values[slot];
+                            previousVersions[i] = slot < 0 ? 0 : stripe.versions[slot];
+                        }
+                        BulkOutcome outcome = applyLocked(stripe, userIds[i], cents == null ? 0 : cents[i], operation);
+                        if (operation != BulkOperation.READ && outcome.status() == BulkOutcome.Status.OK) {
+                            lastSeq = Math.max(lastSeq, outcome.version());
+                        }
+                        outcomes[i] = outcome;
+                    }
+                }
+            }
+            if (lastSeq >= 0) {
+                journal.awaitDurable(lastSeq);
+            }
+        } catch (JournalUnavailableException e) {
+            System.out.println("Журнал отказал во время пакетной операции: " + e.getMessage());
+            rollbackUnconfirmed(userIds, order, outcomes, previous, previousVersions);
+        }
+        return outcomes;
+    }
+
+    /**
+     * Откатывает позиции пакета, которые журнал не подтвердил, в обратном порядке применения:
+     * так несколько позиций одного счёта возвращают его к балансу до первой из них.
+     * Неприменённые и откаченные позиции получают JOURNAL_UNAVAILABLE
+     */
+    private void rollbackUnconfirmed(long[] userIds, int[] order, BulkOutcome[] outcomes,
+                                     long[] previous, long[] previousVersions) {
+        for (int k = order.length - 1; k >= 0; k--) {
+            int i = order[k];
+            BulkOutcome outcome = outcomes[i];
+            if (outcome == null) {
+                outcomes[i] = BulkOutcome.JOURNAL_UNAVAILABLE;
+            } else if (outcome.status() == BulkOutcome.Status.OK && !journal.isDurable(outcome.version())) {
+                Stripe stripe = stripe(userIds[i]);
+                synchronized (stripe) {
+                    int slot = stripe.find(userIds[i]);
+                    if (slot >= 0 && stripe.versions[slot] == outcome.version()) {
+                        stripe.values[slot] = previous[i];
+                        stripe.versions[slot] = previousVersions[i];
+                    }
+                }
+                outcomes[i] = BulkOutcome.JOURNAL_UNAVAILABLE;
+            }
+        }
+    }
+
+    private BulkOutcome applyLocked(Stripe stripe, long userId, long cents, BulkOperation operation) {
+        if (operation != BulkOperation.READ && cents <= 0) {
+            return BulkOutcome.INVALID_AMOUNT;
+        }
+        int slot = stripe.find(userId);
+        if (slot < 0) {
+            return BulkOutcome.ACCOUNT_NOT_FOUND;
+        }
+        long current = stripe.values[slot];
+        long balance;
+        switch (operation) {
+            case READ -> {
+                return new BulkOutcome(BulkOutcome.Status.OK, current, stripe.versions[slot]);
+            }
+            case DEBIT -> {
+                long available = current - stripe.held[slot];
+                if (available < cents) {
+                    return new BulkOutcome(BulkOutcome.Status.INSUFFICIENT_FUNDS, available, stripe.versions[slot]);
+                }
+                balance = current - cents;
+            }
+            default -> {
+                if (current > Long.MAX_VALUE - cents) {
+                    return BulkOutcome.INVALID_AMOUNT;
+                }
+                balance = current + cents;
+            }
+        }
+        long seq = journal.append(userId, balance);
+        stripe.values[slot] = balance;
+        stripe.versions[slot] = seq;
+        return new BulkOutcome(BulkOutcome.Status.OK, balance, seq);
+    }
+
+    /**
+     * Применяет восстановленный из журнала баланс без повторной записи в журнал
+     */
+    private void restore(long userId, long cents, long version) {
+        Stripe stripe = stripe(userId);
+        synchronized (stripe) {
+            int slot = stripe.findOrInsert(userId);
+            stripe.values[slot] = cents;
+            stripe.versions[slot] = version;
+        }
+    }
+
+    /**
+     * Ждёт подтверждения записи seq. Если журнал её не подтвердил, возвращает счёту прежний баланс и версию,
+     * а при capture - снятое удержание, пока поверх этой записи ничего не применено. Сами откаты не пишутся
+     * в журнал: после перезапуска баланс и так восстановится из подтверждённых записей
+     */
+    private void awaitDurable(Stripe stripe, long userId, long seq, long previous, long previousVersion, long released) {
+        try {
+            journal.awaitDurable(seq);
+        } catch (JournalUnavailableException e) {
+            synchronized (stripe) {
+                int slot = stripe.find(userId);
+                if (slot >= 0 && stripe.versions[slot] == seq) {
+                    stripe.values[slot] = previous;
+                    stripe.versions[slot] = previousVersion;
+                    stripe.held[slot] += released;
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Слот счёта под блокировкой полосы; реестр с недоступным журналом счета не отдаёт
+     */
+    private int requireSlot(Stripe stripe, long userId) {
+        checkJournal();
+        int slot = stripe.find(userId);
+        if (slot < 0) {
+            throw new AccountNotFoundException(userId);
+        }
+        return slot;
+    }
+
+    private void checkJournal() {
+        if (!journal.isAvailable()) {
+            throw new JournalUnavailableException("Журнал балансов недоступен, счета заблокированы до перезапуска", null);
+        }
+    }
+
+    /**
+     * Снять или списать можно не больше удержанного: иначе удержанное стало бы отрицательным,
+     * и debit смог бы списать больше баланса
+     */
+    private static void checkHeld(Stripe stripe, int slot, long userId, long cents) {
+        if (cents <= 0 || stripe.held[slot] < cents) {
+            throw new IllegalStateException("Удержано на счёте " + userId + " " + toAmount(stripe.held[slot])
+                    + ", нельзя снять " + toAmount(cents));
+        }
+    }
+
+    private static void checkCoversHeld(Stripe stripe, int slot, long cents) {
+        if (cents < stripe.held[slot]) {
+            throw new IllegalArgumentException("Баланс не может быть меньше удержанной суммы "
+                    + toAmount(stripe.held[slot]) + ": " + toAmount(cents));
+        }
+    }
+
+    public static BigDecimal toAmount(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    /**
+     * Сумма в копейках; дробные копейки не допускаются
+     */
+    public static long toCents(BigDecimal amount) {
+        try {
+            return amount.setScale(2).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Сумма должна быть в пределах long и с точностью до копейки: " + amount);
+        }
+    }
+
+    private Stripe stripe(long userId) {
+        return stripes[stripeIndex(userId)];
+    }
+
+    private int stripeIndex(long userId) {
+        return (int) (mix(userId) >>> 40) & stripeMask;
+    }
+
+    private static long mix(long userId) {
+        long h = userId * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 31);
+    }
+
+    private enum BulkOperation {
+        READ,
+        DEBIT,
+        CREDIT
+    }
+
+    /**
+     * Открытая адресация с линейным пробированием; счета не удаляются, поэтому надгробия не нужны
+     */
+    private static final class Stripe {
+        private long[] keys = new long[16];
+        private long[] values = new long[16];
+        private long[] versions = new long[16];
+        private long[] held = new long[16];
+        private boolean[] used = new boolean[16];
+        private int size;
+
+        private int find(long userId) {
+            int mask = keys.length - 1;
+            for (int slot = (int) mix(userId) & mask; used[slot]; slot = (slot + 1) & mask) {
+                if (keys[slot] == userId) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        private int findOrInsert(long userId) {
+            int slot = find(userId);
+            if (slot >= 0) {
+                return slot;
+            }
+            if ((size + 1) * 4 > keys.length * 3) {
+                resize();
+            }
+            int mask = keys.length - 1;
+            slot = (int) mix(userId) & mask;
+            while (used[slot]) {
+                slot = (slot + 1) & mask;
+            }
+            used[slot] = true;
+            keys[slot] = userId;
+            size++;
+            return slot;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            long[] oldValues = values;
+            long[] oldVersions = versions;
+            long[] oldHeld = held;
+            boolean[] oldUsed = used;
+            keys = new long[oldKeys.length * 2];
+            values = new long[oldKeys.length * 2];
+            versions = new long[oldKeys.length * 2];
+            held = new long[oldKeys.length * 2];
+            used = new boolean[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) {
+                    int slot = (int) mix(oldKeys[i]) & mask;
+                    while (used[slot]) {
+                        slot = (slot + 1) & mask;
+                    }
+                    used[slot] = true;
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                    versions[slot] = oldVersions[i];
+                    held[slot] = oldHeld[i];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package org.pl.repository;
+
+/**
+ * Результат одной позиции пакетной операции AccountLedger. Для OK - баланс и версия после операции,
+ * для INSUFFICIENT_FUNDS - доступная сумма и текущая версия, для остальных статусов значения не заполнены.
+ * JOURNAL_UNAVAILABLE - позиция не применена: журнал отказал посреди пакета
+ */
+public record BulkOutcome(Status status, long cents, long version) {
+
+    static final BulkOutcome ACCOUNT_NOT_FOUND = new BulkOutcome(Status.ACCOUNT_NOT_FOUND, 0, 0);
+    static final BulkOutcome INVALID_AMOUNT = new BulkOutcome(Status.INVALID_AMOUNT, 0, 0);
+    static final BulkOutcome JOURNAL_UNAVAILABLE = new BulkOutcome(Status.JOURNAL_UNAVAILABLE, 0, 0);
+
+    public enum Status {
+        OK,
+        ACCOUNT_NOT_FOUND,
+        INSUFFICIENT_FUNDS,
+        INVALID_AMOUNT,
+        JOURNAL_UNAVAILABLE
+    }
+}
@@ -1,24 +1,222 @@
 package org.pl.service;
 
-import org.pl.repository.FakeUserRepository;
+import org.pl.hold.CapturedHold;
+import org.pl.hold.FundsHold;
+import org.pl.hold.HoldRegistry;
+import org.pl.repository.AccountBalance;
+import org.pl.repository.AccountLedger;
+import org.pl.repository.BulkOutcome;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BiFunction;
 
 @Service
 public class UserBalanceService {
 
-    private final FakeUserRepository fakeUserRepository;
+    private final AccountLedger accountLedger;
+    private final HoldRegistry holdRegistry;
+    private final int bulkMaxItems;
+    private final long bulkRequestCacheItems;
+    // Пакеты с requestId в порядке поступления; старые вытесняются, когда позиций больше bulkRequestCacheItems
+    private final Map<String, BulkRequest> bulkRequests = new LinkedHashMap<>();
+    private long bulkRequestItems;
 
-    public UserBalanceService(FakeUserRepository fakeUserRepository) {
-        this.fakeUserRepository = fakeUserRepository;
+    public UserBalanceService(
+            AccountLedger accountLedger,
+            HoldRegistry holdRegistry,
+            @Value("${ledger.bulk.max-items:10000}") int bulkMaxItems,
+            @Value("${ledger.bulk.request-cache-items:1000000}") long bulkRequestCacheItems
+    ) {
+        this.accountLedger = accountLedger;
+        this.holdRegistry = holdRegistry;
+        this.bulkMaxItems = bulkMaxItems;
+        this.bulkRequestCacheItems = bulkRequestCacheItems;
     }
 
     public BigDecimal getUserBalance(Long userId) {
-        return fakeUserRepository.getUserBalance(userId);
+        return AccountLedger.toAmount(accountLedger.balance(userId));
     }
 
-    public void updateUserBalance(Long userId, BigDecimal newBalance) {
-        fakeUserRepository.updateUserBalance(userId, newBalance);
+    /**
+     * Баланс вместе с версией, которую клиент передаёт в If-Match при условном изменении
+     */
+    public AccountBalance getAccountBalance(Long userId) {
+        return accountLedger.get(userId);
+    }
+
+    /**
+     * Устанавливает баланс без проверки версии; счёт открывается, если его ещё нет
+     */
+    public AccountBalance updateUserBalance(Long userId, BigDecimal newBalance) {
+        return accountLedger.open(userId, toBalanceCents(newBalance));
+    }
+
+    /**
+     * Устанавливает баланс, только если версия счёта не изменилась с момента чтения клиентом
+     */
+    public AccountBalance updateUserBalance(Long userId, BigDecimal newBalance, long expectedVersion) {
+        return accountLedger.compareAndSet(userId, expectedVersion, toBalanceCents(newBalance));
+    }
+
+    /**
+     * Атомарно списывает сумму и возвращает новый баланс
+     */
+    public AccountBalance debitUserBalance(Long userId, BigDecimal amount) {
+        return accountLedger.debit(userId, toAmountCents(amount));
+    }
+
+    /**
+     * Удерживает сумму до capture или release; без них удержание снимается по истечении срока
+     */
+    public FundsHold holdUserBalance(Long userId, BigDecimal amount, Integer ttlSeconds) {
+        return holdRegistry.hold(userId, toAmountCents(amount), ttlSeconds);
+    }
+
+    /**
+     * Списывает удержанную сумму и возвращает новый баланс
+     */
+    public CapturedHold captureHold(UUID holdId) {
+        return holdRegistry.capture(holdId);
+    }
+
+    public void releaseHold(UUID holdId) {
+        holdRegistry.release(holdId);
+    }
+
+    /**
+     * Балансы многих пользователей одним запросом; результаты в порядке userIds
+     */
+    public BulkOutcome[] getUserBalances(List<Long> userIds) {
+        return accountLedger.getAll(toUserIds(userIds));
+    }
+
+    /**
+     * Списывает amounts[i] у userIds[i]; ошибка одной позиции не влияет на остальные.
+     * Повтор с тем же requestId в том же запуске сервиса возвращает результаты первого вызова и ничего не списывает
+     */
+    public BulkOutcome[] debitUserBalances(String requestId, List<Long> userIds, List<BigDecimal> amounts) {
+        return applyOnce("debit:", requestId, toUserIds(userIds), toBulkCents(amounts), accountLedger::debitAll);
+    }
+
+    /**
+     * Зачисляет amounts[i] пользователю userIds[i]; правила те же, что у debitUserBalances
+     */
+    public BulkOutcome[] creditUserBalances(String requestId, List<Long> userIds, List<BigDecimal> amounts) {
+        return applyOnce("credit:", requestId, toUserIds(userIds), toBulkCents(amounts), accountLedger::creditAll);
+    }
+
+    /**
+     * Выполняет пакет не больше одного раза на requestId. Параллельный повтор ждёт первый вызов;
+     * тот же requestId с другими позициями - ошибка запроса. Если пакет упал до изменений (например, журнал
+     * недоступен), requestId забывается и пакет можно повторить.
+     * requestId хранятся только в памяти и не пишутся в журнал: защита от повтора действует в пределах одного
+     * запуска сервиса и до bulkRequestCacheItems позиций, после перезапуска или вытеснения пакет применится снова
+     */
+    private BulkOutcome[] applyOnce(String operation, String requestId, long[] userIds, long[] cents,
+                                    BiFunction<long[], long[], BulkOutcome[]> apply) {
+        if (requestId == null) {
+            return apply.apply(userIds, cents);
+        }
+        String key = operation + requestId;
+        BulkRequest request = new BulkRequest(userIds, cents, new CompletableFuture<>());
+        BulkRequest existing;
+        synchronized (bulkRequests) {
+            existing = bulkRequests.putIfAbsent(key, request);
+            if (existing == null) {
+                bulkRequestItems += userIds.length;
+                Iterator<BulkRequest> eldest = bulkRequests.values().iterator();
+                while (bulkRequestItems > bulkRequestCacheItems && bulkRequests.size() > 1) {
+                    bulkRequestItems -= eldest.next().userIds().length;
+                    eldest.remove();
+                }
+            }
+        }
+        if (existing != null) {
+            if (!Arrays.equals(existing.userIds(), userIds) || !Arrays.equals(existing.cents(), cents)) {
+                throw new IllegalArgumentException("requestId уже использован для другого пакета: " + requestId);
+            }
+            return existing.await();
+        }
+        try {
+            BulkOutcome[] outcomes = apply.apply(userIds, cents);
+            request.result().complete(outcomes);
+            return outcomes;
+        } catch (RuntimeException e) {
+            synchronized (bulkRequests) {
+                if (bulkRequests.remove(key, request)) {
+                    bulkRequestItems -= userIds.length;
+                }
+            }
+            request.result().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private long[] toUserIds(List<Long> userIds) {
+        if (userIds == null || userIds.isEmpty() || userIds.size() > bulkMaxItems) {
+            throw new IllegalArgumentException("В пакете должно быть от 1 до " + bulkMaxItems + " позиций");
+        }
+        long[] ids = new long[userIds.size()];
+        for (int i = 0; i < ids.length; i++) {
+            Long userId = userIds.get(i);
+            if (userId == null) {
+                throw new IllegalArgumentException("Не указан userId в позиции " + i);
+            }
+            ids[i] = userId;
+        }
+        return ids;
+    }
+
+    /**
+     * Суммы в копейках; некорректная сумма становится 0, и ledger отмечает позицию как INVALID_AMOUNT
+     */
+    private long[] toBulkCents(List<BigDecimal> amounts) {
+        long[] cents = new long[amounts.size()];
+        for (int i = 0; i < cents.length; i++) {
+            try {
+                cents[i] = toAmountCents(amounts.get(i));
+            } catch (IllegalArgumentException e) {
+                cents[i] = 0;
+            }
+        }
+        return cents;
+    }
+
+    private long toAmountCents(BigDecimal amount) {
+        if (amount == null || amount.signum() <= 0) {
+            throw new IllegalArgumentException("Сумма должна быть положительной: " + amount);
+        }
+        return AccountLedger.toCents(amount);
+    }
+
+    private long toBalanceCents(BigDecimal newBalance) {
+        if (newBalance == null || newBalance.signum() < 0) {
+            throw new IllegalArgumentException("Баланс не может быть отрицательным: " + newBalance);
+        }
+        return AccountLedger.toCents(newBalance);
+    }
+
+    private record BulkRequest(long[] userIds, long[] cents, CompletableFuture<BulkOutcome[]> result) {
+
+        BulkOutcome[] await() {
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
     }
 }
@@ -1,14 +1,29 @@
 package org.pl;
 
 import org.junit.jupiter.api.Test;
+import org.pl.service.UserBalanceService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -19,6 +34,15 @@ class UserBalanceControllerTest {
     @Autowired
     private MockMvc mockMvc;
 
+    @DynamicPropertySource
+    static void journalDirectory(DynamicPropertyRegistry registry) throws IOException {
+        String directory = Files.createTempDirectory("payment-journal").toString();
+        registry.add("ledger.journal.dir", () -> directory);
+    }
+
+    @Autowired
+    private UserBalanceService userBalanceService;
+
     @Test
     void shouldReturn401_WhenNoTokenProvided() throws Exception {
         mockMvc.perform(get("/api/balance/1"))
@@ -115,4 +139,291 @@ class UserBalanceControllerTest {
                         .content("{\"balance\": 1000.00}"))
                 .andExpect(status().isOk());
     }
+
+    @Test
+    void shouldDebitBalance_WhenFundsAreSufficient() throws Exception {
+        userBalanceService.updateUserBalance(1L, new BigDecimal("100.00"));
+
+        mockMvc.perform(post("/api/balance/1/debit")
+                        .with(jwt())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"amount\": \"30.50\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.userId").value(1))
+                .andExpect(jsonPath("$.balance").value(69.50));
+    }
+
+    @Test
+    void shouldReturn409AndKeepBalance_WhenFundsAreInsufficient() throws Exception {
+        userBalanceService.updateUserBalance(1L, new BigDecimal("10.00"));
+
+        mockMvc.perform(post("/api/balance/1/debit")
+                        .with(jwt())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"amount\": \"10.01\"}"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.code").value("INSUFFICIENT_FUNDS"))
+                .andExpect(jsonPath("$.balance").value(10.00));
+
+        assertThat(userBalanceService.getUserBalance(1L)).isEqualByComparingTo("10.00");
+    }
+
+    @Test
+    void shouldReturn400_WhenDebitAmountIsNotPositive() throws Exception {
+        mockMvc.perform(post("/api/balance/1/debit")
+                        .with(jwt())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"amount\": \"0\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.code").value("INVALID_REQUEST"));
+    }
+
+    @Test
+    void shouldReturn401_WhenDebitingWithoutToken() throws Exception {
+        mockMvc.perform(post("/api/balance/1/debit")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"amount\": \"1.00\"}"))
+                .andExpect(status().is4xxClientError());
+    }
+
+    @Test
+    void concurrentDebits_shouldNeitherLoseUpdatesNorOverdraw() throws Exception {
+        userBalanceService.updateUserBalance(1L, new BigDecimal("100.00"));
+        AtomicInteger succeeded = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 150; i++) {
+            executor.submit(() -> {
+                try {
+                    userBalanceService.debitUserBalance(1L, BigDecimal.ONE);
+                    succeeded.incrementAndGet();
+                } catch (RuntimeException ignored) {
+                    // Недостаточно средств - ожидаемо для последних 50 списаний
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(succeeded.get()).isEqualTo(100);
+        assertThat(userBalanceService.getUserBalance(1L)).isEqualByComparingTo("0.00");
+    }
+
+    @Test
+    void shouldReturn404_WhenAccountDoesNotExist() throws Exception {
+        mockMvc.perform(get("/api/balance/424242")
+                        .with(jwt()))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.code").value("USER_NOT_FOUND"));
+    }
+
+    @Test
+    void shouldReturn400_WhenNewBalanceIsNegative() throws Exception {
+        mockMvc.perform(put("/api/balance/1")
+                        .with(jwt())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"balance\": -1.00}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldReturnVersionAsETag() throws Exception {
+        long version = userBalanceService.updateUserBalance(1L, new BigDecimal("50.00")).version();
+
+        mockMvc.perform(get("/api/balance/1")
+                        .with(jwt()))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"" + version + "\""))
+                .andExpect(jsonPath("$.version").value(version));
+    }
+
+    @Test
+    void shouldUpdateBalance_WhenIfMatchHasCurrentVersion() throws Exception {
+        long version = userBalanceService.updateUserBalance(1L, new BigDecimal("50.00")).version();
+
+        mockMvc.perform(put("/api/balance/1")
+                        .with(jwt())
+                        .header("If-Match", "\"" + version + "\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"balance\": \"75.00\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.balance").value(75.00))
+                .andExpect(jsonPath("$.version", greaterThan(version), Long.class));
+    }
+
+    @Test
+    void shouldReturn412AndKeepBalance_WhenIfMatchIsStale() throws Exception {
+        long stale = userBalanceService.updateUserBalance(1L, new BigDecimal("50.00")).version();
+        userBalanceService.debitUserBalance(1L, new BigDecimal("10.00"));
+
+        mockMvc.perform(put("/api/balance/1")
+                        .with(jwt())
+                        .header("If-Match", "\"" + stale + "\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"balance\": \"75.00\"}"))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.code").value("VERSION_CONFLICT"));
+
+        assertThat(userBalanceService.getUserBalance(1L)).isEqualByComparingTo("40.00");
+    }
+
+    @Test
+    void shouldHoldAndCaptureFunds() throws Exception {
+        userBalanceService.updateUserBalance(5L, new BigDecimal("100.00"));
+
+        String body = mockMvc.perform(post("/api/balance/5/holds")
+                        .with(jwt())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"amount\": \"30.00\", \"ttlSeconds\": 60}"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.userId").value(5))
+                .andExpect(jsonPath("$.amount").value(30.00))
+                .andExpect(jsonPath("$.available").value(70.00))
+                .andExpect(jsonPath("$.expiresAt").exists())
+                .andReturn().getResponse().getContentAsString();
+        String holdId = body.replaceAll(".*\"holdId\":\"([^\"]+)\".*", "$1");
+
+        // Удержание не меняет баланс, но уменьшает доступную сумму
+        assertThat(userBalanceService.getUserBalance(5L)).isEqualByComparingTo("100.00");
+        mockMvc.perform(post("/api/balance/5/debit")
+                        .with(jwt())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"amount\": \"80.00\"}"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.balance").value(70.00));
+
+        mockMvc.perform(post("/api/holds/" + holdId + "/capture")
+                        .with(jwt()))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andExpect(jsonPath("$.userId").value(5))
+                .andExpect(jsonPath("$.balance").value(70.00));
+
+        // Повтор capture возвращает тот же результат и не списывает второй раз
+        mockMvc.perform(post("/api/holds/" + holdId + "/capture")
+                        .with(jwt()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.balance").value(70.00));
+        assertThat(userBalanceService.getUserBalance(5L)).isEqualByComparingTo("70.00");
+    }
+
+    @Test
+    void shouldReleaseHoldWithoutDebit() throws Exception {
+        userBalanceService.updateUserBalance(6L, new BigDecimal("100.00"));
+        String holdId = userBalanceService.holdUserBalance(6L, new BigDecimal("100.00"), null).id().toString();
+
+        mockMvc.perform(post("/api/holds/" + holdId + "/release")
+                        .with(jwt()))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(post("/api/holds/" + holdId + "/capture")
+                        .with(jwt()))
+                .andExpect(status().isNotFound());
+        assertThat(userBalanceService.getUserBalance(6L)).isEqualByComparingTo("100.00");
+    }
+
+    @Test
+    void shouldReturn409AndHoldNothing_WhenAvailableFundsAreInsufficient() throws Exception {
+        userBalanceService.updateUserBalance(8L, new BigDecimal("10.00"));
+
+        mockMvc.perform(post("/api/balance/8/holds")
+                        .with(jwt())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"amount\": \"10.01\"}"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.code").value("INSUFFICIENT_FUNDS"));
+
+        mockMvc.perform(post("/api/balance/8/holds")
+                        .with(jwt())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"amount\": \"10.00\", \"ttlSeconds\": 0}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldReturnBalancesOfManyUsersInOneCall() throws Exception {
+        userBalanceService.updateUserBalance(20L, new BigDecimal("20.00"));
+        userBalanceService.updateUserBalance(21L, new BigDecimal("21.00"));
+
+        mockMvc.perform(post("/api/balances/query")
+                        .with(jwt())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userIds\": [21, 404404, 20]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results.length()").value(3))
+                .andExpect(jsonPath("$.results[0].userId").value(21))
+                .andExpect(jsonPath("$.results[0].status").value("OK"))
+                .andExpect(jsonPath("$.results[0].balance").value(21.00))
+                .andExpect(jsonPath("$.results[0].version").exists())
+                .andExpect(jsonPath("$.results[1].status").value("USER_NOT_FOUND"))
+                .andExpect(jsonPath("$.results[2].balance").value(20.00));
+    }
+
+    @Test
+    void shouldDebitAndCreditManyUsersWithPerItemResults() throws Exception {
+        userBalanceService.updateUserBalance(22L, new BigDecimal("50.00"));
+        userBalanceService.updateUserBalance(23L, new BigDecimal("5.00"));
+
+        mockMvc.perform(post("/api/balances/debit")
+                        .with(jwt())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"items": [
+                                  {"userId": 22, "amount": "30.00"},
+                                  {"userId": 23, "amount": "10.00"},
+                                  {"userId": 22, "amount": "-1.00"}
+                                ]}"""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[0].status").value("OK"))
+                .andExpect(jsonPath("$.results[0].balance").value(20.00))
+                .andExpect(jsonPath("$.results[1].status").value("INSUFFICIENT_FUNDS"))
+                .andExpect(jsonPath("$.results[1].balance").value(5.00))
+                .andExpect(jsonPath("$.results[2].status").value("INVALID_REQUEST"));
+
+        mockMvc.perform(post("/api/balances/credit")
+                        .with(jwt())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"items\": [{\"userId\": 23, \"amount\": \"10.00\"}]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[0].status").value("OK"))
+                .andExpect(jsonPath("$.results[0].balance").value(15.00));
+
+        assertThat(userBalanceService.getUserBalance(22L)).isEqualByComparingTo("20.00");
+        assertThat(userBalanceService.getUserBalance(23L)).isEqualByComparingTo("15.00");
+    }
+
+    @Test
+    void shouldApplyBulkDebitOnce_WhenRetriedWithSameRequestId() throws Exception {
+        userBalanceService.updateUserBalance(24L, new BigDecimal("100.00"));
+        String request = """
+                {"requestId": "batch-24", "items": [{"userId": 24, "amount": "30.00"}]}""";
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            mockMvc.perform(post("/api/balances/debit")
+                            .with(jwt())
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(request))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.results[0].status").value("OK"))
+                    .andExpect(jsonPath("$.results[0].balance").value(70.00));
+        }
+        assertThat(userBalanceService.getUserBalance(24L)).isEqualByComparingTo("70.00");
+
+        mockMvc.perform(post("/api/balances/debit")
+                        .with(jwt())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"requestId\": \"batch-24\", \"items\": [{\"userId\": 24, \"amount\": \"1.00\"}]}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.code").value("INVALID_REQUEST"));
+    }
+
+    @Test
+    void shouldReturn400_WhenBulkRequestIsEmpty() throws Exception {
+        mockMvc.perform(post("/api/balances/debit")
+                        .with(jwt())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"items\": []}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.code").value("INVALID_REQUEST"));
+    }
 }
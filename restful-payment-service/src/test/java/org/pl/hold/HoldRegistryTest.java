@@ -0,0 +1,105 @@
+package org.pl.hold;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.pl.exception.HoldNotFoundException;
+import org.pl.exception.InsufficientFundsException;
+import org.pl.journal.NoopBalanceJournal;
+import org.pl.repository.AccountLedger;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HoldRegistryTest {
+
+    private final Instant start = Instant.now();
+    private final AccountLedger ledger = new AccountLedger(4, new NoopBalanceJournal());
+    private final HoldRegistry registry = new HoldRegistry(ledger, 60, 600, 100, 64, 120);
+
+    HoldRegistryTest() {
+        registry.setClock(Clock.fixed(start, ZoneOffset.UTC));
+        ledger.open(7L, 10_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        registry.close();
+    }
+
+    @Test
+    void capture_shouldDebitHeldAmountExactlyOnce() {
+        FundsHold hold = registry.hold(7L, 2_500, null);
+        assertThat(hold.available()).isEqualTo(7_500);
+        assertThat(hold.expiresAt()).isEqualTo(start.plusSeconds(60));
+
+        CapturedHold captured = registry.capture(hold.id());
+
+        assertThat(captured.balance().cents()).isEqualTo(7_500);
+        assertThat(ledger.held(7L)).isZero();
+        assertThat(registry.capture(hold.id())).isEqualTo(captured);
+        assertThatThrownBy(() -> registry.release(hold.id())).isInstanceOf(HoldNotFoundException.class);
+        assertThat(ledger.balance(7L)).isEqualTo(7_500);
+    }
+
+    @Test
+    void capture_shouldForgetResultAfterRetention() {
+        FundsHold hold = registry.hold(7L, 2_500, null);
+        CapturedHold captured = registry.capture(hold.id());
+
+        registry.setClock(Clock.fixed(start.plusSeconds(119), ZoneOffset.UTC));
+        registry.expireDue();
+        assertThat(registry.capture(hold.id())).isEqualTo(captured);
+
+        registry.setClock(Clock.fixed(start.plusSeconds(121), ZoneOffset.UTC));
+        registry.expireDue();
+        assertThatThrownBy(() -> registry.capture(hold.id())).isInstanceOf(HoldNotFoundException.class);
+        assertThat(ledger.balance(7L)).isEqualTo(7_500);
+    }
+
+    @Test
+    void release_shouldReturnFundsWithoutDebit() {
+        FundsHold hold = registry.hold(7L, 10_000, 30);
+        assertThatThrownBy(() -> registry.hold(7L, 1, 30)).isInstanceOf(InsufficientFundsException.class);
+
+        registry.release(hold.id());
+
+        assertThat(ledger.balance(7L)).isEqualTo(10_000);
+        assertThat(ledger.held(7L)).isZero();
+        assertThat(registry.size()).isZero();
+    }
+
+    @Test
+    void expireDue_shouldReleaseHoldsWhoseTtlPassed() {
+        FundsHold shortHold = registry.hold(7L, 1_000, 5);
+        FundsHold longHold = registry.hold(7L, 2_000, 50);
+
+        registry.setClock(Clock.fixed(start.plusSeconds(6), ZoneOffset.UTC));
+        registry.expireDue();
+
+        assertThat(ledger.held(7L)).isEqualTo(2_000);
+        assertThatThrownBy(() -> registry.capture(shortHold.id())).isInstanceOf(HoldNotFoundException.class);
+        assertThat(registry.capture(longHold.id()).balance().cents()).isEqualTo(8_000);
+    }
+
+    @Test
+    void capture_afterTtlButBeforeWheelTick_shouldReleaseInsteadOfDebit() {
+        FundsHold hold = registry.hold(7L, 1_000, 5);
+
+        registry.setClock(Clock.fixed(start.plusSeconds(5), ZoneOffset.UTC));
+
+        assertThatThrownBy(() -> registry.capture(hold.id())).isInstanceOf(HoldNotFoundException.class);
+        assertThat(ledger.balance(7L)).isEqualTo(10_000);
+        assertThat(ledger.held(7L)).isZero();
+    }
+
+    @Test
+    void hold_shouldRejectTtlOutsideLimits() {
+        assertThatThrownBy(() -> registry.hold(7L, 100, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> registry.hold(7L, 100, 601)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(ledger.held(7L)).isZero();
+    }
+}
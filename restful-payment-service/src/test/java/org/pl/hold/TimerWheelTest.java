@@ -0,0 +1,72 @@
+package org.pl.hold;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimerWheelTest {
+
+    @Test
+    void advance_shouldFireTimersOnlyWhenDeadlineIsReached() {
+        TimerWheel<String> wheel = new TimerWheel<>(10, 8, 0);
+        wheel.schedule("a", 25);
+        wheel.schedule("b", 40);
+        List<String> fired = new ArrayList<>();
+
+        wheel.advance(29, fired::add);
+        assertThat(fired).isEmpty();
+
+        wheel.advance(30, fired::add);
+        assertThat(fired).containsExactly("a");
+
+        wheel.advance(45, fired::add);
+        assertThat(fired).containsExactly("a", "b");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void advance_shouldKeepTimersBeyondOneRevolutionUntilTheirTurn() {
+        // Оборот колеса - 80 мс; таймер на 250 мс проходит свою ячейку трижды
+        TimerWheel<String> wheel = new TimerWheel<>(10, 8, 0);
+        wheel.schedule("far", 250);
+        List<String> fired = new ArrayList<>();
+
+        for (long now = 10; now < 250; now += 10) {
+            wheel.advance(now, fired::add);
+        }
+        assertThat(fired).isEmpty();
+
+        wheel.advance(250, fired::add);
+        assertThat(fired).containsExactly("far");
+    }
+
+    @Test
+    void advance_afterLongPause_shouldFireEverythingDueInOnePass() {
+        TimerWheel<Integer> wheel = new TimerWheel<>(10, 8, 0);
+        for (int i = 1; i <= 100; i++) {
+            wheel.schedule(i, i * 10L);
+        }
+        List<Integer> fired = new ArrayList<>();
+
+        wheel.advance(500, fired::add);
+        assertThat(fired).hasSize(50).allMatch(i -> i <= 50);
+
+        wheel.advance(10_000, fired::add);
+        assertThat(fired).hasSize(100).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void schedule_withPastDeadline_shouldFireOnNextTick() {
+        TimerWheel<String> wheel = new TimerWheel<>(10, 8, 100);
+        wheel.schedule("late", 50);
+        List<String> fired = new ArrayList<>();
+
+        wheel.advance(109, fired::add);
+        assertThat(fired).isEmpty();
+        wheel.advance(110, fired::add);
+        assertThat(fired).containsExactly("late");
+    }
+}
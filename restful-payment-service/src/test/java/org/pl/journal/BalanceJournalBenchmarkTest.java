@@ -0,0 +1,111 @@
+package org.pl.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.pl.repository.AccountLedger;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Долговечные списания в секунду (каждый ответ - после fsync) при росте числа параллельных запросов,
+ * и время восстановления после снимка. Групповой fsync делит одну синхронизацию между всеми ждущими.
+ * Отдельно - сверка 100 тыс. заказов одиночными списаниями и пакетами debitAll по 10 тыс.
+ * Запуск: ./mvnw test -pl restful-payment-service -Dtest=BalanceJournalBenchmarkTest -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class BalanceJournalBenchmarkTest {
+
+    private static final int ACCOUNTS = 100_000;
+    private static final int SECONDS = 3;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void durableDebitThroughputAndRecovery() throws Exception {
+        MappedBalanceJournal journal = new MappedBalanceJournal(directory.toString(), 1 << 20, Long.MAX_VALUE);
+        AccountLedger ledger = new AccountLedger(0, journal);
+        for (long userId = 10; userId < 10 + ACCOUNTS; userId++) {
+            ledger.open(userId, 1_000_000_000L);
+        }
+
+        System.out.printf("%-8s %18s %12s%n", "threads", "debits/s", "fsyncs/s");
+        for (int threads : new int[]{1, 4, 16, 64, 128}) {
+            long forcesBefore = journal.forceCount();
+            long debits = run(ledger, threads);
+            long forces = journal.forceCount() - forcesBefore;
+            System.out.printf("%-8d %18d %12d%n", threads, debits / SECONDS, forces / SECONDS);
+        }
+
+        long started = System.nanoTime();
+        journal.snapshot();
+        System.out.printf("snapshot of %d accounts: %d ms%n", ledger.size(), (System.nanoTime() - started) / 1_000_000);
+        journal.close();
+
+        started = System.nanoTime();
+        MappedBalanceJournal reopened = new MappedBalanceJournal(directory.toString(), 1 << 20, Long.MAX_VALUE);
+        AccountLedger restored = new AccountLedger(0, reopened);
+        System.out.printf("recovery of %d accounts: %d ms%n", restored.size(), (System.nanoTime() - started) / 1_000_000);
+        reopened.close();
+    }
+
+    @Test
+    void bulkDebitVersusSingleDebits() throws Exception {
+        MappedBalanceJournal journal = new MappedBalanceJournal(directory.toString(), 1 << 20, Long.MAX_VALUE);
+        AccountLedger ledger = new AccountLedger(0, journal);
+        for (long userId = 10; userId < 10 + ACCOUNTS; userId++) {
+            ledger.open(userId, 1_000_000_000L);
+        }
+        int batch = 10_000;
+        long[] userIds = new long[ACCOUNTS];
+        long[] cents = new long[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            userIds[i] = 10 + ThreadLocalRandom.current().nextInt(ACCOUNTS);
+            cents[i] = 1 + ThreadLocalRandom.current().nextInt(10_000);
+        }
+
+        long started = System.nanoTime();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            ledger.debit(userIds[i], cents[i]);
+        }
+        System.out.printf("%d single debits: %d ms%n", ACCOUNTS, (System.nanoTime() - started) / 1_000_000);
+
+        started = System.nanoTime();
+        for (int from = 0; from < ACCOUNTS; from += batch) {
+            ledger.debitAll(
+                    Arrays.copyOfRange(userIds, from, from + batch),
+                    Arrays.copyOfRange(cents, from, from + batch));
+        }
+        System.out.printf("%d debits in batches of %d: %d ms%n", ACCOUNTS, batch, (System.nanoTime() - started) / 1_000_000);
+        journal.close();
+    }
+
+    private long run(AccountLedger ledger, int threads) throws InterruptedException {
+        long deadline = System.nanoTime() + SECONDS * 1_000_000_000L;
+        long[] counts = new long[threads];
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int index = t;
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    ledger.debit(10 + random.nextInt(ACCOUNTS), 1);
+                    counts[index]++;
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        long total = 0;
+        for (int t = 0; t < threads; t++) {
+            workers.get(t).join();
+            total += counts[t];
+        }
+        return total;
+    }
+}
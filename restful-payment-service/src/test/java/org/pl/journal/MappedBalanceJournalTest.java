@@ -0,0 +1,169 @@
+package org.pl.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.pl.exception.JournalUnavailableException;
+import org.pl.repository.AccountBalance;
+import org.pl.repository.AccountLedger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MappedBalanceJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recover_afterRestart_shouldRestoreBalances() {
+        MappedBalanceJournal journal = journal(1024, 1_000_000);
+        AccountLedger ledger = new AccountLedger(4, journal);
+        ledger.open(10L, 5_000);
+        ledger.debit(10L, 1_250);
+        ledger.open(11L, 700);
+        ledger.credit(11L, 300);
+        long demoBalance = ledger.balance(1L);
+        AccountBalance before = ledger.get(10L);
+        journal.close();
+
+        AccountLedger restored = new AccountLedger(4, journal(1024, 1_000_000));
+
+        assertThat(restored.get(10L)).isEqualTo(before);
+        assertThat(restored.balance(11L)).isEqualTo(1_000);
+        assertThat(restored.balance(1L)).isEqualTo(demoBalance);
+        assertThat(restored.size()).isEqualTo(3);
+    }
+
+    @Test
+    void snapshot_shouldDeleteCoveredSegmentsAndRecoverFromSnapshotAndTail() throws IOException {
+        MappedBalanceJournal journal = journal(8, 1_000_000);
+        AccountLedger ledger = new AccountLedger(4, journal);
+        for (long userId = 100; userId < 150; userId++) {
+            ledger.open(userId, userId * 10);
+        }
+        assertThat(files("segment-")).hasSizeGreaterThan(5);
+
+        journal.snapshot();
+        AccountBalance snapshotted = ledger.get(130L);
+        ledger.debit(120L, 200);
+        ledger.open(200L, 42);
+        journal.close();
+
+        assertThat(files("snapshot-")).hasSize(1);
+        assertThat(files("segment-")).hasSize(1);
+
+        AccountLedger restored = new AccountLedger(4, journal(8, 1_000_000));
+        assertThat(restored.balance(149L)).isEqualTo(1_490);
+        assertThat(restored.get(130L)).isEqualTo(snapshotted);
+        assertThat(restored.balance(120L)).isEqualTo(1_000);
+        assertThat(restored.balance(200L)).isEqualTo(42);
+        assertThat(restored.size()).isEqualTo(52);
+    }
+
+    @Test
+    void recover_shouldDropTornRecordAtTail() throws IOException {
+        MappedBalanceJournal journal = journal(1024, 1_000_000);
+        AccountLedger ledger = new AccountLedger(4, journal);
+        ledger.open(10L, 5_000);
+        ledger.debit(10L, 1_000);
+        journal.close();
+
+        // Портим баланс в последней записи, как при сбое посреди записи
+        Path segment = files("segment-").getLast();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long last = 0;
+            ByteBuffer seq = ByteBuffer.allocate(8);
+            for (long offset = 0; offset < channel.size(); offset += MappedBalanceJournal.RECORD_SIZE) {
+                seq.clear();
+                channel.read(seq, offset);
+                if (seq.getLong(0) == 0) {
+                    break;
+                }
+                last = offset;
+            }
+            channel.write(ByteBuffer.wrap(new byte[]{0x7F}), last + 16);
+        }
+
+        AccountLedger restored = new AccountLedger(4, journal(1024, 1_000_000));
+        assertThat(restored.balance(10L)).isEqualTo(5_000);
+    }
+
+    @Test
+    void awaitDurable_shouldCoverAllEarlierRecordsWithOneForce() {
+        MappedBalanceJournal journal = journal(1024, 1_000_000);
+        journal.recover((userId, cents, version) -> {
+        });
+
+        long last = 0;
+        for (int i = 0; i < 100; i++) {
+            last = journal.append(1_000L + i, i);
+        }
+        journal.awaitDurable(last);
+        journal.awaitDurable(last - 50);
+
+        assertThat(journal.forceCount()).isEqualTo(1);
+        journal.close();
+    }
+
+    @Test
+    void recover_shouldNumberNewRecordsAboveVersionsInSnapshot() throws IOException {
+        Runnable[] duringCopy = {() -> {
+        }};
+        MappedBalanceJournal journal = new MappedBalanceJournal(directory.toString(), 1024, 1_000_000) {
+            @Override
+            public void registerSnapshotSource(Consumer<AccountVisitor> accounts) {
+                super.registerSnapshotSource(visitor -> {
+                    duringCopy[0].run();
+                    accounts.accept(visitor);
+                });
+            }
+        };
+        AccountLedger ledger = new AccountLedger(4, journal);
+        ledger.open(10L, 5_000);
+        ledger.open(11L, 700);
+        // Списание между сменой сегмента и обходом счетов: его версия есть в снимке, но не в закрытых сегментах
+        duringCopy[0] = () -> ledger.debit(10L, 100);
+        journal.snapshot();
+        long snapshotted = ledger.get(10L).version();
+        journal.close();
+        for (Path segment : files("segment-")) {
+            Files.delete(segment);
+        }
+
+        AccountLedger restored = new AccountLedger(4, journal(1024, 1_000_000));
+        assertThat(restored.get(10L)).isEqualTo(new AccountBalance(4_900, snapshotted));
+        assertThat(restored.debit(11L, 1).version()).isGreaterThan(snapshotted);
+    }
+
+    @Test
+    void close_shouldRejectFurtherChanges() {
+        MappedBalanceJournal journal = journal(1024, 1_000_000);
+        AccountLedger ledger = new AccountLedger(4, journal);
+        ledger.open(10L, 5_000);
+        journal.close();
+
+        assertThat(journal.isAvailable()).isFalse();
+        assertThatThrownBy(() -> journal.append(10L, 1)).isInstanceOf(JournalUnavailableException.class);
+        assertThatThrownBy(() -> ledger.debit(10L, 1)).isInstanceOf(JournalUnavailableException.class);
+    }
+
+    private MappedBalanceJournal journal(int segmentRecords, long snapshotEvery) {
+        return new MappedBalanceJournal(directory.toString(), segmentRecords, snapshotEvery);
+    }
+
+    private List<Path> files(String prefix) throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.filter(path -> path.getFileName().toString().startsWith(prefix)).sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.pl.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.pl.journal.NoopBalanceJournal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongConsumer;
+
+/**
+ * Пропускная способность AccountLedger на 1M счетов при росте числа потоков:
+ * полосы блокировок против той же таблицы под одной общей блокировкой.
+ * Каждая операция - списание и зачисление на случайных счетах.
+ * Запуск: ./mvnw test -pl restful-payment-service -Dtest=AccountLedgerBenchmarkTest -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class AccountLedgerBenchmarkTest {
+
+    private static final int ACCOUNTS = 1_000_000;
+    private static final int OPS_PER_THREAD = 2_000_000;
+
+    @Test
+    void compareStripedLocksWithGlobalLock() throws Exception {
+        AccountLedger ledger = new AccountLedger(0, new NoopBalanceJournal());
+        for (long userId = 0; userId < ACCOUNTS; userId++) {
+            ledger.open(userId, 1_000_000_000L);
+        }
+        Object globalLock = new Object();
+
+        LongConsumer striped = userId -> {
+            ledger.debit(userId, 1);
+            ledger.credit(userId ^ 1, 1);
+        };
+        LongConsumer global = userId -> {
+            synchronized (globalLock) {
+                ledger.debit(userId, 1);
+                ledger.credit(userId ^ 1, 1);
+            }
+        };
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%-8s %18s %18s%n", "threads", "striped, ops/s", "global, ops/s");
+        for (int threads = 1; threads <= Math.max(cores, 8); threads *= 2) {
+            run(threads, striped);
+            run(threads, global);
+            System.out.printf("%-8d %18d %18d%n", threads, run(threads, striped), run(threads, global));
+        }
+    }
+
+    private long run(int threads, LongConsumer operation) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < OPS_PER_THREAD; i++) {
+                    operation.accept(random.nextInt(ACCOUNTS));
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+        return (long) threads * OPS_PER_THREAD * 1_000_000_000L / elapsed;
+    }
+}
@@ -0,0 +1,282 @@
+package org.pl.repository;
+
+import org.junit.jupiter.api.Test;
+import org.pl.exception.AccountNotFoundException;
+import org.pl.exception.InsufficientFundsException;
+import org.pl.exception.JournalUnavailableException;
+import org.pl.exception.VersionConflictException;
+import org.pl.journal.BalanceJournal;
+import org.pl.journal.NoopBalanceJournal;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AccountLedgerTest {
+
+    @Test
+    void debitAndCredit_shouldChangeBalanceInCents() {
+        AccountLedger ledger = new AccountLedger(4, new NoopBalanceJournal());
+        ledger.open(7L, 10_000);
+
+        assertThat(ledger.debit(7L, 2_550).cents()).isEqualTo(7_450);
+        assertThat(ledger.credit(7L, 50).cents()).isEqualTo(7_500);
+        assertThat(ledger.balance(7L)).isEqualTo(7_500);
+    }
+
+    @Test
+    void debit_shouldRejectOverdraftAndUnknownAccount() {
+        AccountLedger ledger = new AccountLedger(4, new NoopBalanceJournal());
+        ledger.open(7L, 100);
+
+        assertThatThrownBy(() -> ledger.debit(7L, 101)).isInstanceOf(InsufficientFundsException.class);
+        assertThat(ledger.balance(7L)).isEqualTo(100);
+        assertThatThrownBy(() -> ledger.debit(8L, 1)).isInstanceOf(AccountNotFoundException.class);
+        assertThatThrownBy(() -> ledger.balance(8L)).isInstanceOf(AccountNotFoundException.class);
+    }
+
+    @Test
+    void compareAndSet_shouldApplyOnlyOnCurrentVersion() {
+        AccountLedger ledger = new AccountLedger(4, new NoopBalanceJournal());
+        AccountBalance opened = ledger.open(7L, 1_000);
+        AccountBalance debited = ledger.debit(7L, 100);
+        assertThat(debited.version()).isGreaterThan(opened.version());
+
+        assertThatThrownBy(() -> ledger.compareAndSet(7L, opened.version(), 5_000))
+                .isInstanceOf(VersionConflictException.class);
+        assertThat(ledger.balance(7L)).isEqualTo(900);
+
+        AccountBalance updated = ledger.compareAndSet(7L, debited.version(), 5_000);
+        assertThat(updated.cents()).isEqualTo(5_000);
+        assertThat(ledger.get(7L)).isEqualTo(updated);
+    }
+
+    @Test
+    void hold_shouldReserveAvailableFundsUntilCapturedOrReleased() {
+        AccountLedger ledger = new AccountLedger(4, new NoopBalanceJournal());
+        long version = ledger.open(7L, 1_000).version();
+
+        assertThat(ledger.hold(7L, 600)).isEqualTo(400);
+        assertThat(ledger.get(7L)).isEqualTo(new AccountBalance(1_000, version));
+        assertThatThrownBy(() -> ledger.debit(7L, 401)).isInstanceOf(InsufficientFundsException.class);
+        assertThatThrownBy(() -> ledger.hold(7L, 401)).isInstanceOf(InsufficientFundsException.class);
+        assertThatThrownBy(() -> ledger.open(7L, 599)).isInstanceOf(IllegalArgumentException.class);
+
+        AccountBalance captured = ledger.capture(7L, 600);
+        assertThat(captured.cents()).isEqualTo(400);
+        assertThat(captured.version()).isGreaterThan(version);
+        assertThat(ledger.held(7L)).isZero();
+
+        ledger.hold(7L, 300);
+        ledger.release(7L, 300);
+        assertThat(ledger.debit(7L, 400).cents()).isZero();
+    }
+
+    @Test
+    void releaseAndCapture_shouldRejectMoreThanHeld() {
+        AccountLedger ledger = new AccountLedger(4, new NoopBalanceJournal());
+        AccountBalance opened = ledger.open(7L, 1_000);
+        ledger.hold(7L, 100);
+
+        assertThatThrownBy(() -> ledger.release(7L, 101)).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> ledger.capture(7L, 101)).isInstanceOf(IllegalStateException.class);
+        assertThat(ledger.held(7L)).isEqualTo(100);
+        assertThat(ledger.get(7L)).isEqualTo(opened);
+        assertThatThrownBy(() -> ledger.debit(7L, 901)).isInstanceOf(InsufficientFundsException.class);
+    }
+
+    @Test
+    void bulkOperations_shouldReportEachItemInRequestOrder() {
+        AccountLedger ledger = new AccountLedger(4, new NoopBalanceJournal());
+        for (long userId = 10; userId < 50; userId++) {
+            ledger.open(userId, 1_000);
+        }
+        ledger.hold(11L, 900);
+
+        BulkOutcome[] debited = ledger.debitAll(
+                new long[]{10, 11, 10, 99, 12, 10},
+                new long[]{600, 200, 300, 1, 0, 200});
+
+        assertThat(debited).extracting(BulkOutcome::status).containsExactly(
+                BulkOutcome.Status.OK, BulkOutcome.Status.INSUFFICIENT_FUNDS, BulkOutcome.Status.OK,
+                BulkOutcome.Status.ACCOUNT_NOT_FOUND, BulkOutcome.Status.INVALID_AMOUNT,
+                BulkOutcome.Status.INSUFFICIENT_FUNDS);
+        assertThat(debited[0].cents()).isEqualTo(400);
+        assertThat(debited[1].cents()).isEqualTo(100);
+        assertThat(debited[2].cents()).isEqualTo(100);
+        assertThat(debited[2].version()).isGreaterThan(debited[0].version());
+        assertThat(debited[5].cents()).isEqualTo(100);
+
+        long[] everyone = new long[40];
+        long[] tenCents = new long[40];
+        for (int i = 0; i < everyone.length; i++) {
+            everyone[i] = 10 + i;
+            tenCents[i] = 10;
+        }
+        assertThat(ledger.creditAll(everyone, tenCents)).allMatch(outcome -> outcome.status() == BulkOutcome.Status.OK);
+
+        BulkOutcome[] read = ledger.getAll(new long[]{10, 11, 49, 7});
+        assertThat(read).extracting(BulkOutcome::cents).containsExactly(110L, 1_010L, 1_010L, 0L);
+        assertThat(read[3].status()).isEqualTo(BulkOutcome.Status.ACCOUNT_NOT_FOUND);
+        assertThat(read[0].version()).isEqualTo(ledger.get(10L).version());
+    }
+
+    @Test
+    void journalFailure_shouldHideUnconfirmedChangeAndFenceLedger() {
+        FailingJournal journal = new FailingJournal();
+        AccountLedger ledger = new AccountLedger(4, journal);
+        ledger.open(7L, 1_000);
+        journal.durableUpTo = journal.records.size();
+
+        assertThatThrownBy(() -> ledger.debit(7L, 300)).isInstanceOf(JournalUnavailableException.class);
+        assertThatThrownBy(() -> ledger.balance(7L)).isInstanceOf(JournalUnavailableException.class);
+        assertThatThrownBy(() -> ledger.credit(7L, 1)).isInstanceOf(JournalUnavailableException.class);
+        assertThatThrownBy(() -> ledger.debitAll(new long[]{7L}, new long[]{1}))
+                .isInstanceOf(JournalUnavailableException.class);
+        assertThat(journal.records).hasSize(3);
+
+        // После перезапуска остаются только подтверждённые записи
+        AccountLedger restarted = new AccountLedger(4, journal.restart());
+        assertThat(restarted.balance(7L)).isEqualTo(1_000);
+    }
+
+    @Test
+    void bulkJournalFailure_shouldKeepConfirmedItemsAndRollBackTheRest() {
+        FailingJournal journal = new FailingJournal();
+        AccountLedger ledger = new AccountLedger(4, journal);
+        ledger.open(7L, 1_000);
+        // Первое списание подтверждается, второе записано, но не подтверждено, третье журнал уже не принимает
+        journal.durableUpTo = journal.records.size() + 1;
+        journal.appendUpTo = journal.records.size() + 2;
+
+        BulkOutcome[] debited = ledger.debitAll(new long[]{7, 7, 7}, new long[]{100, 100, 100});
+
+        assertThat(debited).extracting(BulkOutcome::status).containsExactly(BulkOutcome.Status.OK,
+                BulkOutcome.Status.JOURNAL_UNAVAILABLE, BulkOutcome.Status.JOURNAL_UNAVAILABLE);
+        assertThat(debited[0].cents()).isEqualTo(900);
+        assertThatThrownBy(() -> ledger.debitAll(new long[]{7}, new long[]{1}))
+                .isInstanceOf(JournalUnavailableException.class);
+        assertThat(new AccountLedger(4, journal.restart()).balance(7L)).isEqualTo(900);
+    }
+
+    @Test
+    void open_shouldKeepAllAccountsAcrossTableGrowth() {
+        AccountLedger ledger = new AccountLedger(2, new NoopBalanceJournal());
+        for (long userId = 2; userId < 100_002; userId++) {
+            ledger.open(userId, userId * 3);
+        }
+
+        assertThat(ledger.size()).isEqualTo(100_001);
+        assertThat(ledger.balance(50_000L)).isEqualTo(150_000L);
+        assertThat(ledger.balance(100_001L)).isEqualTo(300_003L);
+    }
+
+    @Test
+    void toCents_shouldRejectFractionsOfCent() {
+        assertThat(AccountLedger.toCents(new BigDecimal("12.3"))).isEqualTo(1_230);
+        assertThat(AccountLedger.toAmount(1_230)).isEqualByComparingTo("12.30");
+        assertThatThrownBy(() -> AccountLedger.toCents(new BigDecimal("0.001")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void concurrentTransfers_shouldConserveTotalBalance() throws Exception {
+        AccountLedger ledger = new AccountLedger(8, new NoopBalanceJournal());
+        int accounts = 64;
+        for (long userId = 100; userId < 100 + accounts; userId++) {
+            ledger.open(userId, 1_000);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 50_000; i++) {
+                    long from = 100 + random.nextInt(accounts);
+                    long to = 100 + random.nextInt(accounts);
+                    try {
+                        ledger.debit(from, 7);
+                        ledger.credit(to, 7);
+                    } catch (InsufficientFundsException ignored) {
+                        // Счёт опустел - перевод не выполняется
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        long total = 0;
+        for (long userId = 100; userId < 100 + accounts; userId++) {
+            long balance = ledger.balance(userId);
+            assertThat(balance).isNotNegative();
+            total += balance;
+        }
+        assertThat(total).isEqualTo(1_000L * accounts);
+    }
+
+    /**
+     * Журнал в памяти: записи с номером до durableUpTo на диске, принимаются записи до appendUpTo;
+     * ожидание неподтверждённой или попытка добавить лишнюю запись делает журнал недоступным
+     */
+    private static final class FailingJournal implements BalanceJournal {
+        private final List<long[]> records = new ArrayList<>();
+        private long durableUpTo = Long.MAX_VALUE;
+        private long appendUpTo = Long.MAX_VALUE;
+        private boolean failed;
+
+        @Override
+        public void recover(AccountVisitor visitor) {
+            records.forEach(record -> visitor.accept(record[1], record[2], record[0]));
+        }
+
+        @Override
+        public void registerSnapshotSource(Consumer<AccountVisitor> accounts) {
+        }
+
+        @Override
+        public synchronized long append(long userId, long cents) {
+            if (failed || records.size() >= appendUpTo) {
+                failed = true;
+                throw new JournalUnavailableException("Журнал недоступен", null);
+            }
+            records.add(new long[]{records.size() + 1, userId, cents});
+            return records.size();
+        }
+
+        @Override
+        public synchronized void awaitDurable(long seq) {
+            if (seq > durableUpTo) {
+                failed = true;
+                throw new JournalUnavailableException("Журнал недоступен", null);
+            }
+        }
+
+        @Override
+        public synchronized boolean isDurable(long seq) {
+            return seq <= durableUpTo;
+        }
+
+        @Override
+        public synchronized boolean isAvailable() {
+            return !failed;
+        }
+
+        FailingJournal restart() {
+            FailingJournal restarted = new FailingJournal();
+            restarted.records.addAll(records.subList(0, (int) Math.min(records.size(), durableUpTo)));
+            return restarted;
+        }
+    }
+}
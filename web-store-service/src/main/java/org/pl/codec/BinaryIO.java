@@ -0,0 +1,96 @@
+package org.pl.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Примитивы двоичного формата: varint и строки/числа с признаком null
+ */
+final class BinaryIO {
+
+    private BinaryIO() {
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Длина + 1 в varint (0 - null), затем байты UTF-8
+     */
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length + 1L);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        long length = readVarLong(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[Math.toIntExact(length - 1)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Масштаб + 1 в varint (0 - null), затем немасштабированное значение
+     */
+    static void writeDecimal(DataOutput out, BigDecimal value) throws IOException {
+        if (value == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        writeVarLong(out, value.scale() + 1L);
+        byte[] unscaled = value.unscaledValue().toByteArray();
+        writeVarLong(out, unscaled.length);
+        out.write(unscaled);
+    }
+
+    static BigDecimal readDecimal(DataInput in) throws IOException {
+        long scale = readVarLong(in);
+        if (scale == 0) {
+            return null;
+        }
+        byte[] unscaled = new byte[Math.toIntExact(readVarLong(in))];
+        in.readFully(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), Math.toIntExact(scale - 1));
+    }
+
+    /**
+     * id + 1 в varint (0 - null)
+     */
+    static void writeId(DataOutput out, Long id) throws IOException {
+        writeVarLong(out, id == null ? 0 : id + 1);
+    }
+
+    static Long readId(DataInput in) throws IOException {
+        long value = readVarLong(in);
+        return value == 0 ? null : value - 1;
+    }
+}
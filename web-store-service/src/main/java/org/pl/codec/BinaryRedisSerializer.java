@@ -0,0 +1,121 @@
+package org.pl.codec;
+
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+
+/**
+ * Сериализатор значений Redis с двоичными форматами для зарегистрированных типов.
+ * Запись: [tag][version][flags][данные]. tag выбирает EntityCodec, version - версию его формата,
+ * бит FLAG_DEFLATE в flags означает, что данные сжаты (сжимаются только записи от compressionThreshold байт).
+ * Типы без своего кодека пишутся с tag = 0 в JSON через GenericJackson2JsonRedisSerializer.
+ */
+public class BinaryRedisSerializer implements RedisSerializer<Object> {
+
+    static final byte JSON_TAG = 0;
+    static final byte FLAG_DEFLATE = 1;
+    private static final int HEADER_SIZE = 3;
+
+    private final Map<Class<?>, EntityCodec<?>> codecsByType = new HashMap<>();
+    private final Map<Byte, EntityCodec<?>> codecsByTag = new HashMap<>();
+    private final GenericJackson2JsonRedisSerializer json = new GenericJackson2JsonRedisSerializer();
+    private final int compressionThreshold;
+
+    public BinaryRedisSerializer(List<EntityCodec<?>> codecs, int compressionThreshold) {
+        for (EntityCodec<?> codec : codecs) {
+            if (codec.tag() == JSON_TAG || codecsByTag.put(codec.tag(), codec) != null) {
+                throw new IllegalArgumentException("Duplicate or reserved codec tag: " + codec.tag());
+            }
+            codecsByType.put(codec.type(), codec);
+        }
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        EntityCodec<?> codec = codecsByType.get(value.getClass());
+        try {
+            byte tag;
+            byte version;
+            byte[] payload;
+            if (codec == null) {
+                tag = JSON_TAG;
+                version = 0;
+                payload = json.serialize(value);
+            } else {
+                tag = codec.tag();
+                version = codec.version();
+                payload = encode(codec, value);
+            }
+
+            byte flags = 0;
+            if (payload.length >= compressionThreshold) {
+                byte[] compressed = Compression.deflate(payload);
+                if (compressed.length < payload.length) {
+                    payload = compressed;
+                    flags |= FLAG_DEFLATE;
+                }
+            }
+
+            byte[] result = new byte[HEADER_SIZE + payload.length];
+            result[0] = tag;
+            result[1] = version;
+            result[2] = flags;
+            System.arraycopy(payload, 0, result, HEADER_SIZE, payload.length);
+            return result;
+        } catch (IOException e) {
+            throw new SerializationException("Cannot serialize " + value.getClass().getName(), e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes.length < HEADER_SIZE) {
+            throw new SerializationException("Truncated value: " + bytes.length + " bytes");
+        }
+        byte tag = bytes[0];
+        byte version = bytes[1];
+        byte flags = bytes[2];
+        try {
+            byte[] payload = new byte[bytes.length - HEADER_SIZE];
+            System.arraycopy(bytes, HEADER_SIZE, payload, 0, payload.length);
+            if ((flags & FLAG_DEFLATE) != 0) {
+                payload = Compression.inflate(payload);
+            }
+            if (tag == JSON_TAG) {
+                return json.deserialize(payload);
+            }
+            EntityCodec<?> codec = codecsByTag.get(tag);
+            if (codec == null) {
+                // Например, запись в прежнем формате JSON без заголовка
+                throw new SerializationException("Unknown codec tag: " + tag);
+            }
+            return codec.read(version, new DataInputStream(new ByteArrayInputStream(payload)));
+        } catch (IOException | DataFormatException e) {
+            throw new SerializationException("Cannot deserialize value with tag " + tag, e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> byte[] encode(EntityCodec<T> codec, Object value) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(128);
+        codec.write((T) value, new DataOutputStream(buffer));
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,55 @@
+package org.pl.codec;
+
+import org.pl.dto.CachedItemDto;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Версия 1: loadMillis, expiresAtMillis, затем товар в формате ItemCodec с его версией
+ */
+public class CachedItemCodec implements EntityCodec<CachedItemDto> {
+
+    public static final byte TAG = 2;
+
+    private final ItemCodec itemCodec;
+
+    public CachedItemCodec(ItemCodec itemCodec) {
+        this.itemCodec = itemCodec;
+    }
+
+    @Override
+    public byte tag() {
+        return TAG;
+    }
+
+    @Override
+    public byte version() {
+        return 1;
+    }
+
+    @Override
+    public Class<CachedItemDto> type() {
+        return CachedItemDto.class;
+    }
+
+    @Override
+    public void write(CachedItemDto entry, DataOutput out) throws IOException {
+        BinaryIO.writeVarLong(out, entry.loadMillis());
+        out.writeLong(entry.expiresAtMillis());
+        out.writeByte(itemCodec.version());
+        itemCodec.write(entry.item(), out);
+    }
+
+    @Override
+    public CachedItemDto read(byte version, DataInput in) throws IOException {
+        if (version != 1) {
+            throw new IOException("Unsupported CachedItem format version: " + version);
+        }
+        long loadMillis = BinaryIO.readVarLong(in);
+        long expiresAtMillis = in.readLong();
+        byte itemVersion = in.readByte();
+        return new CachedItemDto(itemCodec.read(itemVersion, in), loadMillis, expiresAtMillis);
+    }
+}
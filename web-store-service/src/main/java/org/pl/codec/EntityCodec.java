@@ -0,0 +1,23 @@
+package org.pl.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Двоичный формат одного типа кэшируемых объектов.
+ * tag идентифицирует тип в заголовке записи и не должен меняться; version - текущая версия формата.
+ * read обязан читать все версии, которые могли остаться в кэше.
+ */
+public interface EntityCodec<T> {
+
+    byte tag();
+
+    byte version();
+
+    Class<T> type();
+
+    void write(T value, DataOutput out) throws IOException;
+
+    T read(byte version, DataInput in) throws IOException;
+}
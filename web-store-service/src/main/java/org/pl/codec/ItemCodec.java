@@ -0,0 +1,52 @@
+package org.pl.codec;
+
+import org.pl.dao.Item;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Версия 1: id, title, imgPath, price, description
+ */
+public class ItemCodec implements EntityCodec<Item> {
+
+    public static final byte TAG = 1;
+
+    @Override
+    public byte tag() {
+        return TAG;
+    }
+
+    @Override
+    public byte version() {
+        return 1;
+    }
+
+    @Override
+    public Class<Item> type() {
+        return Item.class;
+    }
+
+    @Override
+    public void write(Item item, DataOutput out) throws IOException {
+        BinaryIO.writeId(out, item.getId());
+        BinaryIO.writeString(out, item.getTitle());
+        BinaryIO.writeString(out, item.getImgPath());
+        BinaryIO.writeDecimal(out, item.getPrice());
+        BinaryIO.writeString(out, item.getDescription());
+    }
+
+    @Override
+    public Item read(byte version, DataInput in) throws IOException {
+        if (version != 1) {
+            throw new IOException("Unsupported Item format version: " + version);
+        }
+        Long id = BinaryIO.readId(in);
+        String title = BinaryIO.readString(in);
+        String imgPath = BinaryIO.readString(in);
+        Item item = new Item(title, imgPath, BinaryIO.readDecimal(in), BinaryIO.readString(in));
+        item.setId(id);
+        return item;
+    }
+}
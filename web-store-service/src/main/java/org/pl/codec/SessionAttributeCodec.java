@@ -0,0 +1,105 @@
+package org.pl.codec;
+
+import org.springframework.core.serializer.support.SerializationFailedException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+
+/**
+ * Компактная сериализация атрибутов сессии: первый байт - тип.
+ * Строки и числа пишутся без обёртки, прочие объекты (SecurityContext, OAuth2-клиенты) -
+ * стандартной Java-сериализацией, со сжатием от compressionThreshold байт.
+ */
+public class SessionAttributeCodec {
+
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte BOOLEAN = 4;
+    private static final byte JAVA = 5;
+    private static final byte JAVA_DEFLATED = 6;
+
+    private final int compressionThreshold;
+
+    public SessionAttributeCodec(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    public byte[] encode(Object value) {
+        if (value instanceof String string) {
+            return withTag(STRING, string.getBytes(StandardCharsets.UTF_8));
+        }
+        if (value instanceof Integer number) {
+            return ByteBuffer.allocate(5).put(INTEGER).putInt(number).array();
+        }
+        if (value instanceof Long number) {
+            return ByteBuffer.allocate(9).put(LONG).putLong(number).array();
+        }
+        if (value instanceof Boolean flag) {
+            return new byte[]{BOOLEAN, (byte) (flag ? 1 : 0)};
+        }
+
+        byte[] serialized = serialize(value);
+        if (serialized.length >= compressionThreshold) {
+            byte[] compressed = Compression.deflate(serialized);
+            if (compressed.length < serialized.length) {
+                return withTag(JAVA_DEFLATED, compressed);
+            }
+        }
+        return withTag(JAVA, serialized);
+    }
+
+    public Object decode(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, bytes.length - 1);
+        try {
+            return switch (bytes[0]) {
+                case STRING -> new String(bytes, 1, bytes.length - 1, StandardCharsets.UTF_8);
+                case INTEGER -> buffer.getInt();
+                case LONG -> buffer.getLong();
+                case BOOLEAN -> bytes[1] != 0;
+                case JAVA -> deserialize(payload(bytes));
+                case JAVA_DEFLATED -> deserialize(Compression.inflate(payload(bytes)));
+                default -> throw new SerializationFailedException("Unknown session attribute type: " + bytes[0]);
+            };
+        } catch (DataFormatException e) {
+            throw new SerializationFailedException("Cannot inflate session attribute", e);
+        }
+    }
+
+    private static byte[] withTag(byte tag, byte[] payload) {
+        byte[] result = new byte[payload.length + 1];
+        result[0] = tag;
+        System.arraycopy(payload, 0, result, 1, payload.length);
+        return result;
+    }
+
+    private static byte[] payload(byte[] bytes) {
+        byte[] payload = new byte[bytes.length - 1];
+        System.arraycopy(bytes, 1, payload, 0, payload.length);
+        return payload;
+    }
+
+    private static byte[] serialize(Object value) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(buffer)) {
+            out.writeObject(value);
+        } catch (IOException e) {
+            throw new SerializationFailedException("Cannot serialize session attribute " + value.getClass().getName(), e);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new SerializationFailedException("Cannot deserialize session attribute", e);
+        }
+    }
+}
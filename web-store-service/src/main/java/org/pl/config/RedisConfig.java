@@ -1,28 +1,55 @@
 package org.pl.config;
 
+import org.pl.codec.BinaryRedisSerializer;
+import org.pl.codec.CachedItemCodec;
+import org.pl.codec.ItemCodec;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
+import java.util.List;
+
 @Configuration
 public class RedisConfig {
 
     @Bean
     public ReactiveRedisTemplate<String, Object> reactiveRedisTemplate(
-            ReactiveRedisConnectionFactory factory) {
+            ReactiveRedisConnectionFactory factory,
+            RedisSerializer<Object> redisValueSerializer) {
 
         RedisSerializationContext<String, Object> context =
                 RedisSerializationContext.<String, Object>newSerializationContext()
                         .key(StringRedisSerializer.UTF_8)
-                        .value(new GenericJackson2JsonRedisSerializer())
+                        .value(redisValueSerializer)
                         .hashKey(StringRedisSerializer.UTF_8)
-                        .hashValue(new GenericJackson2JsonRedisSerializer())
+                        .hashValue(redisValueSerializer)
                         .build();
 
         return new ReactiveRedisTemplate<>(factory, context);
     }
-}
\ No newline at end of file
+
+    /**
+     * Формат значений в Redis: binary - компактные версионированные кодеки (для типов без кодека - JSON),
+     * json - прежний GenericJackson2JsonRedisSerializer с именами классов в каждой записи
+     */
+    @Bean
+    public RedisSerializer<Object> redisValueSerializer(
+            @Value("${redis.value-codec.type:binary}") String codec,
+            @Value("${redis.value-codec.compression-threshold:512}") int compressionThreshold) {
+
+        return switch (codec) {
+            case "binary" -> {
+                ItemCodec itemCodec = new ItemCodec();
+                yield new BinaryRedisSerializer(List.of(itemCodec, new CachedItemCodec(itemCodec)), compressionThreshold);
+            }
+            case "json" -> new GenericJackson2JsonRedisSerializer();
+            default -> throw new IllegalStateException("Unexpected value: " + codec);
+        };
+    }
+}
@@ -0,0 +1,23 @@
+package org.pl.config;
+
+import org.pl.session.RedisWebSessionStore;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.server.adapter.WebHttpHandlerBuilder;
+import org.springframework.web.server.session.DefaultWebSessionManager;
+import org.springframework.web.server.session.WebSessionManager;
+
+@Configuration
+public class SessionConfig {
+
+    /**
+     * Сессии хранятся в Redis, а не в памяти экземпляра, поэтому вход и корзина
+     * не теряются при переключении балансировщика на другой экземпляр приложения
+     */
+    @Bean(WebHttpHandlerBuilder.WEB_SESSION_MANAGER_BEAN_NAME)
+    public WebSessionManager webSessionManager(RedisWebSessionStore redisWebSessionStore) {
+        DefaultWebSessionManager sessionManager = new DefaultWebSessionManager();
+        sessionManager.setSessionStore(redisWebSessionStore);
+        return sessionManager;
+    }
+}
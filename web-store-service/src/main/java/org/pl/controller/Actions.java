@@ -3,9 +3,12 @@ package org.pl.controller;
 public final class Actions {
     static final String loginAction = "/oauth2/authorization/keycloak";
     static final String publicItemsAction = "/public/items";
+    static final String publicSuggestAction = publicItemsAction + "/suggest";
     public static final String itemsAction = "/items";
     static final String itemsToCartAction = itemsAction + "/cart";
+    static final String itemsCacheStatsAction = itemsAction + "/cache-stats";
     static final String cartAction = "/cart";
+    static final String cartApiAction = "/api/cart";
     static final String ordersAction = "/orders";
     static final String buyAction = "/buy";
 }
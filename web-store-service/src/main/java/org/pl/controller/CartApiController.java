@@ -0,0 +1,66 @@
+package org.pl.controller;
+
+import org.pl.dao.Item;
+import org.pl.dto.CartChangeDto;
+import org.pl.service.ItemService;
+import org.pl.service.SessionItemsCountsService;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static org.pl.controller.Actions.cartApiAction;
+
+/**
+ * JSON-API корзины для кнопок PLUS/MINUS/DELETE: вместо redirect и полной перерисовки каталога
+ * возвращает только изменённую позицию, количество для значка корзины и изменение итоговой суммы.
+ * На нажатие приходится одна операция с корзиной в хранилище и чтение цены товара из кэша
+ */
+@RestController
+@RequestMapping(cartApiAction)
+public class CartApiController {
+
+    private final SessionItemsCountsService sessionItemsCountsService;
+    private final ItemService itemService;
+
+    public CartApiController(
+            SessionItemsCountsService sessionItemsCountsService,
+            ItemService itemService
+    ) {
+        this.sessionItemsCountsService = sessionItemsCountsService;
+        this.itemService = itemService;
+    }
+
+    @PostMapping("/items/{id}")
+    public Mono<CartChangeDto> changeItemCount(
+            @PathVariable Long id,
+            @RequestParam String action,
+            ServerWebExchange exchange
+    ) {
+        // Цену берём до изменения: несуществующий товар не должен попасть в корзину
+        Mono<BigDecimal> priceMono = itemService.getItemById(id)
+                .map(Item::getPrice)
+                .switchIfEmpty(Mono.defer(() -> "DELETE".equals(action)
+                        ? Mono.just(BigDecimal.ZERO)
+                        : Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Item not found: " + id))));
+
+        return priceMono.flatMap(price -> sessionItemsCountsService.changeItemCount(exchange, id, action)
+                .map(change -> new CartChangeDto(
+                        id,
+                        change.count(),
+                        price.multiply(BigDecimal.valueOf(change.count())),
+                        change.totalCount(),
+                        price.multiply(BigDecimal.valueOf(change.appliedDelta()))
+                )));
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Map<String, String> handleIllegalArgument(IllegalArgumentException e) {
+        return Map.of("error", e.getMessage());
+    }
+}
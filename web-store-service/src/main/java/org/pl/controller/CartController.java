@@ -36,23 +36,17 @@ public class CartController {
 
     @GetMapping(cartAction)
     public Mono<Rendering> cartAction(ServerWebExchange exchange) {
+        // Товары, количества и сумма - из одного расчёта корзины
         return Mono.zip(
-                        sessionItemsCountsService
-                                .getCartItems(exchange)
-                                .doOnNext(
-                                        items -> items.entrySet().removeIf(
-                                                entry -> entry.getValue() == 0
-                                        )
-                                ),
-                        cartService.getItemsByItemsCounts(exchange),
-                        cartService.getTotalItemsSum(exchange),
+                        cartService.getPricedCart(exchange),
                         exchange.getSession()
                 )
                 .map(tuple -> {
-                    var cartItems = tuple.getT1();
-                    var items = tuple.getT2();
-                    var totalItemsSum = tuple.getT3();
-                    var session = tuple.getT4();
+                    var pricedCart = tuple.getT1();
+                    var cartItems = pricedCart.quantities();
+                    var items = pricedCart.items();
+                    var totalItemsSum = pricedCart.totalSum();
+                    var session = tuple.getT2();
 
                     // Получаем toast из сессии
                     String toastMessage = (String) session.getAttributes().get("toastMessage");
@@ -1,13 +1,14 @@
 package org.pl.controller;
 
 import org.pl.dao.Item;
+import org.pl.dto.ItemCacheStatsDto;
 import org.pl.dto.PagingInfoDto;
+import org.pl.service.ItemCursor;
 import org.pl.service.ItemService;
-import org.pl.service.RedisCacheItemService;
 import org.pl.service.SessionItemsCountsService;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.stereotype.Controller;
@@ -26,16 +27,13 @@ import static org.pl.controller.Actions.*;
 @RequestMapping()
 public class ItemController {
 
-    private final RedisCacheItemService redisCacheItemService;
     private final ItemService itemService;
     private final SessionItemsCountsService sessionItemsCountsService;
 
     public ItemController(
-            RedisCacheItemService redisCacheItemService,
             ItemService itemService,
             SessionItemsCountsService sessionItemsCountsService
     ) {
-        this.redisCacheItemService = redisCacheItemService;
         this.itemService = itemService;
         this.sessionItemsCountsService = sessionItemsCountsService;
     }
@@ -47,18 +45,24 @@ public class ItemController {
             @RequestParam(defaultValue = "5") int pageSize,
             @RequestParam(defaultValue = "NO") String sort,
             @RequestParam(required = false) String search,
+            @RequestParam(required = false) String after,
             ServerWebExchange exchange
     ) {
         System.out.println((String) Objects.requireNonNull(user.getAttribute("sub")));
         Pageable pageable = PageRequest.of(pageNumber - 1, pageSize);
 
+        // Если передан курсор after - keyset-пагинация, иначе обычная по номеру страницы
+        Mono<? extends Slice<List<Item>>> itemsMono = (after == null || after.isEmpty())
+                ? itemService.getItemsSorted(pageable, sort, search)
+                : itemService.getItemsAfter(after, pageable, sort, search);
+
         return Mono.zip(
-                        itemService.getItemsSorted(pageable, sort, search),
+                        itemsMono,
                         sessionItemsCountsService.getCartItems(exchange),
                         sessionItemsCountsService.checkItemsCount(exchange)
                 )
                 .map(tuple -> {
-                    Page<List<Item>> itemPage = tuple.getT1();
+                    Slice<List<Item>> itemPage = tuple.getT1();
                     var cartItems = tuple.getT2();
                     Integer totalItemsCounts = tuple.getT3();
 
@@ -66,15 +70,10 @@ public class ItemController {
                             .modelAttribute("items", itemPage.getContent())
                             .modelAttribute("sort", sort)
                             .modelAttribute("search", search)
+                            .modelAttribute("after", after)
                             .modelAttribute("cartItems", cartItems)
                             .modelAttribute("totalItemsCounts", totalItemsCounts)
-                            .modelAttribute("paging", new PagingInfoDto(
-                                    itemPage.getNumber() + 1,
-                                    itemPage.getTotalPages(),
-                                    itemPage.getSize(),
-                                    itemPage.hasPrevious(),
-                                    itemPage.hasNext()
-                            ))
+                            .modelAttribute("paging", PagingInfoDto.of(itemPage, ItemCursor.next(itemPage, sort)))
                             .modelAttribute("ordersAction", ordersAction)
                             .modelAttribute("cartAction", cartAction)
                             .modelAttribute("itemsAction", itemsAction)
@@ -95,6 +94,7 @@ public class ItemController {
                         String sort = formData.getFirst("sort");
                         String pageSizeStr = formData.getFirst("pageSize");
                         String pageNumberStr = formData.getFirst("pageNumber");
+                        String after = formData.getFirst("after");
 
                         // Проверяем обязательные поля
                         if (idStr == null || idStr.trim().isEmpty()) {
@@ -115,7 +115,7 @@ public class ItemController {
 
                         // Выполняем действие и редирект
                         return sessionItemsCountsService.updateItemCount(exchange, id, action)
-                                .thenReturn(buildRedirectUrl(pageNumber, pageSize, sort, search));
+                                .thenReturn(buildRedirectUrl(pageNumber, pageSize, sort, search, after));
 
                     } catch (NumberFormatException e) {
                         return Mono.error(new IllegalArgumentException("Invalid number format", e));
@@ -140,7 +140,7 @@ public class ItemController {
         }
     }
 
-    private String buildRedirectUrl(int pageNumber, int pageSize, String sort, String search) {
+    private String buildRedirectUrl(int pageNumber, int pageSize, String sort, String search, String after) {
         StringBuilder url = new StringBuilder("redirect:").append(itemsAction);
         url.append("?pageNumber=").append(pageNumber);
         url.append("&pageSize=").append(pageSize);
@@ -151,6 +151,9 @@ public class ItemController {
         if (search != null && !search.trim().isEmpty()) {
             url.append("&search=").append(search);
         }
+        if (after != null && !after.isEmpty()) {
+            url.append("&after=").append(after);
+        }
 
         return url.toString();
     }
@@ -168,20 +171,12 @@ public class ItemController {
             @PathVariable Long id,
             ServerWebExchange exchange
     ) {
-        // Получаем item из кэша или БД
-        Mono<Item> itemMono = redisCacheItemService.getItemFromCache(id)
-                .switchIfEmpty(Mono.defer(() ->
-                        itemService.getItemById(id)
-                                .switchIfEmpty(Mono.error(new RuntimeException("Item not found")))
-                                .flatMap(item ->
-                                        // Сохраняем в кэш и возвращаем item
-                                        redisCacheItemService.saveItemToCache(item).thenReturn(item)
-                                )
-                ));
+        // ItemService читает товар через кэш Redis
+        Mono<Item> itemMono = itemService.getItemById(id)
+                .switchIfEmpty(Mono.error(new RuntimeException("Item not found")));
 
         return Mono.zip(
                         itemMono,
-                        itemService.getItemById(id).switchIfEmpty(Mono.error(new RuntimeException("Item not found"))),
                         sessionItemsCountsService.getCartItems(exchange),
                         sessionItemsCountsService.checkItemsCount(exchange),
                         exchange.getSession()
@@ -190,10 +185,10 @@ public class ItemController {
 
                     Item item = tuple.getT1();
 
-                    var cartItems = tuple.getT3();
-                    Integer totalItemsCounts = tuple.getT4();
+                    var cartItems = tuple.getT2();
+                    Integer totalItemsCounts = tuple.getT3();
                     Integer itemCount = cartItems.get(id);
-                    var session = tuple.getT5();
+                    var session = tuple.getT4();
 
                     // Получаем toast из сессии
                     String toastMessage = (String) session.getAttributes().get("toastMessage");
@@ -218,6 +213,15 @@ public class ItemController {
                 });
     }
 
+    /**
+     * Доли попаданий в кэш товаров по уровням (L1 - память процесса, L2 - Redis)
+     */
+    @GetMapping(itemsCacheStatsAction)
+    @ResponseBody
+    public Mono<ItemCacheStatsDto> getCacheStats() {
+        return Mono.fromSupplier(itemService::getCacheStats);
+    }
+
     @PostMapping(value = itemsAction + "/{id}")
     public Mono<String> increaseDecreaseItemCount(
             @PathVariable Long id,
@@ -2,35 +2,43 @@ package org.pl.controller;
 
 import org.pl.dao.Item;
 import org.pl.dto.PagingInfoDto;
+import org.pl.service.ItemCursor;
+import org.pl.service.ItemSearchIndex;
 import org.pl.service.ItemService;
-import org.pl.service.RedisCacheItemService;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.reactive.result.view.Rendering;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 import static org.pl.controller.Actions.loginAction;
 import static org.pl.controller.Actions.publicItemsAction;
+import static org.pl.controller.Actions.publicSuggestAction;
 
 
 @Controller
 @RequestMapping()
 public class PublicItemController {
 
-    private final RedisCacheItemService redisCacheItemService;
+    private static final int MAX_SUGGESTIONS = 20;
+
     private final ItemService itemService;
+    private final ItemSearchIndex itemSearchIndex;
 
     public PublicItemController(
-            RedisCacheItemService redisCacheItemService,
-            ItemService itemService
+            ItemService itemService,
+            ItemSearchIndex itemSearchIndex
     ) {
-        this.redisCacheItemService = redisCacheItemService;
         this.itemService = itemService;
+        this.itemSearchIndex = itemSearchIndex;
     }
 
     @GetMapping()
@@ -43,39 +51,45 @@ public class PublicItemController {
             @RequestParam(defaultValue = "1") int pageNumber,
             @RequestParam(defaultValue = "5") int pageSize,
             @RequestParam(defaultValue = "NO") String sort,
-            @RequestParam(required = false) String search
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) String after
     ) {
         Pageable pageable = PageRequest.of(pageNumber - 1, pageSize);
 
-        return itemService.getItemsSorted(pageable, sort, search)
+        // Если передан курсор after - keyset-пагинация, иначе обычная по номеру страницы
+        Mono<? extends Slice<List<Item>>> itemsMono = (after == null || after.isEmpty())
+                ? itemService.getItemsSorted(pageable, sort, search)
+                : itemService.getItemsAfter(after, pageable, sort, search);
+
+        return itemsMono
                 .map(itemPage -> Rendering.view("public_items")
                         .modelAttribute("items", itemPage.getContent())
                         .modelAttribute("sort", sort)
                         .modelAttribute("search", search)
-                        .modelAttribute("paging", new PagingInfoDto(
-                                itemPage.getNumber() + 1,
-                                itemPage.getTotalPages(),
-                                itemPage.getSize(),
-                                itemPage.hasPrevious(),
-                                itemPage.hasNext()
-                        ))
+                        .modelAttribute("paging", PagingInfoDto.of(itemPage, ItemCursor.next(itemPage, sort)))
                         .modelAttribute("loginAction", loginAction)
                         .modelAttribute("publicItemsAction", publicItemsAction)
                         .build());
     }
 
+    /**
+     * Подсказки для строки поиска: названия товаров по введённому префиксу, JSON-массив строк.
+     * Отвечает из индекса в памяти, без обращения к БД.
+     */
+    @GetMapping(publicSuggestAction)
+    @ResponseBody
+    public Mono<List<String>> suggest(
+            @RequestParam(defaultValue = "") String q,
+            @RequestParam(defaultValue = "10") int limit
+    ) {
+        return Mono.fromSupplier(() -> itemSearchIndex.suggest(q, Math.min(limit, MAX_SUGGESTIONS)));
+    }
+
     @GetMapping(publicItemsAction + "/{id}")
     public Mono<Rendering> getItemById(@PathVariable Long id) {
-        // Получаем item из кэша или БД
-        Mono<Item> itemMono = redisCacheItemService.getItemFromCache(id)
-                .switchIfEmpty(Mono.defer(() ->
-                        itemService.getItemById(id)
-                                .switchIfEmpty(Mono.error(new RuntimeException("Item not found")))
-                                .flatMap(item ->
-                                        // Сохраняем в кэш и возвращаем item
-                                        redisCacheItemService.saveItemToCache(item).thenReturn(item)
-                                )
-                ));
+        // ItemService читает товар через кэш Redis
+        Mono<Item> itemMono = itemService.getItemById(id)
+                .switchIfEmpty(Mono.error(new RuntimeException("Item not found")));
 
         return itemMono.map(item -> Rendering.view("public_item")
                 .modelAttribute("item", item)
@@ -30,6 +30,14 @@ public class Item {
         this.description = description;
     }
 
+    /**
+     * Копия товара: кэш и загрузчики отдают каждому вызывающему свой экземпляр
+     */
+    public Item(Item source) {
+        this(source.title, source.imgPath, source.price, source.description);
+        this.id = source.id;
+    }
+
     public void setId(Long id) {
         this.id = id;
     }
@@ -0,0 +1,11 @@
+package org.pl.dto;
+
+import org.pl.dao.Item;
+
+/**
+ * Запись кэша товара в Redis.
+ * loadMillis - сколько длилась загрузка товара из БД, expiresAtMillis - момент истечения TTL;
+ * по ним решается, обновить ли запись заранее (вероятностное раннее обновление, XFetch).
+ */
+public record CachedItemDto(Item item, long loadMillis, long expiresAtMillis) {
+}
@@ -0,0 +1,17 @@
+package org.pl.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Результат изменения количества товара в корзине: изменённая позиция, значок корзины и изменение итоговой суммы.
+ * Корзина при этом не перечитывается и не пересчитывается: страница прибавляет totalSumDelta
+ * (цена товара, умноженная на фактическое изменение количества) к уже показанной сумме
+ */
+public record CartChangeDto(
+        Long itemId,
+        int count,
+        BigDecimal lineTotal,
+        int totalCount,
+        BigDecimal totalSumDelta
+) {
+}
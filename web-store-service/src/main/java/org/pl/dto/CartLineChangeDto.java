@@ -0,0 +1,15 @@
+package org.pl.dto;
+
+/**
+ * Результат одного изменения позиции корзины: количество до и после и общее количество единиц в корзине после него.
+ * Все три значения получены одной атомарной операцией хранилища
+ */
+public record CartLineChangeDto(int previousCount, int count, int totalCount) {
+
+    /**
+     * Фактическое изменение количества позиции; 0, если количество не изменилось (MINUS при нуле)
+     */
+    public int appliedDelta() {
+        return count - previousCount;
+    }
+}
@@ -0,0 +1,11 @@
+package org.pl.dto;
+
+import org.pl.dao.Item;
+
+import java.util.List;
+
+/**
+ * Страница товаров вместе с общим количеством совпадений, полученные одним запросом к БД
+ */
+public record CountedItemsDto(List<Item> items, long totalCount) {
+}
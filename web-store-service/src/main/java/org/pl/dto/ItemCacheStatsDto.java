@@ -0,0 +1,15 @@
+package org.pl.dto;
+
+/**
+ * Статистика кэша товаров по уровням: L1 - память процесса, L2 - Redis
+ */
+public record ItemCacheStatsDto(
+        long localSize,
+        long localHits,
+        long localMisses,
+        double localHitRatio,
+        long remoteHits,
+        long remoteMisses,
+        double remoteHitRatio
+) {
+}
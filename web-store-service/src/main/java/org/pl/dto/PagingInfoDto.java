@@ -1,10 +1,31 @@
 package org.pl.dto;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+
 public record PagingInfoDto(
         int pageNumber,
         int totalPages,
         int pageSize,
         boolean hasPrevious,
-        boolean hasNext
+        boolean hasNext,
+        String nextCursor
 ) {
+    public PagingInfoDto(int pageNumber, int totalPages, int pageSize, boolean hasPrevious, boolean hasNext) {
+        this(pageNumber, totalPages, pageSize, hasPrevious, hasNext, null);
+    }
+
+    /**
+     * Для keyset-страницы (Slice) общее количество страниц неизвестно, totalPages = 0
+     */
+    public static PagingInfoDto of(Slice<?> slice, String nextCursor) {
+        return new PagingInfoDto(
+                slice.getNumber() + 1,
+                slice instanceof Page<?> page ? page.getTotalPages() : 0,
+                slice.getSize(),
+                slice.hasPrevious(),
+                slice.hasNext(),
+                nextCursor
+        );
+    }
 }
@@ -0,0 +1,38 @@
+package org.pl.dto;
+
+import org.pl.dao.Item;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Корзина с ценами, рассчитанная один раз за запрос: один и тот же снимок используется
+ * для отображения, проверки баланса и сохранения позиций заказа.
+ * missingItemIds - товары из корзины, которых уже нет в каталоге
+ */
+public record PricedCartDto(List<PricedCartLineDto> lines, Set<Long> missingItemIds, int totalCount, BigDecimal totalSum) {
+
+    public static final PricedCartDto EMPTY = new PricedCartDto(List.of(), Set.of(), 0, BigDecimal.ZERO);
+
+    public boolean isEmpty() {
+        return lines.isEmpty() && missingItemIds.isEmpty();
+    }
+
+    public List<Item> items() {
+        return lines.stream().map(PricedCartLineDto::item).toList();
+    }
+
+    /**
+     * itemId -> количество, в порядке позиций
+     */
+    public Map<Long, Integer> quantities() {
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (PricedCartLineDto line : lines) {
+            quantities.put(line.item().getId(), line.quantity());
+        }
+        return quantities;
+    }
+}
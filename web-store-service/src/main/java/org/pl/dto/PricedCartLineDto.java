@@ -0,0 +1,11 @@
+package org.pl.dto;
+
+import org.pl.dao.Item;
+
+import java.math.BigDecimal;
+
+/**
+ * Позиция корзины с ценой на момент расчёта: subtotal = price * quantity
+ */
+public record PricedCartLineDto(Item item, int quantity, BigDecimal subtotal) {
+}
@@ -0,0 +1,12 @@
+package org.pl.exception;
+
+import java.util.UUID;
+
+/**
+ * Платёжный сервис не нашёл резерв при списании (HOLD_NOT_FOUND): он истёк или снят, ничего не списано
+ */
+public class HoldExpiredException extends BalanceServiceException {
+    public HoldExpiredException(UUID holdId, Throwable cause) {
+        super("резерв " + holdId + " не найден или истёк, оплата не списана", cause);
+    }
+}
@@ -6,8 +6,16 @@ import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
 
+import java.util.Collection;
+
 @Repository
-public interface ItemRepository extends ReactiveCrudRepository<Item, Long> {
+public interface ItemRepository extends ReactiveCrudRepository<Item, Long>, ItemRepositoryCustom {
     @Query("SELECT * FROM items WHERE LOWER(title) LIKE LOWER(CONCAT('%', :title, '%'))")
     Flux<Item> findByTitleContainingIgnoreCase(String title);
+
+    /**
+     * Загружает товары по списку id одним запросом. Размер списка ограничивает вызывающий код
+     */
+    @Query("SELECT * FROM items WHERE id IN (:ids)")
+    Flux<Item> findByIdIn(Collection<Long> ids);
 }
@@ -0,0 +1,27 @@
+package org.pl.repository;
+
+import org.pl.dao.Item;
+import org.pl.dto.CountedItemsDto;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ItemRepositoryCustom {
+    /**
+     * Возвращает одну страницу каталога: сортировка, LIMIT и OFFSET выполняются в БД.
+     * Если title пустой, фильтр не применяется; иначе каждый токен title должен встретиться в названии
+     * или описании товара - по тем же правилам, что и в поиске по индексу в памяти.
+     */
+    Flux<Item> findPage(String title, ItemSort sort, long offset, int limit);
+
+    /**
+     * То же, что findPage, но вместе со страницей возвращает общее количество совпадений.
+     * Количество считается оконной функцией COUNT(*) OVER() в том же запросе.
+     */
+    Mono<CountedItemsDto> findPageWithTotal(String title, ItemSort sort, long offset, int limit);
+
+    /**
+     * Keyset-пагинация: возвращает до limit товаров, следующих за парой (afterKey, afterId).
+     * Стоимость запроса не зависит от глубины страницы.
+     */
+    Flux<Item> findPageAfter(String title, ItemSort sort, Object afterKey, long afterId, int limit);
+}
@@ -0,0 +1,137 @@
+package org.pl.repository;
+
+import org.pl.dao.Item;
+import org.pl.dto.CountedItemsDto;
+import org.springframework.data.r2dbc.convert.R2dbcConverter;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class ItemRepositoryCustomImpl implements ItemRepositoryCustom {
+
+    // Каждый токен запроса должен встретиться в названии или описании - так же ищет ItemSearchIndex,
+    // поэтому выдача и количество не зависят от того, загружен ли индекс
+    private static final String TERM_FILTER =
+            "(title_lower LIKE CONCAT('%', :term, '%') OR LOWER(description) LIKE CONCAT('%', :term, '%'))";
+
+    private final DatabaseClient databaseClient;
+    private final R2dbcConverter converter;
+
+    ItemRepositoryCustomImpl(DatabaseClient databaseClient, R2dbcConverter converter) {
+        this.databaseClient = databaseClient;
+        this.converter = converter;
+    }
+
+    @Override
+    public Flux<Item> findPage(String title, ItemSort sort, long offset, int limit) {
+        List<String> terms = terms(title);
+
+        String sql = "SELECT * FROM items"
+                + (hasTitle(title) ? " WHERE " + termFilter(terms) : "")
+                + " ORDER BY " + sort.getOrderBy()
+                + " LIMIT :limit OFFSET :offset";
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql)
+                .bind("limit", limit)
+                .bind("offset", offset);
+
+        return fetchItems(bindTerms(spec, terms));
+    }
+
+    @Override
+    public Mono<CountedItemsDto> findPageWithTotal(String title, ItemSort sort, long offset, int limit) {
+        List<String> terms = terms(title);
+        String where = hasTitle(title) ? " WHERE " + termFilter(terms) : "";
+
+        String sql = "SELECT items.*, COUNT(*) OVER() AS total_count FROM items"
+                + where
+                + " ORDER BY " + sort.getOrderBy()
+                + " LIMIT :limit OFFSET :offset";
+
+        DatabaseClient.GenericExecuteSpec spec = bindTerms(databaseClient.sql(sql)
+                .bind("limit", limit)
+                .bind("offset", offset), terms);
+
+        return spec
+                .map((row, metadata) -> Tuples.of(
+                        converter.read(Item.class, row, metadata),
+                        row.get("total_count", Long.class)
+                ))
+                .all()
+                .collectList()
+                .flatMap(rows -> {
+                    if (!rows.isEmpty()) {
+                        List<Item> items = rows.stream().map(Tuple2::getT1).toList();
+                        return Mono.just(new CountedItemsDto(items, rows.getFirst().getT2()));
+                    }
+                    if (offset == 0) {
+                        return Mono.just(new CountedItemsDto(List.of(), 0));
+                    }
+                    // Страница за пределами выборки: оконная функция не вернула строк, считаем отдельно
+                    return countItems(terms, where)
+                            .map(total -> new CountedItemsDto(List.of(), total));
+                });
+    }
+
+    @Override
+    public Flux<Item> findPageAfter(String title, ItemSort sort, Object afterKey, long afterId, int limit) {
+        List<String> terms = terms(title);
+
+        String sql = "SELECT * FROM items WHERE " + sort.getSeekCondition()
+                + (hasTitle(title) ? " AND " + termFilter(terms) : "")
+                + " ORDER BY " + sort.getOrderBy()
+                + " LIMIT :limit";
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql)
+                .bind("afterId", afterId)
+                .bind("limit", limit);
+        if (sort.hasKey()) {
+            spec = spec.bind("afterKey", afterKey);
+        }
+
+        return fetchItems(bindTerms(spec, terms));
+    }
+
+    private Mono<Long> countItems(List<String> terms, String where) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql("SELECT COUNT(*) AS total_count FROM items" + where);
+        return bindTerms(spec, terms).map(row -> row.get("total_count", Long.class)).one();
+    }
+
+    private Flux<Item> fetchItems(DatabaseClient.GenericExecuteSpec spec) {
+        return spec.map((row, metadata) -> converter.read(Item.class, row, metadata)).all();
+    }
+
+    private static List<String> terms(String title) {
+        return List.copyOf(SearchTerms.tokenize(title));
+    }
+
+    /**
+     * Условие на все токены запроса; запрос без букв и цифр, как и в индексе, ничего не находит
+     */
+    private static String termFilter(List<String> terms) {
+        if (terms.isEmpty()) {
+            return "FALSE";
+        }
+        List<String> conditions = new ArrayList<>(terms.size());
+        for (int i = 0; i < terms.size(); i++) {
+            conditions.add(TERM_FILTER.replace(":term", ":term" + i));
+        }
+        return String.join(" AND ", conditions);
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bindTerms(DatabaseClient.GenericExecuteSpec spec, List<String> terms) {
+        for (int i = 0; i < terms.size(); i++) {
+            spec = spec.bind("term" + i, terms.get(i));
+        }
+        return spec;
+    }
+
+    private boolean hasTitle(String title) {
+        return title != null && !title.isEmpty();
+    }
+}
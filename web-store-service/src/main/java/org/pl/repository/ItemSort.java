@@ -0,0 +1,90 @@
+package org.pl.repository;
+
+import org.pl.dao.Item;
+
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * Варианты сортировки каталога и соответствующие им выражения ORDER BY.
+ * id добавлен вторым ключом, чтобы порядок страниц был детерминированным.
+ */
+public enum ItemSort {
+    NO("id ASC", null, true),
+    PRICE_ASC("price ASC, id ASC", "price", true),
+    PRICE_DESC("price DESC, id DESC", "price", false),
+    ALPHA_ASC("title_lower ASC, id ASC", "title_lower", true),
+    ALPHA_DESC("title_lower DESC, id DESC", "title_lower", false);
+
+    private final String orderBy;
+    private final String keyColumn;
+    private final boolean ascending;
+
+    ItemSort(String orderBy, String keyColumn, boolean ascending) {
+        this.orderBy = orderBy;
+        this.keyColumn = keyColumn;
+        this.ascending = ascending;
+    }
+
+    public String getOrderBy() {
+        return orderBy;
+    }
+
+    /**
+     * Условие keyset-пагинации: строки строго после пары (:afterKey, :afterId) в порядке сортировки
+     */
+    public String getSeekCondition() {
+        String op = ascending ? ">" : "<";
+        if (keyColumn == null) {
+            return "id " + op + " :afterId";
+        }
+        return "(" + keyColumn + " " + op + " :afterKey OR (" + keyColumn + " = :afterKey AND id " + op + " :afterId))";
+    }
+
+    public boolean hasKey() {
+        return keyColumn != null;
+    }
+
+    /**
+     * Значение ключа сортировки товара в том виде, в каком оно хранится в БД
+     */
+    public Object keyOf(Item item) {
+        return switch (this) {
+            case NO -> null;
+            case PRICE_ASC, PRICE_DESC -> item.getPrice();
+            case ALPHA_ASC, ALPHA_DESC -> item.getTitle().toLowerCase(Locale.ROOT);
+        };
+    }
+
+    /**
+     * Тот же порядок, что и ORDER BY, для сортировки товаров в памяти
+     */
+    public Comparator<Item> comparator() {
+        Comparator<Item> byId = Comparator.comparing(Item::getId);
+        return switch (this) {
+            case NO -> byId;
+            case PRICE_ASC -> Comparator.comparing(Item::getPrice).thenComparing(byId);
+            case PRICE_DESC -> Comparator.comparing(Item::getPrice).thenComparing(byId).reversed();
+            case ALPHA_ASC -> Comparator.comparing((Item item) -> (String) keyOf(item)).thenComparing(byId);
+            case ALPHA_DESC -> Comparator.comparing((Item item) -> (String) keyOf(item)).thenComparing(byId).reversed();
+        };
+    }
+
+    public Object parseKey(String key) {
+        return switch (this) {
+            case NO -> null;
+            case PRICE_ASC, PRICE_DESC -> new BigDecimal(key);
+            case ALPHA_ASC, ALPHA_DESC -> key;
+        };
+    }
+
+    public static ItemSort from(String sortBy) {
+        for (ItemSort sort : values()) {
+            if (sort.name().equals(sortBy)) {
+                return sort;
+            }
+        }
+        throw new IllegalStateException("Unexpected value: " + sortBy);
+    }
+}
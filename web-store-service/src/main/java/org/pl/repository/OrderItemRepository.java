@@ -7,7 +7,7 @@ import reactor.core.publisher.Flux;
 
 import java.util.UUID;
 
-public interface OrderItemRepository extends ReactiveCrudRepository<OrderItem, Long> {
+public interface OrderItemRepository extends ReactiveCrudRepository<OrderItem, Long>, OrderItemRepositoryCustom {
     @Query("SELECT * FROM order_items")
     Flux<OrderItem> findAllWithAssociations();
 
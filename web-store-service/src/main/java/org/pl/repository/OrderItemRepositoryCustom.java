@@ -0,0 +1,14 @@
+package org.pl.repository;
+
+import org.pl.dao.OrderItem;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+public interface OrderItemRepositoryCustom {
+    /**
+     * Вставляет все позиции заказа одним пакетом (Statement.add) за один обмен с БД.
+     * Сгенерированные id в позиции не записываются; возвращает количество вставленных строк.
+     */
+    Mono<Long> insertAll(List<OrderItem> orderItems);
+}
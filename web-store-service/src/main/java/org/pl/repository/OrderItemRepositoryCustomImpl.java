@@ -0,0 +1,44 @@
+package org.pl.repository;
+
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Statement;
+import org.pl.dao.OrderItem;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+class OrderItemRepositoryCustomImpl implements OrderItemRepositoryCustom {
+
+    private static final String INSERT_SQL = "INSERT INTO order_items (order_id, item_id, quantity) VALUES ($1, $2, $3)";
+
+    private final DatabaseClient databaseClient;
+
+    OrderItemRepositoryCustomImpl(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    @Override
+    public Mono<Long> insertAll(List<OrderItem> orderItems) {
+        if (orderItems.isEmpty()) {
+            return Mono.just(0L);
+        }
+        // DatabaseClient берёт соединение текущей реактивной транзакции, поэтому пакет откатывается вместе с заказом
+        return databaseClient.inConnection(connection -> {
+            Statement statement = connection.createStatement(INSERT_SQL);
+            for (int i = 0; i < orderItems.size(); i++) {
+                if (i > 0) {
+                    statement.add();
+                }
+                OrderItem orderItem = orderItems.get(i);
+                statement.bind(0, orderItem.getOrderId())
+                        .bind(1, orderItem.getItemId())
+                        .bind(2, orderItem.getQuantity());
+            }
+            return Flux.from(statement.execute())
+                    .flatMap(Result::getRowsUpdated)
+                    .reduce(0L, Long::sum);
+        });
+    }
+}
@@ -6,6 +6,14 @@ import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import reactor.core.publisher.Mono;
 
 public interface OrderRepository extends ReactiveCrudRepository<Order, Long> {
-    @Query("SELECT order_number FROM orders ORDER BY order_date DESC LIMIT 1")
-    Mono<String> findLastOrderNumber();
+
+    /**
+     * Наибольший числовой номер среди заказов с номером prefix + число; пусто, если таких заказов нет
+     */
+    @Query("""
+        SELECT MAX(CAST(SUBSTRING(order_number, LENGTH(:prefix) + 1) AS BIGINT))
+        FROM orders
+        WHERE order_number LIKE CONCAT(:prefix, '%')
+    """)
+    Mono<Long> findMaxOrderSequence(String prefix);
 }
@@ -0,0 +1,31 @@
+package org.pl.repository;
+
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Разбиение поискового запроса на токены. Общее для поиска по индексу в памяти и для поиска в БД,
+ * чтобы оба находили одни и те же товары.
+ */
+public final class SearchTerms {
+
+    private SearchTerms() {
+    }
+
+    /**
+     * Токены в нижнем регистре: последовательности букв и цифр, без повторов, в порядке появления
+     */
+    public static Set<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return Set.of();
+        }
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,210 @@
+package org.pl.service;
+
+import org.pl.exception.BalanceServiceException;
+import org.pl.exception.HoldExpiredException;
+import org.pl.exception.InsufficientFundsException;
+import org.pl.exception.PaymentException;
+import org.pl.webstore.client.payment.api.DefaultApi;
+import org.pl.webstore.client.payment.model.BalanceDebitRequest;
+import org.pl.webstore.client.payment.model.BalanceResponse;
+import org.pl.webstore.client.payment.model.BalanceUpdateRequest;
+import org.pl.webstore.client.payment.model.ErrorResponse;
+import org.pl.webstore.client.payment.model.HoldRequest;
+import org.pl.webstore.client.payment.model.HoldResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import reactor.util.retry.Retry;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.UnaryOperator;
+
+/**
+ * Баланс пользователя в платёжном сервисе.
+ * Списание - одна атомарная операция сервиса. Остальные изменения (возвраты) выполняются как
+ * чтение - расчёт - условная запись с If-Match по версии баланса: если баланс успели изменить,
+ * сервис отвечает 412, и изменение повторяется на свежем балансе. Блокировок на стороне магазина нет.
+ * Для оформления заказа есть двухфазная оплата: hold резервирует сумму, capture списывает её, release снимает резерв.
+ * capture идемпотентен на стороне платёжного сервиса (в пределах жизни его процесса), поэтому при таймауте,
+ * обрыве соединения или 5xx он повторяется.
+ */
+@Service
+public class BalanceService {
+
+    // Счета платёжного сервиса числовые; все пользователи магазина пока платят с одного счёта
+    private static final Long PAYMENT_USER_ID = 1L;
+
+    private final DefaultApi defaultApi;
+    private final int maxRetries;
+    private final int holdTtlSeconds;
+    private final Duration captureTimeout;
+
+    public BalanceService(
+            DefaultApi defaultApi,
+            @Value("${payment.balance.max-retries:5}") int maxRetries,
+            @Value("${payment.hold.ttl-seconds:120}") int holdTtlSeconds,
+            @Value("${payment.capture.timeout-millis:5000}") long captureTimeoutMillis
+    ) {
+        this.defaultApi = defaultApi;
+        this.maxRetries = maxRetries;
+        this.holdTtlSeconds = holdTtlSeconds;
+        this.captureTimeout = Duration.ofMillis(captureTimeoutMillis);
+    }
+
+    /**
+     * Резервирует сумму на балансе одним вызовом. Ответ 409 означает недостаточно доступных средств,
+     * ничего не зарезервировано. Незавершённый резерв платёжный сервис снимет сам по истечении срока
+     */
+    public Mono<HoldResponse> hold(BigDecimal amount, ServerWebExchange exchange) {
+        HoldRequest holdRequest = new HoldRequest();
+        holdRequest.setAmount(amount);
+        holdRequest.setTtlSeconds(holdTtlSeconds);
+
+        return Mono.defer(() -> defaultApi.holdUserBalance(PAYMENT_USER_ID, holdRequest))
+                .contextWrite(Context.of(ServerWebExchange.class, exchange))
+                .onErrorMap(WebClientResponseException.Conflict.class,
+                        e -> new InsufficientFundsException(currentBalance(e), amount, e))
+                .doOnSuccess(response ->
+                        System.out.println("Зарезервировано " + amount + ", доступно: " + response.getAvailable())
+                );
+    }
+
+    /**
+     * Списывает зарезервированную сумму. Таймаут, обрыв соединения и 5xx не говорят, списано ли что-то,
+     * поэтому вызов повторяется до maxRetries раз: повторный capture не списывает второй раз.
+     * HoldExpiredException - только на ответ 404 с первой попытки, когда платёжный сервис точно ничего не списал.
+     * 404 после попытки с неизвестным исходом этого не доказывает: результаты capture платёжный сервис хранит
+     * в памяти, и после его перезапуска потерянное списание тоже выглядит как 404. Такие ответы, как и остальные
+     * ошибки, - BalanceServiceException с неизвестным исходом списания
+     */
+    public Mono<BalanceResponse> capture(UUID holdId, ServerWebExchange exchange) {
+        return Mono.defer(() -> {
+            AtomicBoolean outcomeUnknown = new AtomicBoolean();
+            return Mono.defer(() -> defaultApi.captureHold(holdId))
+                    .timeout(captureTimeout)
+                    .retryWhen(Retry.backoff(maxRetries, Duration.ofMillis(100))
+                            .filter(BalanceService::isTransient)
+                            .doBeforeRetry(signal -> {
+                                outcomeUnknown.set(true);
+                                System.out.println("Списание резерва " + holdId + " не подтверждено ("
+                                        + signal.failure().getMessage() + "), повтор #" + (signal.totalRetries() + 1));
+                            })
+                            .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                    .contextWrite(Context.of(ServerWebExchange.class, exchange))
+                    .onErrorMap(WebClientResponseException.NotFound.class, e -> outcomeUnknown.get()
+                            ? new BalanceServiceException("резерв " + holdId
+                                    + " не найден после неподтверждённой попытки списания", e)
+                            : new HoldExpiredException(holdId, e))
+                    .onErrorMap(e -> !(e instanceof PaymentException),
+                            e -> new BalanceServiceException("списание резерва " + holdId + " не подтверждено", e))
+                    .doOnSuccess(response ->
+                            System.out.println("Резерв " + holdId + " списан, баланс: " + response.getBalance())
+                    );
+        });
+    }
+
+    /**
+     * Снимает резерв без списания. Ошибка только логируется: резерв в любом случае истечёт сам
+     */
+    public Mono<Void> release(UUID holdId, ServerWebExchange exchange) {
+        return Mono.defer(() -> defaultApi.releaseHold(holdId))
+                .contextWrite(Context.of(ServerWebExchange.class, exchange))
+                .doOnSuccess(v ->
+                        System.out.println("Резерв " + holdId + " снят")
+                )
+                .onErrorResume(e -> {
+                    System.err.println("Не удалось снять резерв " + holdId + ": " + e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Списывает сумму покупки одним вызовом платёжного сервиса: проверка и списание атомарны на его стороне.
+     * Ответ 409 означает недостаточно средств, баланс при этом не меняется
+     */
+    public Mono<BalanceResponse> debit(BigDecimal amount, ServerWebExchange exchange) {
+        BalanceDebitRequest balanceDebitRequest = new BalanceDebitRequest();
+        balanceDebitRequest.setAmount(amount);
+
+        return Mono.defer(() -> defaultApi.debitUserBalance(PAYMENT_USER_ID, balanceDebitRequest))
+                .contextWrite(Context.of(ServerWebExchange.class, exchange))
+                .onErrorMap(WebClientResponseException.Conflict.class,
+                        e -> new InsufficientFundsException(currentBalance(e), amount, e))
+                .doOnSuccess(response ->
+                        System.out.println("Списано " + amount + ", баланс: " + response.getBalance())
+                )
+                .doOnError(e ->
+                        System.err.println("Ошибка при списании с баланса: " + e.getMessage())
+                );
+    }
+
+    /**
+     * Возвращает сумму на баланс, например если заказ после оплаты не удалось завершить
+     */
+    public Mono<BalanceResponse> refund(BigDecimal amount, ServerWebExchange exchange) {
+        return update(balance -> balance.add(amount), exchange)
+                .doOnSuccess(response ->
+                        System.out.println("Возвращено " + amount + ", баланс: " + response.getBalance())
+                );
+    }
+
+    /**
+     * Меняет баланс функцией от текущего значения с условной записью по версии.
+     * При конфликте версий (412) баланс перечитывается и изменение повторяется до maxRetries раз
+     */
+    public Mono<BalanceResponse> update(UnaryOperator<BigDecimal> change, ServerWebExchange exchange) {
+        return Mono.defer(() -> defaultApi.getUserBalance(PAYMENT_USER_ID))
+                .flatMap(current -> {
+                    BalanceUpdateRequest balanceUpdateRequest = new BalanceUpdateRequest();
+                    balanceUpdateRequest.setBalance(change.apply(current.getBalance()));
+                    return defaultApi.updateUserBalance(
+                            PAYMENT_USER_ID, balanceUpdateRequest, "\"" + current.getVersion() + "\"");
+                })
+                .retryWhen(Retry.backoff(maxRetries, Duration.ofMillis(10))
+                        .filter(BalanceService::isVersionConflict)
+                        .doBeforeRetry(signal ->
+                                System.out.println("Баланс изменён параллельно, повтор #" + (signal.totalRetries() + 1))
+                        )
+                        .onRetryExhaustedThrow((spec, signal) -> new BalanceServiceException(
+                                "баланс не удалось изменить за " + maxRetries + " попыток", signal.failure())))
+                .contextWrite(Context.of(ServerWebExchange.class, exchange));
+    }
+
+    /**
+     * Ошибки, после которых исход вызова неизвестен и его можно повторить
+     */
+    private static boolean isTransient(Throwable e) {
+        return e instanceof TimeoutException
+                || e instanceof WebClientRequestException
+                || e instanceof WebClientResponseException response && response.getStatusCode().is5xxServerError();
+    }
+
+    private static boolean isVersionConflict(Throwable e) {
+        return e instanceof WebClientResponseException response
+                && response.getStatusCode() == HttpStatus.PRECONDITION_FAILED;
+    }
+
+    /**
+     * Доступный баланс из тела ответа 409 платёжного сервиса; ноль, если тело не разобрать
+     */
+    private BigDecimal currentBalance(WebClientResponseException e) {
+        try {
+            ErrorResponse errorResponse = e.getResponseBodyAs(ErrorResponse.class);
+            if (errorResponse != null && errorResponse.getBalance() != null) {
+                return errorResponse.getBalance();
+            }
+        } catch (RuntimeException ignored) {
+            // Тело ответа не в формате ErrorResponse
+        }
+        return BigDecimal.ZERO;
+    }
+}
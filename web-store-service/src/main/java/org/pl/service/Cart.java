@@ -0,0 +1,184 @@
+package org.pl.service;
+
+import org.pl.dto.CartLineChangeDto;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Корзина в памяти без блокировок: itemId -> количество в примитивных массивах long[]/int[] без упаковки.
+ * Состояние - неизменяемый снимок, каждое изменение строит новый снимок и публикует его через compareAndSet,
+ * повторяя попытку при гонке. Поэтому параллельные PLUS/MINUS одной корзины не теряют изменений,
+ * а чтение всегда видит согласованные позиции и общее количество без ConcurrentModificationException.
+ * Копирование на запись дёшево: в корзине десятки позиций, а не тысячи.
+ */
+public final class Cart {
+
+    private final AtomicReference<Snapshot> state = new AtomicReference<>(Snapshot.EMPTY);
+
+    /**
+     * Количество товара; 0, если позиции нет
+     */
+    public int get(long itemId) {
+        return state.get().get(itemId);
+    }
+
+    /**
+     * Меняет количество на delta и возвращает новое количество.
+     * Количество не уходит ниже нуля: позиция с нулевым количеством удаляется
+     */
+    public int add(long itemId, int delta) {
+        return changeLine(itemId, delta).count();
+    }
+
+    /**
+     * Как add, но возвращает количество до и после изменения и общее количество из того же снимка
+     */
+    public CartLineChangeDto changeLine(long itemId, int delta) {
+        while (true) {
+            Snapshot current = state.get();
+            int previous = current.get(itemId);
+            int updated = Math.max(0, previous + delta);
+            Snapshot next = current.with(itemId, updated);
+            if (state.compareAndSet(current, next)) {
+                return new CartLineChangeDto(previous, updated, next.total);
+            }
+        }
+    }
+
+    /**
+     * Устанавливает количество update, только если сейчас оно равно expected (0 - позиции нет)
+     */
+    public boolean compareAndSet(long itemId, int expected, int update) {
+        if (update < 0) {
+            throw new IllegalArgumentException("Количество не может быть отрицательным: " + update);
+        }
+        while (true) {
+            Snapshot current = state.get();
+            if (current.get(itemId) != expected) {
+                return false;
+            }
+            if (state.compareAndSet(current, current.with(itemId, update))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Удаляет позицию и возвращает её прежнее количество
+     */
+    public int remove(long itemId) {
+        return removeLine(itemId).previousCount();
+    }
+
+    /**
+     * Как remove, но возвращает и общее количество после удаления из того же снимка
+     */
+    public CartLineChangeDto removeLine(long itemId) {
+        while (true) {
+            Snapshot current = state.get();
+            int previous = current.get(itemId);
+            if (previous == 0) {
+                return new CartLineChangeDto(0, 0, current.total);
+            }
+            Snapshot next = current.with(itemId, 0);
+            if (state.compareAndSet(current, next)) {
+                return new CartLineChangeDto(previous, 0, next.total);
+            }
+        }
+    }
+
+    public void clear() {
+        state.set(Snapshot.EMPTY);
+    }
+
+    /**
+     * Общее количество единиц товара; хранится в снимке, поэтому не требует обхода позиций
+     */
+    public int totalCount() {
+        return state.get().total;
+    }
+
+    public int size() {
+        return state.get().itemIds.length;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Изменяемая копия содержимого для шаблонов и сервисов, работающих с Map
+     */
+    public Map<Long, Integer> toMap() {
+        Snapshot snapshot = state.get();
+        Map<Long, Integer> items = new HashMap<>(snapshot.itemIds.length * 2);
+        for (int i = 0; i < snapshot.itemIds.length; i++) {
+            items.put(snapshot.itemIds[i], snapshot.counts[i]);
+        }
+        return items;
+    }
+
+    /**
+     * Неизменяемое состояние корзины: itemIds отсортированы, counts[i] > 0 - количество товара itemIds[i]
+     */
+    private static final class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(new long[0], new int[0], 0);
+
+        final long[] itemIds;
+        final int[] counts;
+        final int total;
+
+        Snapshot(long[] itemIds, int[] counts, int total) {
+            this.itemIds = itemIds;
+            this.counts = counts;
+            this.total = total;
+        }
+
+        int get(long itemId) {
+            int index = Arrays.binarySearch(itemIds, itemId);
+            return index >= 0 ? counts[index] : 0;
+        }
+
+        /**
+         * Новый снимок с количеством count у товара itemId (0 - без позиции); this, если ничего не меняется
+         */
+        Snapshot with(long itemId, int count) {
+            int index = Arrays.binarySearch(itemIds, itemId);
+            if (index >= 0) {
+                int previous = counts[index];
+                if (previous == count) {
+                    return this;
+                }
+                if (count > 0) {
+                    int[] updatedCounts = counts.clone();
+                    updatedCounts[index] = count;
+                    return new Snapshot(itemIds, updatedCounts, total - previous + count);
+                }
+                long[] updatedIds = new long[itemIds.length - 1];
+                int[] updatedCounts = new int[counts.length - 1];
+                System.arraycopy(itemIds, 0, updatedIds, 0, index);
+                System.arraycopy(itemIds, index + 1, updatedIds, index, itemIds.length - index - 1);
+                System.arraycopy(counts, 0, updatedCounts, 0, index);
+                System.arraycopy(counts, index + 1, updatedCounts, index, counts.length - index - 1);
+                return new Snapshot(updatedIds, updatedCounts, total - previous);
+            }
+            if (count == 0) {
+                return this;
+            }
+            int insertAt = -index - 1;
+            long[] updatedIds = new long[itemIds.length + 1];
+            int[] updatedCounts = new int[counts.length + 1];
+            System.arraycopy(itemIds, 0, updatedIds, 0, insertAt);
+            System.arraycopy(itemIds, insertAt, updatedIds, insertAt + 1, itemIds.length - insertAt);
+            System.arraycopy(counts, 0, updatedCounts, 0, insertAt);
+            System.arraycopy(counts, insertAt, updatedCounts, insertAt + 1, counts.length - insertAt);
+            updatedIds[insertAt] = itemId;
+            updatedCounts[insertAt] = count;
+            return new Snapshot(updatedIds, updatedCounts, total + count);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.pl.service;
+
+import org.pl.dao.Item;
+import org.pl.dto.PricedCartDto;
+import org.pl.dto.PricedCartLineDto;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Расчёт стоимости корзины: все товары загружаются одним обращением к ItemService (кэш, затем WHERE id IN),
+ * подытоги и общая сумма считаются за один проход по позициям
+ */
+@Service
+public class CartPricingService {
+
+    private final ItemService itemService;
+    private final SessionItemsCountsService sessionItemsCountsService;
+
+    public CartPricingService(ItemService itemService, SessionItemsCountsService sessionItemsCountsService) {
+        this.itemService = itemService;
+        this.sessionItemsCountsService = sessionItemsCountsService;
+    }
+
+    public Mono<PricedCartDto> priceCart(ServerWebExchange exchange) {
+        return sessionItemsCountsService.getCartItems(exchange).flatMap(this::price);
+    }
+
+    /**
+     * Позиции с ненулевым количеством в порядке возрастания id товара
+     */
+    public Mono<PricedCartDto> price(Map<Long, Integer> cartItems) {
+        if (cartItems.isEmpty()) {
+            return Mono.just(PricedCartDto.EMPTY);
+        }
+        return itemService.getItemByIds(cartItems.keySet())
+                .collectMap(Item::getId)
+                .map(items -> {
+                    List<PricedCartLineDto> lines = new ArrayList<>(cartItems.size());
+                    Set<Long> missingItemIds = new HashSet<>();
+                    int totalCount = 0;
+                    BigDecimal totalSum = BigDecimal.ZERO;
+
+                    for (Map.Entry<Long, Integer> cartEntry : cartItems.entrySet()) {
+                        int quantity = cartEntry.getValue();
+                        if (quantity <= 0) {
+                            continue;
+                        }
+                        Item item = items.get(cartEntry.getKey());
+                        if (item == null) {
+                            missingItemIds.add(cartEntry.getKey());
+                            continue;
+                        }
+                        BigDecimal subtotal = item.getPrice().multiply(BigDecimal.valueOf(quantity));
+                        lines.add(new PricedCartLineDto(item, quantity, subtotal));
+                        totalCount += quantity;
+                        totalSum = totalSum.add(subtotal);
+                    }
+
+                    lines.sort((left, right) -> Long.compare(left.item().getId(), right.item().getId()));
+                    return new PricedCartDto(List.copyOf(lines), Set.copyOf(missingItemIds), totalCount, totalSum);
+                });
+    }
+}
@@ -2,17 +2,15 @@ package org.pl.service;
 
 import org.pl.dao.Item;
 import org.pl.dao.Order;
+import org.pl.dto.PricedCartDto;
 import org.pl.exception.EmptyCartException;
+import org.pl.exception.HoldExpiredException;
 import org.pl.exception.InsufficientFundsException;
 import org.pl.exception.OrderCreationException;
 import org.pl.exception.PaymentException;
-import org.pl.webstore.client.payment.api.DefaultApi;
-import org.pl.webstore.client.payment.model.BalanceResponse;
-import org.pl.webstore.client.payment.model.BalanceUpdateRequest;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import org.springframework.web.server.ServerWebExchange;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
@@ -25,42 +23,44 @@ public class CartService {
     private static final String ITEM_NOT_FOUND_IN_CART = "Товар не найден в корзине";
     private static final String NEGATIVE_QUANTITY = "Количество товара не может быть отрицательным";
 
-    private final ItemService itemService;
+    private final CartPricingService cartPricingService;
     private final OrderService orderService;
     private final OrderItemService orderItemService;
     private final SessionItemsCountsService sessionItemsCountsService;
-    private final DefaultApi defaultApi;
+    private final BalanceService balanceService;
+    private final TransactionalOperator transactionalOperator;
 
     public CartService(
-            ItemService itemService,
+            CartPricingService cartPricingService,
             OrderService orderService,
             OrderItemService orderItemService,
             SessionItemsCountsService sessionItemsCountsService,
-            DefaultApi defaultApi
+            BalanceService balanceService,
+            TransactionalOperator transactionalOperator
     ) {
-        this.itemService = itemService;
+        this.cartPricingService = cartPricingService;
         this.orderService = orderService;
         this.orderItemService = orderItemService;
         this.sessionItemsCountsService = sessionItemsCountsService;
-        this.defaultApi = defaultApi;
+        this.balanceService = balanceService;
+        this.transactionalOperator = transactionalOperator;
     }
 
-    @Transactional(rollbackFor = {PaymentException.class, RuntimeException.class})
     public Mono<Order> createSaveOrders(ServerWebExchange exchange, UUID userId) {
         System.out.println("Начало создания заказа из всей корзины");
 
-        return sessionItemsCountsService.getCartItems(exchange)
-                .doOnNext(cartItems ->
-                        System.out.println("Товаров в корзине: " + cartItems.size())
+        return cartPricingService.priceCart(exchange)
+                .doOnNext(pricedCart ->
+                        System.out.println("Товаров в корзине: " + pricedCart.lines().size())
                 )
-                .flatMap(cartItems -> {
-                    if (cartItems.isEmpty()) {
+                .flatMap(pricedCart -> {
+                    if (pricedCart.isEmpty()) {
                         System.out.println("Корзина пуста, невозможно создать заказ");
                         return Mono.error(new EmptyCartException());
                     }
 
                     System.out.println("Корзина не пуста, продолжаем обработку");
-                    return processFullCartOrder(cartItems, exchange, userId);
+                    return processFullCartOrder(pricedCart, exchange, userId);
                 })
                 .doOnSuccess(order ->
                         System.out.println("Заказ успешно создан, ID: " + order.getId() )
@@ -74,7 +74,6 @@ public class CartService {
                 });
     }
 
-    @Transactional(rollbackFor = {RuntimeException.class})
     public Mono<Order> createSaveOrder(Long itemId, ServerWebExchange exchange, UUID userId) {
         System.out.println("=== Начало создания заказа для товара ID: " + itemId + " ===");
 
@@ -102,147 +101,91 @@ public class CartService {
                 );
     }
 
-    @Transactional(readOnly = true)
-    public Mono<List<Item>> getItemsByItemsCounts(ServerWebExchange exchange) {
-        System.out.println("Получение деталей товаров из корзины");
-
-        return sessionItemsCountsService.getCartItems(exchange)
-                .doOnNext(cartItems -> System.out.println("Найдено товаров в корзине: " + cartItems.size()))
-                .flatMap(this::fetchItemsByCart);
+    /**
+     * Корзина с ценами для страницы корзины: товары, количества и сумма из одного расчёта
+     */
+    public Mono<PricedCartDto> getPricedCart(ServerWebExchange exchange) {
+        return cartPricingService.priceCart(exchange)
+                .doOnNext(pricedCart -> System.out.println(
+                        "Корзина: позиций " + pricedCart.lines().size() + ", сумма " + pricedCart.totalSum()));
     }
 
-    @Transactional(readOnly = true)
-    public Mono<BigDecimal> getTotalItemsSum(ServerWebExchange exchange) {
-        System.out.println("Вычисление общей суммы корзины");
-
-        return sessionItemsCountsService.getCartItems(exchange)
-                .flatMap(this::calculateTotalSum)
-                .doOnNext(total -> System.out.println("Итоговая сумма: " + total));
+    public Mono<List<Item>> getItemsByItemsCounts(ServerWebExchange exchange) {
+        return getPricedCart(exchange).map(PricedCartDto::items);
     }
 
     // ============== ПРИВАТНЫЕ ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ==============
 
     /**
-     * Запрашивает баланс пользователя у внешнего сервиса
-     */
-    private Mono<BigDecimal> getUserBalance(ServerWebExchange exchange) {
-        return Mono.defer(() -> defaultApi.getUserBalance(1L))
-                .contextWrite(reactor.util.context.Context.of(ServerWebExchange.class, exchange))
-                .map(balanceResponse -> {
-                    System.out.println("Текущий баланс пользователя " + balanceResponse.getBalance());
-                    return balanceResponse.getBalance();
-                });
-    }
-
-    /**
-     * Обновляет баланс пользователя после покупки
+     * Оплачивает и сохраняет заказ на сумму pricedCart, затем выполняет завершающий шаг с корзиной.
+     * Сначала одним вызовом резервируются средства, затем в короткой транзакции БД пишутся заказ и позиции,
+     * после коммита резерв списывается. Вызовы платёжного сервиса идут вне транзакции и не держат соединение R2DBC.
+     * Если транзакция не удалась, резерв снимается. Заказ удаляется, только если платёжный сервис ответил,
+     * что резерв не найден и ничего не списано; при неизвестном исходе списания (capture исчерпал повторы)
+     * заказ остаётся для сверки по номеру резерва. Ошибка завершающего шага заказ не отменяет: он уже оплачен.
+     * Запись заказа, списание и уборка после них не прерываются отменой запроса (клиент закрыл соединение):
+     * иначе закоммиченный заказ остался бы без оплаты, а резерв просто истёк бы
      */
-    private Mono<BalanceResponse> updateBalanceAfterPurchase(BigDecimal purchaseAmount, ServerWebExchange exchange) {
-        return getUserBalance(exchange)
-                .flatMap(currentBalance -> {
-                    BigDecimal newBalance = currentBalance.subtract(purchaseAmount);
-
-                    if (newBalance.compareTo(BigDecimal.ZERO) < 0) {
-                        return Mono.error(new RuntimeException(
-                                "Попытка установить отрицательный баланс: " + newBalance
-                        ));
-                    }
-
-                    BalanceUpdateRequest balanceUpdateRequest = new BalanceUpdateRequest();
-                    balanceUpdateRequest.setBalance(newBalance);
-
-                    System.out.println("Обновление баланса: " + currentBalance +
-                            " -> " + newBalance + " (списано: " + purchaseAmount + ")");
-
-                    return Mono.defer(() -> defaultApi.updateUserBalance(1L, balanceUpdateRequest))
-                            .contextWrite(reactor.util.context.Context.of(ServerWebExchange.class, exchange))
-                            .doOnSuccess(response ->
-                                    System.out.println("Баланс успешно обновлен: " + response.getBalance())
-                            )
-                            .doOnError(e ->
-                                    System.err.println("Ошибка при обновлении баланса: " + e.getMessage())
-                            );
-                });
+    private Mono<Order> checkout(PricedCartDto pricedCart, UUID userId, ServerWebExchange exchange, Mono<Void> completion) {
+        return balanceService.hold(pricedCart.totalSum(), exchange)
+                .flatMap(hold -> uncancellable(saveOrder(pricedCart, userId)
+                        .onErrorResume(e -> balanceService.release(hold.getHoldId(), exchange).then(Mono.error(e)))
+                        .flatMap(savedOrder -> balanceService.capture(hold.getHoldId(), exchange)
+                                .onErrorResume(HoldExpiredException.class, e -> orderService.deleteOrder(savedOrder)
+                                        .doOnSuccess(v ->
+                                                System.err.println("Оплата не списана, заказ " + savedOrder.getId() + " удалён")
+                                        )
+                                        .then(Mono.error(e)))
+                                .doOnError(e -> !(e instanceof HoldExpiredException), e ->
+                                        System.err.println("Оплата заказа " + savedOrder.getId() + " не подтверждена, нужна сверка"
+                                                + " по резерву " + hold.getHoldId() + ": " + e.getMessage())
+                                )
+                                .thenReturn(savedOrder))))
+                .flatMap(savedOrder -> completion
+                        .onErrorResume(e -> {
+                            System.err.println("Заказ " + savedOrder.getId() + " оплачен, но корзину обновить не удалось: "
+                                    + e.getMessage());
+                            return Mono.empty();
+                        })
+                        .thenReturn(savedOrder));
     }
 
     /**
-     * Сохраняет заказ и очищает корзину
-     * Разделение логики для устранения вложенности
+     * Выполняет work до конца независимо от подписчика: отмена подписки перестаёт ждать результат, но не прерывает work
      */
-    private Mono<Order> saveOrderAndClearCart(Order savedOrder, ServerWebExchange exchange) {
-        return sessionItemsCountsService.getCartItems(exchange)
-                .flatMap(cartItems -> {
-                    System.out.println("Сохранение " + cartItems.size() + " позиций заказа");
-                    return orderItemService.saveOrder(savedOrder, cartItems);
-                })
-                .then(clearCartAndReturnOrder(exchange, savedOrder));
+    private static <T> Mono<T> uncancellable(Mono<T> work) {
+        return Mono.defer(() -> Mono.fromFuture(work.toFuture(), true));
     }
 
     /**
-     * Очищает корзину и возвращает заказ
-     * Использует then для последовательного выполнения
+     * Заказ и его позиции в одной транзакции; позиции берутся из того же снимка корзины, без повторной загрузки товаров
      */
-    private Mono<Order> clearCartAndReturnOrder(ServerWebExchange exchange, Order savedOrder) {
-        return sessionItemsCountsService.clearCartItems(exchange)
-                .doOnSuccess(v -> System.out.println("Корзина успешно очищена"))
-                .doOnError(e -> System.out.println("Ошибка при очистке корзины: " + e.getMessage()))
-                .thenReturn(savedOrder);
+    private Mono<Order> saveOrder(PricedCartDto pricedCart, UUID userId) {
+        return transactionalOperator.transactional(
+                orderService.createOrder(pricedCart.totalSum(), userId)
+                        .flatMap(savedOrder -> {
+                            System.out.println("Заказ создан в базе, ID: " + savedOrder.getId());
+                            return orderItemService.saveOrder(savedOrder, pricedCart)
+                                    .doOnSuccess(v ->
+                                            System.out.println("Позиции заказа сохранены")
+                                    )
+                                    .thenReturn(savedOrder);
+                        }));
     }
 
-
     /**
      * Обработка заказа для всей корзины
      */
-    private Mono<Order> processFullCartOrder(Map<Long, Integer> cartItems, ServerWebExchange exchange, UUID userId) {
-        return Mono.zip(
-                        getUserBalance(exchange).cache(),
-                        calculateTotalSum(cartItems).cache()
-                )
-                .doOnNext(tuple -> {
-                    BigDecimal balance = tuple.getT1();
-                    BigDecimal total = tuple.getT2();
-                    System.out.println("Проверка баланса: " + balance + " >= " + total + " ?");
-                })
-                .flatMap(tuple -> {
-                    BigDecimal userBalance = tuple.getT1();
-                    BigDecimal totalAmount = tuple.getT2();
-
-                    // Проверка баланса с использованием кастомного исключения
-                    if (userBalance.compareTo(totalAmount) < 0) {
-                        return Mono.error(new InsufficientFundsException(userBalance, totalAmount));
-                    }
-
-                    System.out.println("Баланс достаточен, создаем заказ...");
-                    return orderService.createOrder(totalAmount, userId);
-                })
-                .flatMap(savedOrder -> {
-                    System.out.println("Заказ создан в базе, ID: " + savedOrder.getId());
-
-                    // Сохраняем позиции заказа
-                    return orderItemService.saveOrder(savedOrder, cartItems)
-                            .doOnSuccess(v ->
-                                    System.out.println("Позиции заказа сохранены")
-                            )
-                            .then(Mono.defer(() -> {
-                                // Обновляем баланс
-                                return updateBalanceAfterPurchase(savedOrder.getTotalAmount(), exchange)
-                                        .doOnSuccess(response ->
-                                                System.out.println("Баланс обновлен: " + response.getBalance())
-                                        )
-                                        .doOnError(e -> {
-                                            System.err.println("Ошибка при обновлении баланса: " + e.getMessage());
-                                            // Логируем, но не прерываем процесс
-                                        });
-                            }))
-                            .then(Mono.defer(() -> {
-                                // Очищаем корзину
-                                return sessionItemsCountsService.clearCartItems(exchange)
-                                        .doOnSuccess(v ->
-                                                System.out.println("Корзина очищена")
-                                        );
-                            }))
-                            .thenReturn(savedOrder);
-                })
+    private Mono<Order> processFullCartOrder(PricedCartDto pricedCart, ServerWebExchange exchange, UUID userId) {
+        if (!pricedCart.missingItemIds().isEmpty()) {
+            return Mono.error(new OrderCreationException("Item not found: " + pricedCart.missingItemIds()));
+        }
+        // Достаточность средств проверяет платёжный сервис при резервировании, до записи заказа
+        return checkout(pricedCart, userId, exchange,
+                Mono.defer(() -> sessionItemsCountsService.clearCartItems(exchange))
+                        .doOnSuccess(v ->
+                                System.out.println("Корзина очищена")
+                        ))
                 .onErrorMap(e -> {
                     // Преобразуем стандартные исключения в PaymentException
                     if (e instanceof InsufficientFundsException) {
@@ -258,52 +201,15 @@ public class CartService {
      * Обработка заказа для одного товара
      */
     private Mono<Order> processSingleItemOrder(Long itemId, Integer quantity, ServerWebExchange exchange, UUID userId) {
-        return Mono.zip(
-                        getUserBalance(exchange).cache(),
-                        calculateItemTotal(itemId, quantity).cache()
-                )
-                .doOnNext(tuple -> {
-                    BigDecimal balance = tuple.getT1();
-                    BigDecimal itemTotal = tuple.getT2();
-                    System.out.println("Проверка баланса для товара " + itemId + ": " + balance + " >= " + itemTotal + " ?");
-                })
-                .flatMap(tuple -> {
-                    BigDecimal userBalance = tuple.getT1();
-                    BigDecimal itemTotal = tuple.getT2();
-
-                    if (userBalance.compareTo(itemTotal) < 0) {
-                        return Mono.error(new InsufficientFundsException(userBalance, itemTotal));
-                    }
-
-                    System.out.println("Баланс достаточен, создаем заказ для товара...");
-                    return orderService.createOrder(itemTotal, userId);
-                })
-                .flatMap(savedOrder -> {
-                    System.out.println("Заказ создан, ID: " + savedOrder.getId());
-
-                    Map<Long, Integer> singleItemCart = Map.of(itemId, quantity);
-
-                    // Сохраняем позицию заказа
-                    return orderItemService.saveOrder(savedOrder, singleItemCart)
-                            .doOnSuccess(v ->
-                                    System.out.println("Позиция заказа сохранена")
-                            )
-                            .then(Mono.defer(() -> {
-                                // Обновляем баланс
-                                return updateBalanceAfterPurchase(savedOrder.getTotalAmount(), exchange)
-                                        .doOnSuccess(response ->
-                                                System.out.println("Баланс обновлен: " + response.getBalance())
-                                        );
-                            }))
-                            .then(Mono.defer(() -> {
-                                // Удаляем товар из корзины
-                                return sessionItemsCountsService.removeItemFromCart(exchange, itemId)
-                                        .doOnSuccess(v ->
-                                                System.out.println("Товар удален из корзины")
-                                        );
-                            }))
-                            .thenReturn(savedOrder);
-                })
+        return cartPricingService.price(Map.of(itemId, quantity))
+                .flatMap(pricedItem -> pricedItem.lines().isEmpty()
+                        ? Mono.error(new RuntimeException("Item not found"))
+                        : Mono.just(pricedItem))
+                .flatMap(pricedItem -> checkout(pricedItem, userId, exchange,
+                        Mono.defer(() -> sessionItemsCountsService.removeItemFromCart(exchange, itemId))
+                                .doOnSuccess(v ->
+                                        System.out.println("Товар удален из корзины")
+                                )))
                 .onErrorMap(e -> {
                     if (e instanceof InsufficientFundsException) {
                         return e;
@@ -313,106 +219,4 @@ public class CartService {
                     return e;
                 });
     }
-
-    /**
-     * Вычисляет стоимость одного товара с учётом количества
-     * Использует map для синхронного преобразования
-     */
-    private Mono<BigDecimal> calculateItemTotal(Long itemId, Integer quantity) {
-        return itemService.getPriceById(itemId)
-                .doOnNext(price -> System.out.println("Цена товара " + itemId + ": " + price))
-                .map(price -> {
-                    BigDecimal total = price.multiply(BigDecimal.valueOf(quantity));
-                    System.out.println("Сумма для товара " + itemId + ": " + total);
-                    return total;
-                });
-    }
-
-    /**
-     * Создаёт и сохраняет заказ для одного товара
-     * Плоская структура вместо вложенности
-     */
-    private Mono<Order> createAndSaveSingleItemOrder(
-            Long itemId,
-            Integer quantity,
-            BigDecimal totalAmount,
-            ServerWebExchange exchange,
-            UUID userId
-    ) {
-        return orderService.createOrder(totalAmount, userId)
-                .doOnNext(order -> System.out.println("Создан заказ на сумму: " + totalAmount))
-                .flatMap(savedOrder -> saveSingleOrderItem(savedOrder, itemId, quantity, exchange));
-    }
-
-    /**
-     * Сохраняет одну позицию заказа
-     * Композиция операций через then
-     */
-    private Mono<Order> saveSingleOrderItem(
-            Order savedOrder,
-            Long itemId,
-            Integer quantity,
-            ServerWebExchange exchange
-    ) {
-        Map<Long, Integer> singleItemCart = Map.of(itemId, quantity);
-
-        return orderItemService.saveOrder(savedOrder, singleItemCart)
-                .doOnSuccess(v -> System.out.println("Позиция заказа сохранена"))
-                .then(removeItemAndReturnOrder(exchange, itemId, savedOrder));
-    }
-
-    /**
-     * Удаляет товар из корзины и возвращает заказ
-     */
-    private Mono<Order> removeItemAndReturnOrder(
-            ServerWebExchange exchange,
-            Long itemId, Order savedOrder
-    ) {
-        return sessionItemsCountsService.removeItemFromCart(exchange, itemId)
-                .doOnSuccess(v -> System.out.println("Товар " + itemId + " удалён из корзины"))
-                .thenReturn(savedOrder);
-    }
-
-    /**
-     * Получает детальную информацию о товарах в корзине
-     * Использует flatMap для параллельной загрузки товаров
-     */
-    private Mono<List<Item>> fetchItemsByCart(Map<Long, Integer> cartItems) {
-        return Flux.fromIterable(cartItems.keySet())
-                .doOnNext(itemId -> System.out.println("Загрузка товара ID: " + itemId))
-                .flatMap(itemService::getItemById)  // параллельная загрузка
-                .collectList()
-                .doOnNext(items -> System.out.println("Загружено " + items.size() + " товаров"));
-    }
-
-    /**
-     * Вычисляет общую сумму корзины
-     * Использует reduce для агрегации
-     */
-    private Mono<BigDecimal> calculateTotalSum(Map<Long, Integer> cartItems) {
-        return Flux.fromIterable(cartItems.entrySet())
-                .flatMap(this::calculateItemSubtotal)
-                .reduce(BigDecimal.ZERO, (sum, subtotal) -> {
-                    System.out.println("Добавляем к сумме: " + subtotal);
-                    return sum.add(subtotal);
-                });
-    }
-
-    /**
-     * Вычисляет стоимость по одному элементу корзины
-     */
-    private Mono<BigDecimal> calculateItemSubtotal(Map.Entry<Long, Integer> cartEntry) {
-        Long itemId = cartEntry.getKey();
-        Integer quantity = cartEntry.getValue();
-
-        return itemService.getPriceById(itemId)
-                .map(price -> {
-                    BigDecimal subtotal = price.multiply(BigDecimal.valueOf(quantity));
-                    System.out.printf(
-                            "Товар %s: %d x %s = %s%n",
-                            itemId, quantity, price, subtotal
-                    );
-                    return subtotal;
-                });
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,38 @@
+package org.pl.service;
+
+import org.pl.dto.CartLineChangeDto;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * Хранилище корзин: itemId -> количество для каждого cartId.
+ * Каждая операция изменения выполняется атомарно, без чтения-изменения-записи на стороне приложения.
+ * Позиции с нулевым количеством не хранятся.
+ */
+public interface CartStore {
+
+    /**
+     * Содержимое корзины; пустая изменяемая карта, если корзины нет
+     */
+    Mono<Map<Long, Integer>> getItems(String cartId);
+
+    /**
+     * Меняет количество товара на delta и возвращает количество до и после и общее количество корзины.
+     * Количество не уходит ниже нуля: позиция с нулевым количеством удаляется
+     */
+    Mono<CartLineChangeDto> changeCount(String cartId, Long itemId, int delta);
+
+    /**
+     * Удаляет позицию и возвращает её прежнее количество и общее количество корзины после удаления
+     */
+    Mono<CartLineChangeDto> remove(String cartId, Long itemId);
+
+    Mono<Void> clear(String cartId);
+
+    /**
+     * Общее количество единиц товара в корзине. Поддерживается при изменениях,
+     * поэтому чтение для значка корзины не обходит все позиции
+     */
+    Mono<Integer> totalCount(String cartId);
+}
@@ -0,0 +1,55 @@
+package org.pl.service;
+
+import org.pl.dto.CartLineChangeDto;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Корзины в памяти одного экземпляра приложения (cart.store=memory): для локального запуска без Redis и тестов.
+ * Все изменения - операции Cart без блокировок.
+ */
+@Component
+@ConditionalOnProperty(name = "cart.store", havingValue = "memory")
+public class InMemoryCartStore implements CartStore {
+
+    private final Map<String, Cart> carts = new ConcurrentHashMap<>();
+
+    @Override
+    public Mono<Map<Long, Integer>> getItems(String cartId) {
+        return Mono.fromSupplier(() -> {
+            Cart cart = carts.get(cartId);
+            return cart == null ? new HashMap<>() : cart.toMap();
+        });
+    }
+
+    @Override
+    public Mono<CartLineChangeDto> changeCount(String cartId, Long itemId, int delta) {
+        return Mono.fromSupplier(() -> carts.computeIfAbsent(cartId, id -> new Cart()).changeLine(itemId, delta));
+    }
+
+    @Override
+    public Mono<CartLineChangeDto> remove(String cartId, Long itemId) {
+        return Mono.fromSupplier(() -> {
+            Cart cart = carts.get(cartId);
+            return cart == null ? new CartLineChangeDto(0, 0, 0) : cart.removeLine(itemId);
+        });
+    }
+
+    @Override
+    public Mono<Void> clear(String cartId) {
+        return Mono.fromRunnable(() -> carts.remove(cartId));
+    }
+
+    @Override
+    public Mono<Integer> totalCount(String cartId) {
+        return Mono.fromSupplier(() -> {
+            Cart cart = carts.get(cartId);
+            return cart == null ? 0 : cart.totalCount();
+        });
+    }
+}
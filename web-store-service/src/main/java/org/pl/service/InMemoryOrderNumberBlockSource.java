@@ -0,0 +1,25 @@
+package org.pl.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Счётчик номеров заказов в памяти одного экземпляра (order-number.source=memory):
+ * для локального запуска без Redis и тестов. Между экземплярами и перезапусками не согласован.
+ */
+@Component
+@ConditionalOnProperty(name = "order-number.source", havingValue = "memory")
+public class InMemoryOrderNumberBlockSource implements OrderNumberBlockSource {
+
+    private final Map<Integer, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    @Override
+    public Mono<Long> reserve(int year, int blockSize) {
+        return Mono.fromSupplier(() -> counters.computeIfAbsent(year, y -> new AtomicLong()).addAndGet(blockSize));
+    }
+}
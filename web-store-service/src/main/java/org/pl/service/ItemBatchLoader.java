@@ -0,0 +1,122 @@
+package org.pl.service;
+
+import org.pl.dao.Item;
+import org.pl.repository.ItemRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Объединяет запросы товаров по id из параллельных запросов в один запрос WHERE id IN (...).
+ * id копятся в течение окна windowMillis или до maxBatchSize штук, после чего загружаются одной пачкой.
+ * Если товар с таким id уже запрошен и ещё не загружен, новый подписчик ждёт тот же результат.
+ * Подписчики одной пачки получают разные копии товара.
+ */
+@Component
+public class ItemBatchLoader {
+
+    private final ItemRepository itemRepository;
+    private final long windowMillis;
+    private final int maxBatchSize;
+    private final Scheduler scheduler = Schedulers.parallel();
+
+    private final Object lock = new Object();
+    // Текущая собираемая пачка: id -> ожидающий результат
+    private Map<Long, Sinks.One<Item>> batch = new HashMap<>();
+    // Все запрошенные, но ещё не загруженные id (собираемая пачка и уже отправленные в БД)
+    private final Map<Long, Sinks.One<Item>> inFlight = new ConcurrentHashMap<>();
+
+    public ItemBatchLoader(
+            ItemRepository itemRepository,
+            @Value("${item.batch-loader.window-millis:2}") long windowMillis,
+            @Value("${item.batch-loader.max-batch-size:100}") int maxBatchSize
+    ) {
+        this.itemRepository = itemRepository;
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Товар по id; пустой Mono, если товара нет в БД
+     */
+    public Mono<Item> load(Long id) {
+        return Mono.defer(() -> {
+            Sinks.One<Item> sink;
+            Map<Long, Sinks.One<Item>> full = null;
+            Map<Long, Sinks.One<Item>> started = null;
+
+            synchronized (lock) {
+                sink = inFlight.get(id);
+                if (sink == null) {
+                    sink = Sinks.one();
+                    inFlight.put(id, sink);
+                    batch.put(id, sink);
+                    if (batch.size() >= maxBatchSize) {
+                        full = batch;
+                        batch = new HashMap<>();
+                    } else if (batch.size() == 1) {
+                        started = batch;
+                    }
+                }
+            }
+
+            if (full != null) {
+                dispatch(full);
+            } else if (started != null) {
+                Map<Long, Sinks.One<Item>> scheduled = started;
+                scheduler.schedule(() -> flush(scheduled), windowMillis, TimeUnit.MILLISECONDS);
+            }
+            // Каждый подписчик получает свою копию: общий экземпляр из пачки нельзя отдавать на изменение
+            return sink.asMono().map(Item::new);
+        });
+    }
+
+    /**
+     * Отправляет пачку по истечении окна, если она не была отправлена раньше из-за размера
+     */
+    private void flush(Map<Long, Sinks.One<Item>> scheduled) {
+        synchronized (lock) {
+            if (batch != scheduled) {
+                return;
+            }
+            batch = new HashMap<>();
+        }
+        dispatch(scheduled);
+    }
+
+    private void dispatch(Map<Long, Sinks.One<Item>> sinks) {
+        // defer: исключение, брошенное репозиторием до подписки, приходит в обработчик ошибок, а не теряется
+        Flux.defer(() -> itemRepository.findByIdIn(sinks.keySet()))
+                .collectMap(Item::getId)
+                // Страховка: какой бы сигнал ни завершил загрузку, ни один подписчик не остаётся ждать,
+                // а id уходят из inFlight. Для уже получивших результат sink повторная отправка ничего не делает
+                .doFinally(signal -> sinks.forEach((id, sink) -> {
+                    inFlight.remove(id, sink);
+                    sink.tryEmitError(new IllegalStateException("Загрузка товара " + id + " прервана: " + signal));
+                }))
+                .subscribe(
+                        items -> sinks.forEach((id, sink) -> {
+                            inFlight.remove(id, sink);
+                            Item item = items.get(id);
+                            if (item != null) {
+                                sink.tryEmitValue(item);
+                            } else {
+                                sink.tryEmitEmpty();
+                            }
+                        }),
+                        error -> sinks.forEach((id, sink) -> {
+                            inFlight.remove(id, sink);
+                            sink.tryEmitError(error);
+                        })
+                );
+    }
+}
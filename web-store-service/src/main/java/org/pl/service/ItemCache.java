@@ -0,0 +1,266 @@
+package org.pl.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.annotation.PreDestroy;
+import org.pl.dao.Item;
+import org.pl.dto.CachedItemDto;
+import org.pl.dto.ItemCacheStatsDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Двухуровневый кэш товаров: L1 в памяти процесса (Caffeine, ограничен по размеру и TTL) перед L2 в Redis.
+ * Об изменении товара экземпляры приложения узнают через канал Redis pub/sub и удаляют его из своего L1.
+ * Ошибки Redis считаются промахом L2: чтение в этом случае продолжается из БД.
+ * <p>
+ * При промахе на одном экземпляре выполняется только одна загрузка товара, остальные запросы ждут её результат.
+ * Популярные записи L2 обновляются заранее с вероятностью, растущей к моменту истечения TTL (XFetch),
+ * поэтому массового промаха при истечении не происходит.
+ * <p>
+ * Item изменяемый, поэтому L1 хранит свою копию, а каждый вызывающий получает отдельную копию:
+ * изменение товара одним запросом не видно ни кэшу, ни другим запросам.
+ */
+@Component
+public class ItemCache {
+
+    private final RedisCacheItemService redisCacheItemService;
+    private final Cache<Long, Item> local;
+    private final double earlyRefreshBeta;
+
+    // Выполняющиеся загрузки по id: повторные промахи подписываются на уже идущую загрузку
+    private final Map<Long, Mono<Item>> inFlight = new ConcurrentHashMap<>();
+    // id, для которых уже запущено фоновое раннее обновление
+    private final Set<Long> refreshing = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder remoteHits = new LongAdder();
+    private final LongAdder remoteMisses = new LongAdder();
+
+    private volatile Disposable invalidationSubscription;
+
+    public ItemCache(
+            RedisCacheItemService redisCacheItemService,
+            @Value("${item.cache.local.max-size:10000}") long localMaxSize,
+            @Value("${item.cache.local.ttl:PT5S}") Duration localTtl,
+            @Value("${item.cache.early-refresh-beta:1.0}") double earlyRefreshBeta
+    ) {
+        this.redisCacheItemService = redisCacheItemService;
+        this.earlyRefreshBeta = earlyRefreshBeta;
+        this.local = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(localTtl)
+                .recordStats()
+                .build();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void subscribeToInvalidations() {
+        invalidationSubscription = redisCacheItemService.invalidations()
+                .doOnNext(local::invalidate)
+                // Redis может быть временно недоступен - переподписываемся
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30)))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void unsubscribe() {
+        if (invalidationSubscription != null) {
+            invalidationSubscription.dispose();
+        }
+    }
+
+    /**
+     * Товар из L1, затем из L2, при промахе - из loader с сохранением в оба уровня.
+     * Одновременные промахи по одному id выполняют loader один раз.
+     */
+    public Mono<Item> get(Long id, Function<Long, Mono<Item>> loader) {
+        Item item = local.getIfPresent(id);
+        if (item != null) {
+            return Mono.just(new Item(item));
+        }
+        return singleFlight(id, () -> redisCacheItemService.getCachedItem(id)
+                .onErrorResume(e -> Mono.empty())
+                .doOnNext(entry -> {
+                    remoteHits.increment();
+                    local.put(id, new Item(entry.item()));
+                    if (shouldRefreshEarly(entry)) {
+                        refreshInBackground(id, loader);
+                    }
+                })
+                .map(CachedItemDto::item)
+                .switchIfEmpty(Mono.defer(() -> {
+                    remoteMisses.increment();
+                    return load(id, loader);
+                })))
+                // Результат одной загрузки получают все ждущие её запросы - каждому своя копия
+                .map(Item::new);
+    }
+
+    /**
+     * Товары, найденные в L1 или L2. Промахи L1 запрашиваются в Redis одним MGET.
+     * Записи L2, которым по XFetch пора обновиться, перезагружаются одной пачкой через loader в фоне
+     */
+    public Flux<Item> getAll(Collection<Long> ids, Function<Collection<Long>, Flux<Item>> loader) {
+        Map<Long, Item> found = local.getAllPresent(ids);
+        List<Long> missed = ids.stream().filter(id -> !found.containsKey(id)).toList();
+        if (missed.isEmpty()) {
+            return Flux.fromIterable(found.values()).map(Item::new);
+        }
+        Flux<Item> remote = redisCacheItemService.getCachedItems(missed)
+                .collectList()
+                .doOnNext(entries -> {
+                    remoteHits.add(entries.size());
+                    remoteMisses.add(missed.size() - entries.size());
+                    List<Long> expiring = new ArrayList<>();
+                    for (CachedItemDto entry : entries) {
+                        local.put(entry.item().getId(), new Item(entry.item()));
+                        if (shouldRefreshEarly(entry)) {
+                            expiring.add(entry.item().getId());
+                        }
+                    }
+                    if (!expiring.isEmpty()) {
+                        refreshAllInBackground(expiring, loader);
+                    }
+                })
+                .onErrorResume(e -> {
+                    remoteMisses.add(missed.size());
+                    return Mono.just(List.of());
+                })
+                .flatMapIterable(entries -> entries)
+                .map(CachedItemDto::item);
+        return Flux.concat(Flux.fromIterable(new ArrayList<>(found.values())).map(Item::new), remote);
+    }
+
+    /**
+     * Загружает товары через loader и кладёт их в оба уровня вместе с временем загрузки пачки,
+     * чтобы XFetch обновлял их заранее так же, как товары, загруженные по одному
+     */
+    public Flux<Item> loadAll(Collection<Long> ids, Function<Collection<Long>, Flux<Item>> loader) {
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            return loader.apply(ids)
+                    .collectList()
+                    .flatMapMany(items -> putAll(items, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+                            .thenMany(Flux.fromIterable(items)));
+        });
+    }
+
+    public Mono<Void> put(Item item) {
+        return put(item, 0);
+    }
+
+    private Mono<Void> put(Item item, long loadMillis) {
+        local.put(item.getId(), new Item(item));
+        return redisCacheItemService.saveItemToCache(item, loadMillis)
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    private Mono<Void> putAll(Collection<Item> items, long loadMillis) {
+        items.forEach(item -> local.put(item.getId(), new Item(item)));
+        return redisCacheItemService.saveItemsToCache(items, loadMillis)
+                .onErrorResume(e -> Mono.empty());
+    }
+
+    /**
+     * Удаляет товар из обоих уровней и оповещает остальные экземпляры
+     */
+    public Mono<Void> evict(Long id) {
+        local.invalidate(id);
+        return redisCacheItemService.deleteItemFromCache(id)
+                .then(redisCacheItemService.publishInvalidation(id))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    public ItemCacheStatsDto stats() {
+        CacheStats localStats = local.stats();
+        return new ItemCacheStatsDto(
+                local.estimatedSize(),
+                localStats.hitCount(),
+                localStats.missCount(),
+                localStats.hitRate(),
+                remoteHits.sum(),
+                remoteMisses.sum(),
+                ratio(remoteHits.sum(), remoteMisses.sum())
+        );
+    }
+
+    private Mono<Item> singleFlight(Long id, Supplier<Mono<Item>> supplier) {
+        return Mono.defer(() -> inFlight.computeIfAbsent(id, key -> supplier.get()
+                .doFinally(signal -> inFlight.remove(key))
+                .cache()));
+    }
+
+    private Mono<Item> load(Long id, Function<Long, Mono<Item>> loader) {
+        long start = System.nanoTime();
+        return loader.apply(id)
+                .flatMap(item -> put(item, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+                        .thenReturn(item));
+    }
+
+    /**
+     * XFetch: обновить заранее, если now - loadMillis * beta * ln(random) >= expiresAt.
+     * Чем дольше загрузка и ближе истечение, тем выше вероятность раннего обновления
+     */
+    boolean shouldRefreshEarly(CachedItemDto entry) {
+        double gap = -entry.loadMillis() * earlyRefreshBeta * Math.log(ThreadLocalRandom.current().nextDouble());
+        return System.currentTimeMillis() + gap >= entry.expiresAtMillis();
+    }
+
+    private void refreshInBackground(Long id, Function<Long, Mono<Item>> loader) {
+        if (!refreshing.add(id)) {
+            return;
+        }
+        load(id, loader)
+                .doFinally(signal -> refreshing.remove(id))
+                .subscribe(
+                        item -> System.out.println("ItemCache: запись товара " + id + " обновлена заранее"),
+                        error -> System.out.println("ItemCache: ошибка раннего обновления товара " + id
+                                + ": " + error.getMessage())
+                );
+    }
+
+    /**
+     * Фоновое обновление пачки: id, которые уже обновляются, повторно не загружаются
+     */
+    private void refreshAllInBackground(List<Long> ids, Function<Collection<Long>, Flux<Item>> loader) {
+        List<Long> claimed = ids.stream().filter(refreshing::add).toList();
+        if (claimed.isEmpty()) {
+            return;
+        }
+        loadAll(claimed, loader)
+                .count()
+                .doFinally(signal -> claimed.forEach(refreshing::remove))
+                .subscribe(
+                        count -> System.out.println("ItemCache: заранее обновлено товаров: " + count),
+                        error -> System.out.println("ItemCache: ошибка раннего обновления товаров " + claimed
+                                + ": " + error.getMessage())
+                );
+    }
+
+    private static double ratio(long hits, long misses) {
+        long requests = hits + misses;
+        return requests == 0 ? 1.0 : (double) hits / requests;
+    }
+}
@@ -0,0 +1,62 @@
+package org.pl.service;
+
+import org.pl.dao.Item;
+import org.pl.repository.ItemSort;
+import org.springframework.data.domain.Slice;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Непрозрачный курсор keyset-пагинации: последняя пара (ключ сортировки, id) на странице.
+ * Кодируется в base64url вместе с видом сортировки, чтобы курсор нельзя было применить к другой сортировке.
+ */
+public record ItemCursor(ItemSort sort, Object key, long id) {
+
+    private static final String SEPARATOR = "|";
+
+    public static ItemCursor of(ItemSort sort, Item item) {
+        return new ItemCursor(sort, sort.keyOf(item), item.getId());
+    }
+
+    /**
+     * Курсор на следующую страницу или null, если страница последняя
+     */
+    public static String next(Slice<List<Item>> slice, String sortBy) {
+        if (!slice.hasNext() || slice.getContent().isEmpty()) {
+            return null;
+        }
+        List<Item> lastRow = slice.getContent().getLast();
+        if (lastRow.isEmpty()) {
+            return null;
+        }
+        return of(ItemSort.from(sortBy), lastRow.getLast()).encode();
+    }
+
+    public String encode() {
+        String raw = sort.name() + SEPARATOR + id + SEPARATOR + (key == null ? "" : key.toString());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Разбирает курсор; возвращает null, если курсор повреждён или выдан для другой сортировки
+     */
+    public static ItemCursor decode(String token, ItemSort expectedSort) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 3);
+            if (parts.length != 3 || !expectedSort.name().equals(parts[0])) {
+                return null;
+            }
+            long id = Long.parseLong(parts[1]);
+            Object key = expectedSort.hasKey() ? expectedSort.parseKey(parts[2]) : null;
+            return new ItemCursor(expectedSort, key, id);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.pl.service;
+
+import org.pl.dao.Item;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.r2dbc.mapping.OutboundRow;
+import org.springframework.data.r2dbc.mapping.event.AfterSaveCallback;
+import org.springframework.data.relational.core.sql.SqlIdentifier;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.NoTransactionException;
+import org.springframework.transaction.reactive.TransactionSynchronization;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
+import reactor.core.publisher.Mono;
+
+/**
+ * Поддерживает поисковый индекс и кэш товаров в актуальном состоянии при сохранении товаров через R2DBC.
+ * Индекс получаем через ObjectProvider: он зависит от ItemRepository, а репозиторий - от колбэков.
+ * <p>
+ * Внутри транзакции индекс обновляется и кэш сбрасывается только после коммита: иначе параллельное чтение
+ * успело бы снова положить в кэш старую строку, а откат оставил бы в индексе незакоммиченные данные.
+ * Без транзакции строка уже сохранена, и обновление выполняется сразу.
+ */
+@Component
+public class ItemSavedCallback implements AfterSaveCallback<Item> {
+
+    private final ObjectProvider<ItemSearchIndex> itemSearchIndex;
+    private final ItemCache itemCache;
+
+    public ItemSavedCallback(ObjectProvider<ItemSearchIndex> itemSearchIndex, ItemCache itemCache) {
+        this.itemSearchIndex = itemSearchIndex;
+        this.itemCache = itemCache;
+    }
+
+    @Override
+    public Publisher<Item> onAfterSave(Item entity, OutboundRow outboundRow, SqlIdentifier table) {
+        // Снимок на момент сохранения: вызывающий может менять entity до коммита
+        Item saved = new Item(entity);
+        return TransactionSynchronizationManager.forCurrentTransaction()
+                .filter(TransactionSynchronizationManager::isSynchronizationActive)
+                .doOnNext(synchronizationManager -> synchronizationManager.registerSynchronization(
+                        new TransactionSynchronization() {
+                            @Override
+                            public Mono<Void> afterCommit() {
+                                return refresh(saved);
+                            }
+                        }))
+                .onErrorResume(NoTransactionException.class, e -> Mono.empty())
+                .switchIfEmpty(Mono.defer(() -> refresh(saved).then(Mono.empty())))
+                .thenReturn(entity);
+    }
+
+    private Mono<Void> refresh(Item saved) {
+        return Mono.fromRunnable(() -> itemSearchIndex.getObject().index(saved))
+                .then(itemCache.evict(saved.getId()));
+    }
+}
@@ -0,0 +1,424 @@
+package org.pl.service;
+
+import org.pl.dao.Item;
+import org.pl.repository.ItemRepository;
+import org.pl.repository.ItemSort;
+import org.pl.repository.SearchTerms;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Инвертированный индекс по названию и описанию товаров в памяти приложения.
+ * Токен запроса ищется как подстрока токенов словаря (через индекс триграмм словаря),
+ * поэтому поведение близко к прежнему LIKE '%term%', но без полного сканирования таблицы.
+ * Индекс загружается из таблицы items при старте и обновляется при сохранении товаров.
+ * Дополнительно хранит отсортированные названия для подсказок при вводе (поиск по префиксу).
+ */
+@Component
+public class ItemSearchIndex {
+
+    private static final int GRAM_SIZE = 3;
+    private static final int TITLE_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+    private static final int PHRASE_IN_TITLE_BONUS = 3;
+    // Разделитель между текстом и id в ключах подсказок: меньше любого символа названия
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    private final ItemRepository itemRepository;
+
+    private final Map<Long, Item> items = new ConcurrentHashMap<>();
+    private final Map<String, Set<Long>> titlePostings = new ConcurrentHashMap<>();
+    private final Map<String, Set<Long>> descriptionPostings = new ConcurrentHashMap<>();
+    // Триграмма -> токены словаря, которые её содержат
+    private final Map<String, Set<String>> gramsToTokens = new ConcurrentHashMap<>();
+    // "название в нижнем регистре + \0 + id" -> название; отсортировано, поэтому префикс - это диапазон ключей
+    private final ConcurrentNavigableMap<String, String> titleCompletions = new ConcurrentSkipListMap<>();
+    // То же для хвостов названия, начинающихся со второго и следующих слов ("pro 16" для "MacBook Pro 16")
+    private final ConcurrentNavigableMap<String, String> wordCompletions = new ConcurrentSkipListMap<>();
+
+    private volatile boolean ready;
+
+    public ItemSearchIndex(ItemRepository itemRepository) {
+        this.itemRepository = itemRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        itemRepository.findAll()
+                .doOnNext(this::index)
+                .count()
+                .subscribe(
+                        count -> {
+                            ready = true;
+                            System.out.println("ItemSearchIndex: проиндексировано товаров: " + count);
+                        },
+                        error -> System.err.println("ItemSearchIndex: ошибка загрузки индекса: " + error.getMessage())
+                );
+    }
+
+    /**
+     * Пока индекс не загружен, поиск должен выполняться в БД
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Добавляет товар в индекс или заменяет ранее проиндексированную версию
+     */
+    public synchronized void index(Item item) {
+        if (item == null || item.getId() == null) {
+            return;
+        }
+        Item previous = items.put(item.getId(), item);
+        if (previous != null) {
+            unlink(previous);
+        }
+        link(titlePostings, item.getId(), tokenize(item.getTitle()));
+        link(descriptionPostings, item.getId(), tokenize(item.getDescription()));
+        linkCompletions(item);
+    }
+
+    public synchronized void remove(Long id) {
+        Item previous = items.remove(id);
+        if (previous != null) {
+            unlink(previous);
+        }
+    }
+
+    /**
+     * Страница результата поиска и общее количество совпадений
+     */
+    public record SearchPage(List<Item> items, int total) {
+    }
+
+    /**
+     * Все товары, содержащие каждый токен запроса в названии или описании, полностью отсортированные.
+     * Только для тестов как эталон порядка: каталог берёт страницы через search с offset/limit и searchAfter.
+     */
+    List<Item> search(String query, ItemSort sort) {
+        Matches matches = match(query);
+        List<Item> result = new ArrayList<>(matches.items());
+        result.sort(order(sort, matches.scores()));
+        return result;
+    }
+
+    /**
+     * Товары, содержащие каждый токен запроса в названии или описании: с позиции offset, не больше limit,
+     * и общее количество совпадений. При сортировке NO порядок - по релевантности, иначе - как ORDER BY.
+     * Сортируются не все совпадения, а только первые offset + limit - через кучу ограниченного размера.
+     */
+    public SearchPage search(String query, ItemSort sort, long offset, int limit) {
+        Matches matches = match(query);
+        int k = (int) Math.min(matches.items().size(), offset + limit);
+        List<Item> top = top(matches.items(), order(sort, matches.scores()), k);
+        int start = (int) Math.min(offset, top.size());
+        return new SearchPage(top.subList(start, top.size()), matches.items().size());
+    }
+
+    /**
+     * Не больше limit товаров, следующих в порядке сортировки за курсором; без курсора - с начала.
+     * Если товар курсора при сортировке NO больше не находится, выдача начинается сначала.
+     */
+    public List<Item> searchAfter(String query, ItemSort sort, ItemCursor cursor, int limit) {
+        Matches matches = match(query);
+        Comparator<Item> order = order(sort, matches.scores());
+        Item after = cursor == null ? null : cursorItem(cursor, matches.scores());
+        if (after == null) {
+            return top(matches.items(), order, limit);
+        }
+        List<Item> remaining = new ArrayList<>();
+        for (Item item : matches.items()) {
+            if (order.compare(item, after) > 0) {
+                remaining.add(item);
+            }
+        }
+        return top(remaining, order, limit);
+    }
+
+    /**
+     * До limit названий товаров, начинающихся с prefix; затем названия, в которых с prefix начинается одно из слов.
+     * Запрос к БД не выполняется: это диапазонный обход отсортированных ключей.
+     */
+    public List<String> suggest(String prefix, int limit) {
+        if (prefix == null || prefix.isBlank() || limit <= 0) {
+            return List.of();
+        }
+        String normalized = prefix.strip().toLowerCase(Locale.ROOT);
+        Set<String> result = new LinkedHashSet<>();
+        collectCompletions(titleCompletions, normalized, limit, result);
+        collectCompletions(wordCompletions, normalized, limit, result);
+        return new ArrayList<>(result);
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * Совпавшие товары и их релевантность с учётом бонуса за фразу в названии
+     */
+    private record Matches(List<Item> items, Map<Long, Integer> scores) {
+    }
+
+    private Matches match(String query) {
+        Set<String> queryTokens = tokenize(query);
+        if (queryTokens.isEmpty()) {
+            return new Matches(List.of(), Map.of());
+        }
+
+        Map<Long, Integer> scores = null;
+        for (String queryToken : queryTokens) {
+            Map<Long, Integer> tokenScores = scoreToken(queryToken);
+            if (scores == null) {
+                scores = tokenScores;
+            } else {
+                // Пересечение: товар должен соответствовать всем токенам запроса
+                Map<Long, Integer> previous = scores;
+                scores = new HashMap<>();
+                for (Map.Entry<Long, Integer> entry : tokenScores.entrySet()) {
+                    Integer score = previous.get(entry.getKey());
+                    if (score != null) {
+                        scores.put(entry.getKey(), score + entry.getValue());
+                    }
+                }
+            }
+            if (scores.isEmpty()) {
+                return new Matches(List.of(), Map.of());
+            }
+        }
+
+        String phrase = query.trim().toLowerCase(Locale.ROOT);
+        Map<Long, Integer> finalScores = new HashMap<>();
+        List<Item> result = new ArrayList<>(scores.size());
+        for (Map.Entry<Long, Integer> entry : scores.entrySet()) {
+            Item item = items.get(entry.getKey());
+            if (item == null) {
+                continue;
+            }
+            int score = entry.getValue();
+            if (item.getTitle().toLowerCase(Locale.ROOT).contains(phrase)) {
+                score += PHRASE_IN_TITLE_BONUS;
+            }
+            finalScores.put(item.getId(), score);
+            result.add(item);
+        }
+        return new Matches(result, finalScores);
+    }
+
+    private static Comparator<Item> order(ItemSort sort, Map<Long, Integer> scores) {
+        return sort == ItemSort.NO
+                ? Comparator.comparing((Item item) -> scores.get(item.getId())).reversed()
+                        .thenComparing(Item::getId)
+                : sort.comparator();
+    }
+
+    /**
+     * Товар, с которым сравниваются кандидаты при выдаче после курсора. Для сортировок с ключом
+     * это пара (ключ, id) из курсора, как в keyset-запросе к БД; для NO - текущая релевантность товара курсора
+     */
+    private Item cursorItem(ItemCursor cursor, Map<Long, Integer> scores) {
+        if (!cursor.sort().hasKey()) {
+            return scores.containsKey(cursor.id()) ? items.get(cursor.id()) : null;
+        }
+        Item probe = new Item();
+        probe.setId(cursor.id());
+        if (cursor.key() instanceof BigDecimal price) {
+            probe.setPrice(price);
+        } else {
+            probe.setTitle((String) cursor.key());
+        }
+        return probe;
+    }
+
+    /**
+     * Первые k товаров в порядке order за O(n log k): в вершине кучи - худший из отобранных
+     */
+    private static List<Item> top(Collection<Item> candidates, Comparator<Item> order, int k) {
+        if (k <= 0 || candidates.isEmpty()) {
+            return List.of();
+        }
+        PriorityQueue<Item> heap = new PriorityQueue<>(Math.min(k, candidates.size()), order.reversed());
+        for (Item item : candidates) {
+            if (heap.size() < k) {
+                heap.add(item);
+            } else if (order.compare(item, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(item);
+            }
+        }
+        List<Item> result = new ArrayList<>(heap);
+        result.sort(order);
+        return result;
+    }
+
+    private Map<Long, Integer> scoreToken(String queryToken) {
+        Map<Long, Integer> scores = new HashMap<>();
+        for (String token : matchingTokens(queryToken)) {
+            addScores(scores, titlePostings.get(token), TITLE_WEIGHT);
+            addScores(scores, descriptionPostings.get(token), DESCRIPTION_WEIGHT);
+        }
+        return scores;
+    }
+
+    private void addScores(Map<Long, Integer> scores, Set<Long> ids, int weight) {
+        if (ids == null) {
+            return;
+        }
+        for (Long id : ids) {
+            scores.merge(id, weight, Math::max);
+        }
+    }
+
+    /**
+     * Токены словаря, содержащие queryToken как подстроку
+     */
+    private Set<String> matchingTokens(String queryToken) {
+        if (queryToken.length() < GRAM_SIZE) {
+            // Короткий токен не раскладывается на триграммы - проверяем весь словарь
+            Set<String> result = new HashSet<>();
+            collectContaining(titlePostings.keySet(), queryToken, result);
+            collectContaining(descriptionPostings.keySet(), queryToken, result);
+            return result;
+        }
+
+        Set<String> candidates = null;
+        for (String gram : grams(queryToken)) {
+            Set<String> tokens = gramsToTokens.get(gram);
+            if (tokens == null) {
+                return Set.of();
+            }
+            if (candidates == null) {
+                candidates = new HashSet<>(tokens);
+            } else {
+                candidates.retainAll(tokens);
+            }
+            if (candidates.isEmpty()) {
+                return Set.of();
+            }
+        }
+        candidates.removeIf(token -> !token.contains(queryToken));
+        return candidates;
+    }
+
+    private void collectContaining(Set<String> vocabulary, String queryToken, Set<String> result) {
+        for (String token : vocabulary) {
+            if (token.contains(queryToken)) {
+                result.add(token);
+            }
+        }
+    }
+
+    private void collectCompletions(ConcurrentNavigableMap<String, String> completions, String prefix,
+                                    int limit, Set<String> result) {
+        // Все ключи с данным префиксом лежат в диапазоне [prefix, prefix + '\uffff')
+        for (String title : completions.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+            if (result.size() >= limit) {
+                return;
+            }
+            result.add(title);
+        }
+    }
+
+    private void linkCompletions(Item item) {
+        List<String> keys = completionKeys(item);
+        if (keys.isEmpty()) {
+            return;
+        }
+        titleCompletions.put(keys.getFirst(), item.getTitle());
+        for (String key : keys.subList(1, keys.size())) {
+            wordCompletions.put(key, item.getTitle());
+        }
+    }
+
+    private void unlinkCompletions(Item item) {
+        List<String> keys = completionKeys(item);
+        if (keys.isEmpty()) {
+            return;
+        }
+        titleCompletions.remove(keys.getFirst());
+        for (String key : keys.subList(1, keys.size())) {
+            wordCompletions.remove(key);
+        }
+    }
+
+    /**
+     * Ключи подсказок товара: первым - всё название, далее - хвосты с начала каждого следующего слова
+     */
+    private static List<String> completionKeys(Item item) {
+        String title = item.getTitle();
+        if (title == null || title.isBlank()) {
+            return List.of();
+        }
+        String lower = title.strip().toLowerCase(Locale.ROOT);
+        String suffix = KEY_SEPARATOR + item.getId().toString();
+        List<String> keys = new ArrayList<>();
+        keys.add(lower + suffix);
+        for (int i = 1; i < lower.length(); i++) {
+            if (Character.isLetterOrDigit(lower.charAt(i)) && !Character.isLetterOrDigit(lower.charAt(i - 1))) {
+                keys.add(lower.substring(i) + suffix);
+            }
+        }
+        return keys;
+    }
+
+    private void link(Map<String, Set<Long>> postings, Long id, Set<String> tokens) {
+        for (String token : tokens) {
+            postings.computeIfAbsent(token, key -> {
+                for (String gram : grams(key)) {
+                    gramsToTokens.computeIfAbsent(gram, g -> ConcurrentHashMap.newKeySet()).add(key);
+                }
+                return ConcurrentHashMap.newKeySet();
+            }).add(id);
+        }
+    }
+
+    private void unlink(Item item) {
+        unlink(titlePostings, item.getId(), tokenize(item.getTitle()));
+        unlink(descriptionPostings, item.getId(), tokenize(item.getDescription()));
+        unlinkCompletions(item);
+    }
+
+    private void unlink(Map<String, Set<Long>> postings, Long id, Set<String> tokens) {
+        for (String token : tokens) {
+            Set<Long> ids = postings.get(token);
+            if (ids == null) {
+                continue;
+            }
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                postings.remove(token);
+                if (!titlePostings.containsKey(token) && !descriptionPostings.containsKey(token)) {
+                    for (String gram : grams(token)) {
+                        Set<String> gramTokens = gramsToTokens.get(gram);
+                        if (gramTokens != null) {
+                            gramTokens.remove(token);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    static Set<String> tokenize(String text) {
+        return SearchTerms.tokenize(text);
+    }
+
+    private static List<String> grams(String token) {
+        if (token.length() < GRAM_SIZE) {
+            return List.of(token);
+        }
+        List<String> grams = new ArrayList<>(token.length() - GRAM_SIZE + 1);
+        for (int i = 0; i + GRAM_SIZE <= token.length(); i++) {
+            grams.add(token.substring(i, i + GRAM_SIZE));
+        }
+        return grams;
+    }
+}
@@ -1,105 +1,167 @@
 package org.pl.service;
 
 import org.pl.dao.Item;
+import org.pl.dto.ItemCacheStatsDto;
 import org.pl.repository.ItemRepository;
+import org.pl.repository.ItemSort;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.NoTransactionException;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.math.BigDecimal;
-import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 @Service
 public class ItemService {
 
-    private final ItemRepository itemRepository;
+    // Максимум id в одном запросе WHERE id IN (...), большие наборы загружаются частями
+    static final int ID_BATCH_SIZE = 500;
 
-    public ItemService(ItemRepository itemRepository) {
+    private final ItemRepository itemRepository;
+    private final ItemSearchIndex itemSearchIndex;
+    private final ItemBatchLoader itemBatchLoader;
+    private final ItemCache itemCache;
+
+    public ItemService(
+            ItemRepository itemRepository,
+            ItemSearchIndex itemSearchIndex,
+            ItemBatchLoader itemBatchLoader,
+            ItemCache itemCache
+    ) {
         this.itemRepository = itemRepository;
+        this.itemSearchIndex = itemSearchIndex;
+        this.itemBatchLoader = itemBatchLoader;
+        this.itemCache = itemCache;
+    }
+
+    /**
+     * Загружает товары по списку id: сначала из кэша (L1 в памяти, затем одним MGET из Redis),
+     * промахи - запросами WHERE id IN (...) по ID_BATCH_SIZE id в каждом, после чего они кладутся в кэш.
+     * Повторяющиеся id загружаются один раз, отсутствующие в БД пропускаются.
+     */
+    public Flux<Item> getItemByIds(Collection<Long> ids) {
+        List<Long> distinctIds = ids.stream().distinct().toList();
+        if (distinctIds.isEmpty()) {
+            return Flux.empty();
+        }
+        return itemCache.getAll(distinctIds, this::loadByIds)
+                .collectList()
+                .flatMapMany(cached -> {
+                    Set<Long> cachedIds = cached.stream().map(Item::getId).collect(Collectors.toSet());
+                    List<Long> missedIds = distinctIds.stream().filter(id -> !cachedIds.contains(id)).toList();
+                    if (missedIds.isEmpty()) {
+                        return Flux.fromIterable(cached);
+                    }
+                    return Flux.concat(Flux.fromIterable(cached), itemCache.loadAll(missedIds, this::loadByIds));
+                });
     }
 
-    public Flux<Item> getItemByIds(List<Long> ids) {
-        return Flux.fromIterable(ids).flatMap(itemRepository::findById);
+    /**
+     * Товары из БД запросами WHERE id IN (...) по ID_BATCH_SIZE id в каждом
+     */
+    private Flux<Item> loadByIds(Collection<Long> ids) {
+        return Flux.fromIterable(partition(List.copyOf(ids), ID_BATCH_SIZE))
+                .concatMap(itemRepository::findByIdIn);
     }
 
     @Transactional(readOnly = true)
     public Mono<Page<List<Item>>> getItemsSorted(Pageable pageable, String sortBy, String title) {
-        Mono<List<Item>> itemsMono;
-        Mono<Long> countMono;
-
-        if (title == null || title.isEmpty()) {
-            itemsMono = itemRepository.findAll().collectList();
-            countMono = itemRepository.count();
-        } else {
-            itemsMono = itemRepository.findByTitleContainingIgnoreCase(title).collectList();
-            countMono = itemRepository.findByTitleContainingIgnoreCase(title).count();
-        }
-
-        return Mono.zip(itemsMono, countMono)
-                .map(tuple -> {
-                    List<Item> allItems = tuple.getT1();
-                    Long totalCount = tuple.getT2();
-
-                    // Применяем сортировку
-                    List<Item> sortedItems = sortItems(allItems, sortBy);
+        ItemSort sort = ItemSort.from(sortBy);
 
-                    // Применяем пагинацию
-                    int start = pageable.getPageNumber() * pageable.getPageSize();
-                    int end = Math.min(start + pageable.getPageSize(), sortedItems.size());
-                    List<Item> pagedItems = sortedItems.subList(start, end);
+        if (useSearchIndex(title)) {
+            // Поиск по индексу в памяти, без обращения к БД
+            ItemSearchIndex.SearchPage page = itemSearchIndex.search(
+                    title, sort, pageable.getOffset(), pageable.getPageSize());
+            return Mono.just(new PageImpl<>(chunkList(page.items()), pageable, page.total()));
+        }
 
+        // Сортировка, пагинация и подсчёт общего количества выполняются в БД одним запросом
+        return itemRepository
+                .findPageWithTotal(title, sort, pageable.getOffset(), pageable.getPageSize())
+                .map(countedItems -> {
                     // Разбиваем на чанки по 3
-                    List<List<Item>> chunkedItems = chunkList(pagedItems);
+                    List<List<Item>> chunkedItems = chunkList(countedItems.items());
 
                     return new PageImpl<>(
                             chunkedItems,
                             pageable,
-                            totalCount
+                            countedItems.totalCount()
                     );
                 });
     }
 
-    private List<Item> sortItems(List<Item> items, String sortBy) {
-        return switch (sortBy) {
-            case "PRICE_ASC" -> items.stream()
-                    .sorted(Comparator.comparing(Item::getPrice))
-                    .collect(Collectors.toList());
-            case "PRICE_DESC" -> items.stream()
-                    .sorted(Comparator.comparing(Item::getPrice).reversed())
-                    .collect(Collectors.toList());
-            case "ALPHA_ASC" -> items.stream()
-                    .sorted(Comparator.comparing(item -> item.getTitle().toLowerCase()))
-                    .collect(Collectors.toList());
-            case "ALPHA_DESC" -> items.stream()
-                    .sorted(Comparator.comparing((Item item) -> item.getTitle().toLowerCase()).reversed())
-                    .collect(Collectors.toList());
-            case "NO" -> items;
-            default -> throw new IllegalStateException("Unexpected value: " + sortBy);
-        };
+    /**
+     * Keyset-пагинация каталога: страница после курсора after.
+     * Общее количество не считается, поэтому возвращается Slice, а не Page.
+     * Некорректный курсор приводит к выдаче первой страницы.
+     */
+    @Transactional(readOnly = true)
+    public Mono<Slice<List<Item>>> getItemsAfter(String after, Pageable pageable, String sortBy, String title) {
+        ItemSort sort = ItemSort.from(sortBy);
+        ItemCursor cursor = ItemCursor.decode(after, sort);
+        int limit = pageable.getPageSize() + 1;
+
+        if (useSearchIndex(title)) {
+            List<Item> items = itemSearchIndex.searchAfter(title, sort, cursor, limit);
+            boolean hasNext = items.size() > pageable.getPageSize();
+            List<Item> pagedItems = hasNext ? items.subList(0, pageable.getPageSize()) : items;
+            return Mono.just(new SliceImpl<>(chunkList(pagedItems), pageable, hasNext));
+        }
+
+        Flux<Item> itemsFlux = cursor == null
+                ? itemRepository.findPage(title, sort, 0, limit)
+                : itemRepository.findPageAfter(title, sort, cursor.key(), cursor.id(), limit);
+
+        return itemsFlux.collectList()
+                .map(items -> {
+                    // Лишняя строка говорит о наличии следующей страницы
+                    boolean hasNext = items.size() > pageable.getPageSize();
+                    List<Item> pagedItems = hasNext ? items.subList(0, pageable.getPageSize()) : items;
+                    return new SliceImpl<>(chunkList(pagedItems), pageable, hasNext);
+                });
     }
 
-    @Transactional(readOnly = true)
+    /**
+     * Товар из кэша, при промахе - из БД с сохранением в кэш (одна загрузка на id при одновременных промахах).
+     * Одиночные запросы в БД из параллельных запросов объединяются ItemBatchLoader в пачки.
+     * <p>
+     * Пачка загружается на отдельном соединении вне чьей-либо транзакции, а кэш видит только закоммиченные данные,
+     * поэтому внутри транзакции (оформление заказа, админка) товар читается напрямую на её соединении -
+     * так видны и её собственные незакоммиченные изменения.
+     */
     public Mono<Item> getItemById(Long id) {
-        return itemRepository.findById(id);
+        return TransactionSynchronizationManager.forCurrentTransaction()
+                .map(TransactionSynchronizationManager::isActualTransactionActive)
+                .onErrorResume(NoTransactionException.class, e -> Mono.just(false))
+                .flatMap(inTransaction -> inTransaction
+                        ? itemRepository.findById(id)
+                        : itemCache.get(id, itemBatchLoader::load));
     }
 
-    @Transactional(readOnly = true)
-    public Mono<BigDecimal> getPriceById(Long id) {
-        return getItemById(id)
-                .map(Item::getPrice)
-                .switchIfEmpty(Mono.error(new RuntimeException("Item not found")));
+    public ItemCacheStatsDto getCacheStats() {
+        return itemCache.stats();
+    }
+
+    private boolean useSearchIndex(String title) {
+        return title != null && !title.isEmpty() && itemSearchIndex.isReady();
     }
 
     private List<List<Item>> chunkList(List<Item> items) {
-        int chunkSize = 3;
+        return partition(items, 3);
+    }
+
+    private static <T> List<List<T>> partition(List<T> items, int chunkSize) {
         return IntStream.range(0, (items.size() + chunkSize - 1) / chunkSize)
                 .mapToObj(i -> items.subList(
                         i * chunkSize,
@@ -5,11 +5,11 @@ import org.pl.dao.Order;
 import org.pl.dao.OrderItem;
 import org.pl.dto.ItemInOrderDTO;
 import org.pl.dto.OrderWithItemsDTO;
+import org.pl.dto.PricedCartDto;
 import org.pl.repository.OrderItemRepository;
 import org.pl.repository.OrderRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
@@ -49,9 +49,8 @@ public class OrderItemService {
                             .distinct()
                             .toList();
 
-                    // Загружаем все заказы и товары параллельно
-                    Mono<Map<Long, Order>> ordersMapMono = Flux.fromIterable(orderIds)
-                            .flatMap(orderRepository::findById)
+                    // Загружаем все заказы и товары параллельно, каждый набор - запросом WHERE id IN (...)
+                    Mono<Map<Long, Order>> ordersMapMono = orderRepository.findAllById(orderIds)
                             .collectMap(Order::getId);
 
                     Mono<Map<Long, Item>> itemsMapMono = itemService.getItemByIds(itemIds).collectMap(Item::getId);
@@ -133,17 +132,15 @@ public class OrderItemService {
                 });
     }
 
+    /**
+     * Сохраняет позиции заказа из рассчитанной корзины одним пакетным INSERT.
+     * Существование товаров уже проверено при расчёте корзины одним запросом, повторно товары не читаются
+     */
     @Transactional()
-    public Mono<Void> saveOrder(Order order, Map<Long, Integer> cartItems) {
-        return Flux.fromIterable(cartItems.entrySet())
-                .flatMap(entry -> {
-                    Long itemId = entry.getKey();
-                    Integer quantity = entry.getValue();
-
-                    return itemService.getItemById(itemId)
-                            .map(item -> new OrderItem(order.getId(), itemId, quantity))
-                            .flatMap(orderItemRepository::save);
-                })
-                .then();
+    public Mono<Void> saveOrder(Order order, PricedCartDto pricedCart) {
+        List<OrderItem> orderItems = pricedCart.lines().stream()
+                .map(line -> new OrderItem(order.getId(), line.item().getId(), line.quantity()))
+                .toList();
+        return orderItemRepository.insertAll(orderItems).then();
     }
 }
@@ -0,0 +1,105 @@
+package org.pl.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Year;
+
+/**
+ * Выдаёт номера заказов вида ORD-{год}-{номер} по схеме hi/lo: из OrderNumberBlockSource резервируется блок
+ * из blockSize номеров, номера блока раздаются из памяти без обращения к БД и Redis.
+ * Номер уникален среди всех экземпляров приложения и начинается с 1 в каждом году; номер дополняется
+ * нулями до трёх цифр и не ограничен 999. Номера неиспользованного остатка блока при перезапуске теряются,
+ * поэтому нумерация возрастает, но может идти с пропусками.
+ */
+@Component
+public class OrderNumberAllocator {
+
+    private final OrderNumberBlockSource blockSource;
+    private final int blockSize;
+    private Clock clock = Clock.systemDefaultZone();
+
+    private final Object lock = new Object();
+    // Текущий блок номеров; null, пока блок не получен
+    private Block block;
+    // Резервирование следующего блока, к которому присоединяются все ждущие номер запросы
+    private Mono<Block> reservation;
+
+    public OrderNumberAllocator(
+            OrderNumberBlockSource blockSource,
+            @Value("${order-number.block-size:20}") int blockSize
+    ) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("order-number.block-size must be positive: " + blockSize);
+        }
+        this.blockSource = blockSource;
+        this.blockSize = blockSize;
+    }
+
+    void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    public Mono<String> nextOrderNumber() {
+        return Mono.defer(() -> {
+            int year = Year.now(clock).getValue();
+            Mono<Block> pending;
+            synchronized (lock) {
+                if (block != null && block.year == year && block.next <= block.last) {
+                    return Mono.just(format(year, block.next++));
+                }
+                if (reservation == null) {
+                    reservation = reserve(year);
+                }
+                pending = reservation;
+            }
+            // После получения блока берём номер заново: блок мог быть уже разобран параллельными запросами
+            return pending.then(nextOrderNumber());
+        });
+    }
+
+    private Mono<Block> reserve(int year) {
+        Mono<Block> reserved = blockSource.reserve(year, blockSize)
+                .map(last -> new Block(year, last - blockSize + 1, last))
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("Счётчик номеров заказов не вернул значение")));
+        return reserved
+                .doOnNext(next -> {
+                    synchronized (lock) {
+                        block = next;
+                        reservation = null;
+                    }
+                })
+                .doOnError(e -> {
+                    System.out.println("Не удалось зарезервировать номера заказов: " + e.getMessage());
+                    synchronized (lock) {
+                        reservation = null;
+                    }
+                })
+                .cache();
+    }
+
+    /**
+     * Общая часть номеров заказов года: ORD-{год}-
+     */
+    static String prefix(int year) {
+        return "ORD-" + year + "-";
+    }
+
+    private static String format(int year, long sequence) {
+        return prefix(year) + String.format("%03d", sequence);
+    }
+
+    private static final class Block {
+        private final int year;
+        private final long last;
+        private long next;
+
+        private Block(int year, long first, long last) {
+            this.year = year;
+            this.next = first;
+            this.last = last;
+        }
+    }
+}
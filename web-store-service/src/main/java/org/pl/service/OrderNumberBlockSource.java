@@ -0,0 +1,16 @@
+package org.pl.service;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Общий для всех экземпляров приложения счётчик номеров заказов по годам.
+ * Экземпляр резервирует сразу блок номеров и раздаёт его из памяти, не обращаясь к счётчику на каждый заказ.
+ */
+public interface OrderNumberBlockSource {
+
+    /**
+     * Атомарно сдвигает счётчик года на blockSize и возвращает его новое значение:
+     * вызывающему принадлежат номера (значение - blockSize, значение]
+     */
+    Mono<Long> reserve(int year, int blockSize);
+}
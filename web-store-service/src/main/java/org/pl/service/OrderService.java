@@ -7,7 +7,6 @@ import org.springframework.transaction.annotation.Transactional;
 import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
-import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
@@ -15,14 +14,16 @@ import java.util.UUID;
 public class OrderService {
 
     private final OrderRepository orderRepository;
+    private final OrderNumberAllocator orderNumberAllocator;
 
-    public OrderService(OrderRepository orderRepository) {
+    public OrderService(OrderRepository orderRepository, OrderNumberAllocator orderNumberAllocator) {
         this.orderRepository = orderRepository;
+        this.orderNumberAllocator = orderNumberAllocator;
     }
 
     @Transactional()
     public Mono<Order> createOrder(BigDecimal totalAmount, UUID userId) {
-        return generateNextOrderNumber()
+        return orderNumberAllocator.nextOrderNumber()
                 .map(orderNumber -> new Order(
                         orderNumber,
                         totalAmount,
@@ -32,26 +33,10 @@ public class OrderService {
                 .flatMap(orderRepository::save);
     }
 
-    @Transactional(readOnly = true)
-    public Mono<String> generateNextOrderNumber() {
-        int currentYear = LocalDate.now().getYear();
-
-        return orderRepository.findLastOrderNumber()
-                .defaultIfEmpty("")
-                .map(lastNumber -> {
-                    int nextSequence = 1;
-                    if (lastNumber != null && !lastNumber.isEmpty()) {
-                        String[] parts = lastNumber.split("-");
-                        if (parts.length == 3) {
-                            try {
-                                int lastSequence = Integer.parseInt(parts[2]);
-                                nextSequence = lastSequence + 1;
-                            } catch (NumberFormatException e) {
-                                nextSequence = 1;
-                            }
-                        }
-                    }
-                    return String.format("ORD-%d-%03d", currentYear, nextSequence);
-                });
+    /**
+     * Удаляет заказ вместе с позициями (ON DELETE CASCADE), например если оплату не удалось завершить
+     */
+    public Mono<Void> deleteOrder(Order order) {
+        return orderRepository.delete(order);
     }
 }
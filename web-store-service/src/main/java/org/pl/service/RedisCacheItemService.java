@@ -1,47 +1,96 @@
 package org.pl.service;
 
 import org.pl.dao.Item;
+import org.pl.dto.CachedItemDto;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.core.ReactiveValueOperations;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
 
 @Service
 public class RedisCacheItemService {
 
 
     private static final Duration DEFAULT_TTL = Duration.ofSeconds(10);
+    private final ReactiveRedisTemplate<String, Object> reactiveRedisTemplate;
     private final ReactiveValueOperations<String, Object> valueOps;
     private static final String ITEM_KEY_PREFIX = "item:";
+    private static final String INVALIDATION_CHANNEL = "item:invalidation";
 
 
     public RedisCacheItemService(ReactiveRedisTemplate<String, Object> reactiveRedisTemplate) {
+        this.reactiveRedisTemplate = reactiveRedisTemplate;
         this.valueOps = reactiveRedisTemplate.opsForValue();
     }
 
     public Mono<Item> getItemFromCache(Long id) {
+        return getCachedItem(id).map(CachedItemDto::item);
+    }
+
+    /**
+     * Запись кэша вместе с временем загрузки и моментом истечения
+     */
+    public Mono<CachedItemDto> getCachedItem(Long id) {
         return valueOps
                 .get(buildItemKey(id))
-                .cast(Item.class)
-                .doOnSuccess(item -> {
-                    if (item != null) {
-                        System.out.println("getItemFromCache item with id = " + item.getId());
+                .ofType(CachedItemDto.class)
+                .doOnSuccess(entry -> {
+                    if (entry != null) {
+                        System.out.println("getItemFromCache item with id = " + entry.item().getId());
                     }
                 }).doOnError(error -> System.out.println("getItemFromCache error: " + error.getMessage()));
     }
 
+    /**
+     * Читает товары одним MGET. Отсутствующие в кэше id в результат не попадают
+     */
+    public Flux<Item> getItemsFromCache(Collection<Long> ids) {
+        return getCachedItems(ids).map(CachedItemDto::item);
+    }
+
+    /**
+     * Записи кэша одним MGET вместе с временем загрузки и моментом истечения; отсутствующие id пропускаются
+     */
+    public Flux<CachedItemDto> getCachedItems(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Flux.empty();
+        }
+        List<String> keys = ids.stream().map(this::buildItemKey).toList();
+        return valueOps
+                .multiGet(keys)
+                // Для отсутствующих ключей MGET возвращает null
+                .map(values -> values.stream().filter(Objects::nonNull).toList())
+                .doOnNext(values -> System.out.println("getItemsFromCache requested = " + keys.size()
+                        + ", found = " + values.size()))
+                .doOnError(error -> System.out.println("getItemsFromCache error: " + error.getMessage()))
+                .flatMapIterable(values -> values)
+                .ofType(CachedItemDto.class);
+    }
+
     public Mono<Boolean> saveItemToCache(Item item) {
-        return saveItemToCache(item, DEFAULT_TTL);
+        return saveItemToCache(item, 0);
+    }
+
+    /**
+     * Сохраняет товар с TTL по умолчанию; loadMillis - время его загрузки из БД
+     */
+    public Mono<Boolean> saveItemToCache(Item item, long loadMillis) {
+        return saveItemToCache(item, loadMillis, DEFAULT_TTL);
     }
 
-    public Mono<Boolean> saveItemToCache(Item item, Duration ttl) {
+    public Mono<Boolean> saveItemToCache(Item item, long loadMillis, Duration ttl) {
         if (item == null || item.getId() == null) {
             return Mono.error(new IllegalArgumentException("Item or item ID cannot be null"));
         }
 
-        return valueOps.set(buildItemKey(item.getId()), item, ttl).doOnSuccess(success -> {
+        CachedItemDto entry = new CachedItemDto(item, loadMillis, System.currentTimeMillis() + ttl.toMillis());
+        return valueOps.set(buildItemKey(item.getId()), entry, ttl).doOnSuccess(success -> {
             if (Boolean.TRUE.equals(success)) {
                 System.out.println("saveItemToCache TRUE item id = " + item.getId());
             } else {
@@ -50,6 +99,44 @@ public class RedisCacheItemService {
         }).doOnError(error -> System.out.println("saveItemToCache error: " + error.getMessage()));
     }
 
+    public Mono<Void> saveItemsToCache(Collection<Item> items) {
+        return saveItemsToCache(items, 0);
+    }
+
+    /**
+     * Сохраняет товары в кэш с TTL по умолчанию; команды SET отправляются параллельно.
+     * loadMillis - время загрузки всей пачки: столько же займёт и её повторная загрузка
+     */
+    public Mono<Void> saveItemsToCache(Collection<Item> items, long loadMillis) {
+        return Flux.fromIterable(items)
+                .flatMap(item -> saveItemToCache(item, loadMillis))
+                .then();
+    }
+
+    public Mono<Boolean> deleteItemFromCache(Long id) {
+        return valueOps.delete(buildItemKey(id))
+                .doOnError(error -> System.out.println("deleteItemFromCache error: " + error.getMessage()));
+    }
+
+    /**
+     * Сообщает всем экземплярам приложения, что товар изменился и его нужно убрать из локального кэша
+     */
+    public Mono<Long> publishInvalidation(Long id) {
+        return reactiveRedisTemplate.convertAndSend(INVALIDATION_CHANNEL, id)
+                .doOnError(error -> System.out.println("publishInvalidation error: " + error.getMessage()));
+    }
+
+    /**
+     * id товаров из канала инвалидации, включая опубликованные этим экземпляром
+     */
+    public Flux<Long> invalidations() {
+        // listenToChannel подключается к Redis сразу при вызове, поэтому откладываем его до подписки
+        return Flux.defer(() -> reactiveRedisTemplate.listenToChannel(INVALIDATION_CHANNEL))
+                .map(message -> message.getMessage())
+                .ofType(Number.class)
+                .map(Number::longValue);
+    }
+
     private String buildItemKey(Long id) {
         return ITEM_KEY_PREFIX + id;
     }
@@ -0,0 +1,132 @@
+package org.pl.service;
+
+import org.pl.dto.CartLineChangeDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Корзина как хеш Redis "cart:{cartId}": поле - id товара, значение - количество;
+ * поле total - общее количество единиц, которое скрипты изменения пересчитывают вместе с позицией.
+ * Изменения выполняются одной командой или Lua-скриптом, поэтому корзину может менять любой экземпляр
+ * приложения без блокировок. Брошенные корзины удаляются по TTL, который продлевается при каждом изменении.
+ */
+@Component
+@ConditionalOnProperty(name = "cart.store", havingValue = "redis", matchIfMissing = true)
+public class RedisCartStore implements CartStore {
+
+    private static final String CART_KEY_PREFIX = "cart:";
+
+    // Поле хеша с общим количеством товаров: поддерживается скриптами изменения, чтобы значок корзины
+    // читался одной командой HGET без суммирования всех позиций
+    private static final String TOTAL_FIELD = "total";
+
+    // HINCRBY с удалением позиции при количестве <= 0, пересчётом total на фактическое изменение и продлением TTL.
+    // Возвращает {количество до, количество после, total после}
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> CHANGE_COUNT_SCRIPT = RedisScript.of("""
+            local count = redis.call('HINCRBY', KEYS[1], ARGV[1], ARGV[2])
+            local previous = count - tonumber(ARGV[2])
+            if count <= 0 then
+                redis.call('HDEL', KEYS[1], ARGV[1])
+                count = 0
+            end
+            local total = tonumber(redis.call('HGET', KEYS[1], 'total') or '0')
+            if count ~= previous then
+                total = redis.call('HINCRBY', KEYS[1], 'total', count - previous)
+            end
+            if total <= 0 then
+                redis.call('DEL', KEYS[1])
+                return {previous, count, 0}
+            end
+            redis.call('PEXPIRE', KEYS[1], ARGV[3])
+            return {previous, count, total}
+            """, List.class);
+
+    // Возвращает {количество до, 0, total после}
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> REMOVE_SCRIPT = RedisScript.of("""
+            local count = tonumber(redis.call('HGET', KEYS[1], ARGV[1]) or '0')
+            if count == 0 then
+                return {0, 0, tonumber(redis.call('HGET', KEYS[1], 'total') or '0')}
+            end
+            redis.call('HDEL', KEYS[1], ARGV[1])
+            local total = redis.call('HINCRBY', KEYS[1], 'total', -count)
+            if total <= 0 then
+                redis.call('DEL', KEYS[1])
+                total = 0
+            end
+            return {count, 0, total}
+            """, List.class);
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final Duration ttl;
+
+    public RedisCartStore(
+            ReactiveStringRedisTemplate redisTemplate,
+            @Value("${cart.ttl:P7D}") Duration ttl
+    ) {
+        this.redisTemplate = redisTemplate;
+        this.ttl = ttl;
+    }
+
+    @Override
+    public Mono<Map<Long, Integer>> getItems(String cartId) {
+        return redisTemplate.<String, String>opsForHash()
+                .entries(buildCartKey(cartId))
+                .filter(entry -> !TOTAL_FIELD.equals(entry.getKey()))
+                .collect(HashMap::new, (items, entry) ->
+                        items.put(Long.valueOf(entry.getKey()), Integer.valueOf(entry.getValue())));
+    }
+
+    @Override
+    public Mono<CartLineChangeDto> changeCount(String cartId, Long itemId, int delta) {
+        return redisTemplate.execute(
+                        CHANGE_COUNT_SCRIPT,
+                        List.of(buildCartKey(cartId)),
+                        List.of(itemId.toString(), Integer.toString(delta), Long.toString(ttl.toMillis()))
+                )
+                .next()
+                .map(RedisCartStore::toLineChange);
+    }
+
+    @Override
+    public Mono<CartLineChangeDto> remove(String cartId, Long itemId) {
+        return redisTemplate.execute(REMOVE_SCRIPT, List.of(buildCartKey(cartId)), List.of(itemId.toString()))
+                .next()
+                .map(RedisCartStore::toLineChange);
+    }
+
+    @Override
+    public Mono<Void> clear(String cartId) {
+        return redisTemplate.delete(buildCartKey(cartId)).then();
+    }
+
+    @Override
+    public Mono<Integer> totalCount(String cartId) {
+        return redisTemplate.<String, String>opsForHash()
+                .get(buildCartKey(cartId), TOTAL_FIELD)
+                .map(Integer::valueOf)
+                .defaultIfEmpty(0);
+    }
+
+    private static CartLineChangeDto toLineChange(List<?> result) {
+        return new CartLineChangeDto(
+                ((Number) result.get(0)).intValue(),
+                ((Number) result.get(1)).intValue(),
+                ((Number) result.get(2)).intValue()
+        );
+    }
+
+    private String buildCartKey(String cartId) {
+        return CART_KEY_PREFIX + cartId;
+    }
+}
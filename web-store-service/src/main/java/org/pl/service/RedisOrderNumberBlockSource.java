@@ -0,0 +1,68 @@
+package org.pl.service;
+
+import org.pl.repository.OrderRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Счётчик номеров заказов в Redis: ключ "order-number:{год}", блок резервируется одним атомарным INCRBY,
+ * поэтому два экземпляра приложения никогда не получат пересекающиеся блоки. Новый год начинается
+ * с нового ключа, то есть нумерация сбрасывается без отдельного действия.
+ * <p>
+ * Redis может потерять ключ (перезапуск без persistence, FLUSHALL, вытеснение), пока заказы в БД остаются.
+ * Поэтому INCRBY выполняется только над существующим ключом; если ключа нет, он заводится с наибольшего номера
+ * заказа этого года в БД, и нумерация продолжается после него, а не с 1. Остатки блоков, которые экземпляры
+ * получили до потери ключа, могут совпасть с новыми номерами: такой заказ отклонит UNIQUE order_number,
+ * но таких совпадений не больше размера блока на экземпляр.
+ */
+@Component
+@ConditionalOnProperty(name = "order-number.source", havingValue = "redis", matchIfMissing = true)
+public class RedisOrderNumberBlockSource implements OrderNumberBlockSource {
+
+    private static final String KEY_PREFIX = "order-number:";
+
+    // INCRBY только существующего ключа; -1 - ключа нет, счётчик нужно завести заново
+    private static final RedisScript<Long> INCREMENT_SCRIPT = RedisScript.of("""
+            if redis.call('EXISTS', KEYS[1]) == 0 then
+                return -1
+            end
+            return redis.call('INCRBY', KEYS[1], ARGV[1])
+            """, Long.class);
+
+    // Поднимает счётчик не ниже ARGV[1] (параллельный экземпляр мог завести его раньше) и резервирует блок
+    private static final RedisScript<Long> SEED_SCRIPT = RedisScript.of("""
+            local current = tonumber(redis.call('GET', KEYS[1]) or '0')
+            if current < tonumber(ARGV[1]) then
+                redis.call('SET', KEYS[1], ARGV[1])
+            end
+            return redis.call('INCRBY', KEYS[1], ARGV[2])
+            """, Long.class);
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final OrderRepository orderRepository;
+
+    public RedisOrderNumberBlockSource(ReactiveStringRedisTemplate redisTemplate, OrderRepository orderRepository) {
+        this.redisTemplate = redisTemplate;
+        this.orderRepository = orderRepository;
+    }
+
+    @Override
+    public Mono<Long> reserve(int year, int blockSize) {
+        List<String> key = List.of(KEY_PREFIX + year);
+        return redisTemplate.execute(INCREMENT_SCRIPT, key, List.of(String.valueOf(blockSize)))
+                .next()
+                .flatMap(last -> last >= 0 ? Mono.just(last) : orderRepository
+                        .findMaxOrderSequence(OrderNumberAllocator.prefix(year))
+                        .defaultIfEmpty(0L)
+                        .doOnNext(floor ->
+                                System.out.println("Счётчик номеров заказов " + year + " не найден в Redis, продолжаем с " + floor)
+                        )
+                        .flatMap(floor -> redisTemplate.execute(SEED_SCRIPT, key,
+                                List.of(String.valueOf(floor), String.valueOf(blockSize))).next()));
+    }
+}
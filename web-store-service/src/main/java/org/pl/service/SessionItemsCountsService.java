@@ -1,82 +1,82 @@
 package org.pl.service;
 
+import org.pl.dto.CartLineChangeDto;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebSession;
 import reactor.core.publisher.Mono;
 
-import java.util.HashMap;
+import java.security.Principal;
 import java.util.Map;
 
+/**
+ * Корзина текущего пользователя. Содержимое хранится в CartStore по id пользователя ("sub" из Keycloak),
+ * а не в WebSession, поэтому корзина переживает перезапуск и доступна с любого экземпляра приложения.
+ */
 @Service
 public class SessionItemsCountsService {
 
+    private final CartStore cartStore;
+
+    public SessionItemsCountsService(CartStore cartStore) {
+        this.cartStore = cartStore;
+    }
+
     public Mono<Map<Long, Integer>> getCartItems(ServerWebExchange exchange) {
-        return exchange.getSession()
-                .map(session -> {
-                    Map<Long, Integer> items = session.getAttribute("cartItems");
-                    if (items == null) {
-                        items = new HashMap<>();
-                        session.getAttributes().put("cartItems", items);
-                    }
-                    return items;
-                });
+        return cartId(exchange).flatMap(cartStore::getItems);
     }
 
     public Mono<Void> clearCartItems(ServerWebExchange exchange) {
-        return exchange.getSession()
-                .flatMap(session -> {
-                    Map<Long, Integer> items = session.getAttribute("cartItems");
-                    if (items != null) {
-                        items.clear();
-                    }
-                    return session.save();
-                });
+        return cartId(exchange).flatMap(cartStore::clear);
     }
 
     public Mono<Void> removeItemFromCart(ServerWebExchange exchange, Long itemId) {
-        return exchange.getSession()
-                .flatMap(session -> {
-                    Map<Long, Integer> items = session.getAttribute("cartItems");
-                    if (items != null) {
-                        items.remove(itemId);
-                    }
-                    return session.save();
-                });
+        return cartId(exchange).flatMap(cartId -> cartStore.remove(cartId, itemId)).then();
     }
 
     public Mono<Void> updateItemCount(ServerWebExchange exchange, Long itemId, String action) {
-        return exchange.getSession()
-                .flatMap(session -> {
-                    Map<Long, Integer> items = session.getAttribute("cartItems");
-                    if (items == null) {
-                        items = new HashMap<>();
-                        session.getAttributes().put("cartItems", items);
-                    }
-
-                    int current = items.getOrDefault(itemId, 0);
-
-                    switch (action) {
-                        case "PLUS" -> items.put(itemId, current + 1);
-                        case "MINUS" -> {
-                            if (current > 0) items.put(itemId, current - 1);
-                        }
-                        case "DELETE" -> items.remove(itemId);
-                    }
+        return changeItemCount(exchange, itemId, action)
+                .then()
+                .onErrorResume(IllegalArgumentException.class, e -> Mono.empty());
+    }
 
-                    return session.save();
+    /**
+     * Применяет действие PLUS/MINUS/DELETE одной операцией хранилища и возвращает количество товара до и после
+     * вместе с общим количеством в корзине
+     */
+    public Mono<CartLineChangeDto> changeItemCount(ServerWebExchange exchange, Long itemId, String action) {
+        return cartId(exchange)
+                .flatMap(cartId -> switch (action) {
+                    case "PLUS" -> cartStore.changeCount(cartId, itemId, 1);
+                    case "MINUS" -> cartStore.changeCount(cartId, itemId, -1);
+                    case "DELETE" -> cartStore.remove(cartId, itemId);
+                    case null, default -> Mono.error(new IllegalArgumentException("Unknown cart action: " + action));
                 });
     }
 
     public Mono<Integer> checkItemsCount(ServerWebExchange exchange) {
-        return exchange.getSession()
-                .flatMap(session -> {
-                    Map<Long, Integer> items = session.getAttribute("cartItems");
-                    if (items == null) {
-                        items = new HashMap<>();
-                        session.getAttributes().put("cartItems", items);
-                    }
-                    items.entrySet().removeIf(entry -> entry.getValue() == 0);
-                    return session.save().thenReturn(items.values().stream().mapToInt(value -> value).sum());
-                });
+        return cartId(exchange).flatMap(cartStore::totalCount);
+    }
+
+    /**
+     * Корзина привязана к пользователю; для анонимного запроса - к id сессии
+     */
+    private Mono<String> cartId(ServerWebExchange exchange) {
+        return exchange.getPrincipal()
+                .map(this::userId)
+                .switchIfEmpty(Mono.defer(() -> exchange.getSession()
+                        .map(WebSession::getId)
+                        .map(sessionId -> "session:" + sessionId)));
+    }
+
+    private String userId(Principal principal) {
+        if (principal instanceof OAuth2AuthenticationToken token) {
+            String sub = token.getPrincipal().getAttribute("sub");
+            if (sub != null) {
+                return sub;
+            }
+        }
+        return principal.getName();
     }
 }
@@ -0,0 +1,114 @@
+package org.pl.session;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Атрибуты сессии с учётом изменённых имён: любой put (в том числе повторный put того же объекта
+ * после изменения на месте) и remove помечают атрибут, остальные при сохранении не сериализуются.
+ */
+class DirtyTrackingMap extends AbstractMap<String, Object> {
+
+    private final Map<String, Object> delegate = new ConcurrentHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Заполнение при загрузке из хранилища, без пометки изменений
+     */
+    void load(String name, Object value) {
+        delegate.put(name, value);
+    }
+
+    /**
+     * Имена атрибутов, изменённых или удалённых с момента последнего сохранения; сбрасывает пометки
+     */
+    Set<String> drainDirty() {
+        Set<String> names = Set.copyOf(dirty);
+        dirty.removeAll(names);
+        return names;
+    }
+
+    void markDirty(Collection<String> names) {
+        dirty.addAll(names);
+    }
+
+    @Override
+    public Object get(Object key) {
+        return delegate.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return delegate.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        dirty.add(key);
+        return delegate.put(key, value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        dirty.add((String) key);
+        return delegate.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        dirty.addAll(delegate.keySet());
+        delegate.clear();
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                Iterator<Entry<String, Object>> iterator = delegate.entrySet().iterator();
+                return new Iterator<>() {
+                    private Entry<String, Object> current;
+
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        Entry<String, Object> entry = iterator.next();
+                        current = entry;
+                        return new SimpleEntry<>(entry) {
+                            @Override
+                            public Object setValue(Object value) {
+                                super.setValue(value);
+                                return put(entry.getKey(), value);
+                            }
+                        };
+                    }
+
+                    @Override
+                    public void remove() {
+                        iterator.remove();
+                        dirty.add(current.getKey());
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return delegate.size();
+            }
+        };
+    }
+}
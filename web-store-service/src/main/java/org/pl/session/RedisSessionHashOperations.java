@@ -0,0 +1,105 @@
+package org.pl.session;
+
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Хеш сессии в Redis. Значения - сырые байты SessionAttributeCodec, без JSON-обёртки общего шаблона.
+ */
+@Component
+public class RedisSessionHashOperations implements SessionHashOperations {
+
+    // ARGV: ttl в мс, число пар n, n пар "поле, значение", затем поля для удаления
+    private static final RedisScript<Long> WRITE_SCRIPT = RedisScript.of("""
+            local pairs = tonumber(ARGV[2])
+            for i = 0, pairs - 1 do
+                redis.call('HSET', KEYS[1], ARGV[3 + i * 2], ARGV[4 + i * 2])
+            end
+            for i = 3 + pairs * 2, #ARGV do
+                redis.call('HDEL', KEYS[1], ARGV[i])
+            end
+            local ttl = tonumber(ARGV[1])
+            if ttl > 0 then
+                redis.call('PEXPIRE', KEYS[1], ttl)
+            else
+                redis.call('PERSIST', KEYS[1])
+            end
+            return pairs
+            """, Long.class);
+
+    private static final String NO_SUCH_KEY = "no such key";
+
+    private final ReactiveRedisTemplate<String, byte[]> redisTemplate;
+
+    public RedisSessionHashOperations(ReactiveRedisConnectionFactory factory) {
+        RedisSerializationContext<String, byte[]> context =
+                RedisSerializationContext.<String, byte[]>newSerializationContext()
+                        .key(StringRedisSerializer.UTF_8)
+                        .value(RedisSerializer.byteArray())
+                        .hashKey(StringRedisSerializer.UTF_8)
+                        .hashValue(RedisSerializer.byteArray())
+                        .build();
+        this.redisTemplate = new ReactiveRedisTemplate<>(factory, context);
+    }
+
+    @Override
+    public Mono<Map<String, byte[]>> entries(String key) {
+        return redisTemplate.<String, byte[]>opsForHash()
+                .entries(key)
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue, HashMap::new);
+    }
+
+    @Override
+    public Mono<Void> write(String key, Map<String, byte[]> changed, Collection<String> removed, Duration ttl) {
+        List<byte[]> args = new ArrayList<>(2 + changed.size() * 2 + removed.size());
+        args.add(bytes(Long.toString(ttl.isNegative() ? 0 : ttl.toMillis())));
+        args.add(bytes(Integer.toString(changed.size())));
+        changed.forEach((field, value) -> {
+            args.add(bytes(field));
+            args.add(value);
+        });
+        removed.forEach(field -> args.add(bytes(field)));
+
+        return redisTemplate.execute(WRITE_SCRIPT, List.of(key), args).then();
+    }
+
+    @Override
+    public Mono<Boolean> rename(String oldKey, String newKey) {
+        return redisTemplate.rename(oldKey, newKey)
+                // RENAME отвечает ошибкой "ERR no such key", если ключа нет (например, сессия истекла);
+                // остальные ошибки Redis пробрасываются вызывающему
+                .onErrorResume(RedisSessionHashOperations::isNoSuchKey, e -> Mono.just(false));
+    }
+
+    @Override
+    public Mono<Void> delete(String key) {
+        return redisTemplate.delete(key).then();
+    }
+
+    private static boolean isNoSuchKey(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().contains(NO_SUCH_KEY)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,295 @@
+package org.pl.session;
+
+import org.pl.codec.SessionAttributeCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.WebSession;
+import org.springframework.web.server.session.WebSessionStore;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Сессии WebFlux в Redis: хеш "session:{id}", общий для всех экземпляров приложения.
+ * При сохранении пишутся только атрибуты, которые с момента загрузки клали в сессию через put
+ * (изменённый на месте объект нужно положить повторно, как это делают репозитории Spring Security)
+ * и чьё сериализованное значение отличается от записанного, и удаляются убранные атрибуты. Если атрибуты не менялись (просмотр каталога), сессия не пишется вовсе,
+ * пока с последней записи не прошло touchInterval: тогда обновляется только время последнего обращения.
+ * Простаивающие сессии удаляет сам Redis: TTL ключа равен maxIdleTime и продлевается при каждой записи,
+ * поэтому сессия без изменений может истечь раньше maxIdleTime не более чем на touchInterval.
+ */
+@Component
+public class RedisWebSessionStore implements WebSessionStore {
+
+    static final String SESSION_KEY_PREFIX = "session:";
+    static final String CREATION_TIME = "creationTime";
+    static final String LAST_ACCESSED_TIME = "lastAccessedTime";
+    static final String MAX_IDLE_TIME = "maxIdleTime";
+    static final String ATTRIBUTE_PREFIX = "attr:";
+
+    private final SessionHashOperations hashOperations;
+    private final SessionAttributeCodec codec;
+    private final Duration defaultMaxIdleTime;
+    private final Duration touchInterval;
+
+    private Clock clock = Clock.system(ZoneId.of("GMT"));
+
+    public RedisWebSessionStore(
+            SessionHashOperations hashOperations,
+            @Value("${server.reactive.session.timeout:30m}") Duration defaultMaxIdleTime,
+            @Value("${session.touch-interval:PT1M}") Duration touchInterval,
+            @Value("${redis.value-codec.compression-threshold:512}") int compressionThreshold
+    ) {
+        this.hashOperations = hashOperations;
+        this.defaultMaxIdleTime = defaultMaxIdleTime;
+        this.touchInterval = touchInterval;
+        this.codec = new SessionAttributeCodec(compressionThreshold);
+    }
+
+    /**
+     * Часы для проверки истечения сессий; в тестах позволяет сдвигать время
+     */
+    public void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public Mono<WebSession> createWebSession() {
+        return Mono.fromSupplier(() -> new RedisWebSession(newId(), clock.instant(), defaultMaxIdleTime));
+    }
+
+    @Override
+    public Mono<WebSession> retrieveSession(String sessionId) {
+        return hashOperations.entries(buildSessionKey(sessionId))
+                .filter(entries -> entries.containsKey(LAST_ACCESSED_TIME))
+                .map(entries -> restore(sessionId, entries))
+                .flatMap(session -> session.isExpired()
+                        ? removeSession(sessionId).then(Mono.empty())
+                        : Mono.just(session));
+    }
+
+    @Override
+    public Mono<Void> removeSession(String sessionId) {
+        return hashOperations.delete(buildSessionKey(sessionId));
+    }
+
+    @Override
+    public Mono<WebSession> updateLastAccessTime(WebSession webSession) {
+        return Mono.fromSupplier(() -> {
+            ((RedisWebSession) webSession).lastAccessTime = clock.instant();
+            return webSession;
+        });
+    }
+
+    private RedisWebSession restore(String sessionId, Map<String, byte[]> entries) {
+        RedisWebSession session = new RedisWebSession(
+                sessionId,
+                Instant.ofEpochMilli(decodeLong(entries.get(CREATION_TIME))),
+                Duration.ofMillis(decodeLong(entries.get(MAX_IDLE_TIME))));
+        session.lastAccessTime = Instant.ofEpochMilli(decodeLong(entries.get(LAST_ACCESSED_TIME)));
+        session.persistedLastAccessTime = session.lastAccessTime;
+        session.persisted = true;
+        session.started = true;
+
+        entries.forEach((field, bytes) -> {
+            if (!field.startsWith(ATTRIBUTE_PREFIX)) {
+                return;
+            }
+            String name = field.substring(ATTRIBUTE_PREFIX.length());
+            session.persistedAttributes.put(name, bytes);
+            try {
+                session.attributes.load(name, codec.decode(bytes));
+            } catch (RuntimeException e) {
+                session.attributes.remove(name);
+                // Класс атрибута изменился после обновления приложения - атрибут будет удалён при сохранении
+                System.err.println("RedisWebSessionStore: не удалось прочитать атрибут " + name + ": " + e.getMessage());
+            }
+        });
+        return session;
+    }
+
+    private long decodeLong(byte[] bytes) {
+        return bytes == null ? 0 : (Long) codec.decode(bytes);
+    }
+
+    private static String newId() {
+        return UUID.randomUUID().toString();
+    }
+
+    static String buildSessionKey(String sessionId) {
+        return SESSION_KEY_PREFIX + sessionId;
+    }
+
+    private class RedisWebSession implements WebSession {
+
+        private volatile String id;
+        private final Instant creationTime;
+        private volatile Instant lastAccessTime;
+        // Время последнего обращения, записанное в Redis
+        private volatile Instant persistedLastAccessTime;
+        private volatile Duration maxIdleTime;
+        private volatile boolean started;
+        private volatile boolean invalidated;
+        // Есть ли ключ сессии в Redis: для новой сессии первое сохранение пишет все поля
+        private volatile boolean persisted;
+        private volatile boolean maxIdleTimeChanged;
+
+        private final DirtyTrackingMap attributes = new DirtyTrackingMap();
+        // Записанные в Redis значения атрибутов: изменённый атрибут с теми же байтами повторно не пишется
+        private final Map<String, byte[]> persistedAttributes = new ConcurrentHashMap<>();
+
+        RedisWebSession(String id, Instant creationTime, Duration maxIdleTime) {
+            this.id = id;
+            this.creationTime = creationTime;
+            this.lastAccessTime = creationTime;
+            this.maxIdleTime = maxIdleTime;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return attributes;
+        }
+
+        @Override
+        public Instant getCreationTime() {
+            return creationTime;
+        }
+
+        @Override
+        public Instant getLastAccessTime() {
+            return lastAccessTime;
+        }
+
+        @Override
+        public void setMaxIdleTime(Duration maxIdleTime) {
+            this.maxIdleTime = maxIdleTime;
+            this.maxIdleTimeChanged = true;
+        }
+
+        @Override
+        public Duration getMaxIdleTime() {
+            return maxIdleTime;
+        }
+
+        @Override
+        public void start() {
+            started = true;
+        }
+
+        @Override
+        public boolean isStarted() {
+            return started || !attributes.isEmpty();
+        }
+
+        @Override
+        public Mono<Void> changeSessionId() {
+            return Mono.defer(() -> {
+                String oldId = id;
+                String newId = newId();
+                if (!persisted) {
+                    id = newId;
+                    return Mono.empty();
+                }
+                return hashOperations.rename(buildSessionKey(oldId), buildSessionKey(newId))
+                        .doOnNext(renamed -> {
+                            id = newId;
+                            if (!renamed) {
+                                // Ключ истёк в Redis - при следующем сохранении сессия будет записана целиком
+                                persisted = false;
+                                persistedAttributes.clear();
+                                attributes.markDirty(attributes.keySet());
+                            }
+                        })
+                        .then();
+            });
+        }
+
+        @Override
+        public Mono<Void> invalidate() {
+            return Mono.defer(() -> {
+                invalidated = true;
+                attributes.clear();
+                persistedAttributes.clear();
+                return removeSession(id);
+            });
+        }
+
+        @Override
+        public Mono<Void> save() {
+            return Mono.defer(() -> {
+                if (invalidated) {
+                    return Mono.empty();
+                }
+
+                Set<String> dirtyNames = attributes.drainDirty();
+                Map<String, byte[]> encoded = new HashMap<>();
+                Map<String, byte[]> changed = new HashMap<>();
+                List<String> removed = new ArrayList<>();
+                for (String name : dirtyNames) {
+                    Object value = attributes.get(name);
+                    if (value == null) {
+                        if (persistedAttributes.containsKey(name)) {
+                            removed.add(ATTRIBUTE_PREFIX + name);
+                        }
+                        continue;
+                    }
+                    byte[] bytes = codec.encode(value);
+                    encoded.put(name, bytes);
+                    if (!Arrays.equals(bytes, persistedAttributes.get(name))) {
+                        changed.put(ATTRIBUTE_PREFIX + name, bytes);
+                    }
+                }
+
+                boolean touchDue = persistedLastAccessTime == null
+                        || !lastAccessTime.isBefore(persistedLastAccessTime.plus(touchInterval));
+                if (persisted && changed.isEmpty() && removed.isEmpty() && !maxIdleTimeChanged && !touchDue) {
+                    return Mono.empty();
+                }
+
+                Instant accessTime = lastAccessTime;
+                changed.put(LAST_ACCESSED_TIME, codec.encode(accessTime.toEpochMilli()));
+                if (!persisted) {
+                    changed.put(CREATION_TIME, codec.encode(creationTime.toEpochMilli()));
+                }
+                if (!persisted || maxIdleTimeChanged) {
+                    changed.put(MAX_IDLE_TIME, codec.encode(maxIdleTime.toMillis()));
+                }
+
+                return hashOperations.write(buildSessionKey(id), changed, removed, maxIdleTime)
+                        .doOnSuccess(ignored -> {
+                            persisted = true;
+                            persistedLastAccessTime = accessTime;
+                            maxIdleTimeChanged = false;
+                            removed.forEach(field -> persistedAttributes.remove(field.substring(ATTRIBUTE_PREFIX.length())));
+                            persistedAttributes.putAll(encoded);
+                        })
+                        // Не записанные изменения попадут в следующее сохранение
+                        .doOnError(e -> attributes.markDirty(dirtyNames));
+            });
+        }
+
+        @Override
+        public boolean isExpired() {
+            if (invalidated) {
+                return true;
+            }
+            return !maxIdleTime.isNegative() && lastAccessTime.plus(maxIdleTime).isBefore(clock.instant());
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package org.pl.session;
+
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Операции над хешем сессии в хранилище: поле - имя атрибута или служебного поля, значение - байты.
+ * Вынесены в отдельный интерфейс, чтобы хранилище сессий можно было проверить без Redis.
+ */
+public interface SessionHashOperations {
+
+    /**
+     * Все поля хеша; пустая Map, если ключа нет или он истёк
+     */
+    Mono<Map<String, byte[]>> entries(String key);
+
+    /**
+     * Атомарно записывает изменённые поля, удаляет removed и выставляет TTL ключа
+     * (TTL не задаётся, если ttl отрицательный)
+     */
+    Mono<Void> write(String key, Map<String, byte[]> changed, Collection<String> removed, Duration ttl);
+
+    /**
+     * false, если старого ключа уже нет
+     */
+    Mono<Boolean> rename(String oldKey, String newKey);
+
+    Mono<Void> delete(String key);
+}
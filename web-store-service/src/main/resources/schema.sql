@@ -4,9 +4,14 @@ CREATE TABLE items (
                        title VARCHAR(255) NOT NULL,
                        img_path VARCHAR(500),
                        price DECIMAL(10, 2) NOT NULL,
-                       description TEXT NOT NULL
+                       description TEXT NOT NULL,
+                       title_lower VARCHAR(255) GENERATED ALWAYS AS (LOWER(title))
 );
 
+-- Индексы для сортировки и постраничной выборки каталога на стороне БД
+CREATE INDEX idx_items_price_id ON items (price, id);
+CREATE INDEX idx_items_title_lower_id ON items (title_lower, id);
+
 -- Таблица заказов
 CREATE TABLE orders (
                         id BIGINT AUTO_INCREMENT PRIMARY KEY,
@@ -21,7 +21,110 @@ document.addEventListener('DOMContentLoaded', function() {
         }
     });
 
-    // 3. Дополнительная защита: обработка навигации назад/вперёд
+    // 3. Подсказки в строке поиска: запрашиваем названия по введённому префиксу
+    const searchInput = document.querySelector('input[data-suggest-url]');
+    if (searchInput) {
+        const suggestions = document.getElementById(searchInput.getAttribute('list'));
+        let suggestTimer = null;
+        searchInput.addEventListener('input', function() {
+            clearTimeout(suggestTimer);
+            const query = searchInput.value.trim();
+            if (!query) {
+                suggestions.replaceChildren();
+                return;
+            }
+            suggestTimer = setTimeout(function() {
+                fetch(searchInput.dataset.suggestUrl + '?q=' + encodeURIComponent(query))
+                    .then(response => response.ok ? response.json() : [])
+                    .then(titles => suggestions.replaceChildren(...titles.map(title => {
+                        const option = document.createElement('option');
+                        option.value = title;
+                        return option;
+                    })))
+                    .catch(() => suggestions.replaceChildren());
+            }, 150);
+        });
+    }
+
+    // 4. Кнопки корзины: меняем количество через JSON-API и обновляем страницу на месте.
+    //    Если API недоступно (например, истекла сессия), отправляем форму как раньше.
+    document.querySelectorAll('form[data-cart-api]').forEach(function(form) {
+        form.addEventListener('submit', function(event) {
+            const button = event.submitter;
+            if (!button || button.name !== 'action') {
+                return;
+            }
+            event.preventDefault();
+            button.disabled = true;
+
+            fetch(form.dataset.cartApi + '?action=' + encodeURIComponent(button.value), {
+                method: 'POST',
+                headers: {'Accept': 'application/json'}
+            })
+                .then(response => {
+                    const contentType = response.headers.get('Content-Type') || '';
+                    if (!response.ok || !contentType.includes('application/json')) {
+                        throw new Error('Cart API unavailable: ' + response.status);
+                    }
+                    return response.json();
+                })
+                .then(change => applyCartChange(form, change))
+                .catch(() => {
+                    button.disabled = false;
+                    fallbackSubmit(form, button);
+                })
+                .finally(() => {
+                    if (button.value !== 'MINUS') {
+                        button.disabled = false;
+                    }
+                });
+        });
+    });
+
+    function applyCartChange(form, change) {
+        const count = form.querySelector('[data-cart-count]');
+        if (count) {
+            count.textContent = change.count;
+        }
+        const minus = form.querySelector('button[value="MINUS"]');
+        if (minus) {
+            minus.disabled = change.count <= 0;
+        }
+        document.querySelectorAll('[data-cart-buy]').forEach(buy => buy.disabled = change.count <= 0);
+
+        document.querySelectorAll('[data-cart-badge]').forEach(badge => {
+            badge.textContent = change.totalCount;
+            badge.hidden = change.totalCount <= 0;
+        });
+        // Сумму не пересчитываем на сервере: прибавляем изменение к показанной, в копейках без ошибок округления
+        document.querySelectorAll('[data-cart-total]').forEach(total => {
+            const kopecks = Math.round(Number(total.dataset.cartTotal) * 100)
+                + Math.round(Number(change.totalSumDelta) * 100);
+            total.dataset.cartTotal = (kopecks / 100).toFixed(2);
+            total.textContent = total.dataset.cartTotal + ' руб.';
+        });
+
+        // На странице корзины позиция с нулевым количеством исчезает, пустая корзина рисуется сервером
+        const line = form.closest('[data-cart-line]');
+        if (line && change.count <= 0) {
+            if (change.totalCount <= 0) {
+                window.location.reload();
+            } else {
+                line.remove();
+            }
+        }
+    }
+
+    function fallbackSubmit(form, button) {
+        const action = document.createElement('input');
+        action.type = 'hidden';
+        action.name = 'action';
+        action.value = button.value;
+        form.appendChild(action);
+        form.submit();
+    }
+
+    // 5. Дополнительная защита: обработка навигации назад/вперёд
     window.addEventListener('popstate', function() {
         const savedPosition = sessionStorage.getItem('scrollPosition');
         if (savedPosition) {
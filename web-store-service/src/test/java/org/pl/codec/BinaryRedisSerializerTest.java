@@ -0,0 +1,90 @@
+package org.pl.codec;
+
+import org.junit.jupiter.api.Test;
+import org.pl.dao.Item;
+import org.pl.dto.CachedItemDto;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BinaryRedisSerializerTest {
+
+    private final ItemCodec itemCodec = new ItemCodec();
+    private final BinaryRedisSerializer serializer =
+            new BinaryRedisSerializer(List.of(itemCodec, new CachedItemCodec(itemCodec)), 512);
+
+    @Test
+    void cachedItem_shouldRoundTripAndBeSmallerThanJson() {
+        CachedItemDto entry = new CachedItemDto(createItem("Ноутбук с дисплеем 16 дюймов"), 12, 1_700_000_000_000L);
+
+        byte[] bytes = serializer.serialize(entry);
+        CachedItemDto restored = (CachedItemDto) serializer.deserialize(bytes);
+
+        assertThat(bytes[0]).isEqualTo(CachedItemCodec.TAG);
+        assertThat(restored.loadMillis()).isEqualTo(12);
+        assertThat(restored.expiresAtMillis()).isEqualTo(1_700_000_000_000L);
+        assertItemEquals(restored.item(), entry.item());
+        assertThat(bytes.length).isLessThan(new GenericJackson2JsonRedisSerializer().serialize(entry).length / 2);
+    }
+
+    @Test
+    void item_withNullFields_shouldRoundTrip() {
+        Item item = new Item(null, null, null, null);
+
+        Item restored = (Item) serializer.deserialize(serializer.serialize(item));
+
+        assertThat(restored.getId()).isNull();
+        assertThat(restored.getTitle()).isNull();
+        assertThat(restored.getPrice()).isNull();
+    }
+
+    @Test
+    void longDescription_shouldBeCompressed() {
+        Item item = createItem("Очень подробное описание товара. ".repeat(100));
+
+        byte[] bytes = serializer.serialize(item);
+
+        assertThat(bytes[2] & BinaryRedisSerializer.FLAG_DEFLATE).isEqualTo(BinaryRedisSerializer.FLAG_DEFLATE);
+        assertThat(bytes.length).isLessThan(item.getDescription().length());
+        assertItemEquals((Item) serializer.deserialize(bytes), item);
+    }
+
+    @Test
+    void typesWithoutCodec_shouldFallBackToJson() {
+        byte[] bytes = serializer.serialize(42L);
+
+        assertThat(bytes[0]).isEqualTo(BinaryRedisSerializer.JSON_TAG);
+        assertThat(((Number) serializer.deserialize(bytes)).longValue()).isEqualTo(42L);
+    }
+
+    @Test
+    void unknownTagOrVersion_shouldFail() {
+        byte[] legacyJson = new GenericJackson2JsonRedisSerializer().serialize(createItem("legacy"));
+        assertThatThrownBy(() -> serializer.deserialize(legacyJson))
+                .isInstanceOf(SerializationException.class);
+
+        byte[] bytes = serializer.serialize(createItem("v1"));
+        bytes[1] = 99;
+        assertThatThrownBy(() -> serializer.deserialize(bytes))
+                .isInstanceOf(SerializationException.class);
+    }
+
+    private void assertItemEquals(Item actual, Item expected) {
+        assertThat(actual.getId()).isEqualTo(expected.getId());
+        assertThat(actual.getTitle()).isEqualTo(expected.getTitle());
+        assertThat(actual.getImgPath()).isEqualTo(expected.getImgPath());
+        assertThat(actual.getPrice()).isEqualTo(expected.getPrice());
+        assertThat(actual.getDescription()).isEqualTo(expected.getDescription());
+    }
+
+    private Item createItem(String description) {
+        Item item = new Item("MacBook Pro 16\" M2 Pro", "images/macbook-pro-16.jpg", new BigDecimal("2499.99"), description);
+        item.setId(123L);
+        return item;
+    }
+}
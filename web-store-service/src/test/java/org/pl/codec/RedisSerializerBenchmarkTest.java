@@ -0,0 +1,69 @@
+package org.pl.codec;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.pl.dao.Item;
+import org.pl.dto.CachedItemDto;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Сравнение бинарного кодека с GenericJackson2JsonRedisSerializer: байт на запись и нс на операцию.
+ * Запуск: mvn test -Dtest=RedisSerializerBenchmarkTest -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class RedisSerializerBenchmarkTest {
+
+    private static final int WARMUP_ITERATIONS = 200_000;
+    private static final int MEASURED_ITERATIONS = 500_000;
+
+    @Test
+    void compareWithJson() {
+        ItemCodec itemCodec = new ItemCodec();
+        RedisSerializer<Object> binary = new BinaryRedisSerializer(List.of(itemCodec, new CachedItemCodec(itemCodec)), 512);
+        RedisSerializer<Object> json = new GenericJackson2JsonRedisSerializer();
+
+        for (String description : List.of("Лёгкий ноутбук", "Подробное описание товара. ".repeat(40))) {
+            CachedItemDto entry = new CachedItemDto(createItem(description), 7, System.currentTimeMillis());
+            System.out.printf("description length = %d%n", description.length());
+            measure("json", json, entry);
+            measure("binary", binary, entry);
+        }
+    }
+
+    private void measure(String name, RedisSerializer<Object> serializer, CachedItemDto entry) {
+        byte[] bytes = serializer.serialize(entry);
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            sink += serializer.serialize(entry).length;
+            sink += serializer.deserialize(bytes).hashCode();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            sink += serializer.serialize(entry).length;
+        }
+        long serializeNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            sink += serializer.deserialize(bytes).hashCode();
+        }
+        long deserializeNanos = System.nanoTime() - start;
+
+        System.out.printf("%-6s bytes = %4d, serialize = %5d ns/op, deserialize = %5d ns/op (%d)%n",
+                name, bytes.length,
+                serializeNanos / MEASURED_ITERATIONS,
+                deserializeNanos / MEASURED_ITERATIONS,
+                sink & 1);
+    }
+
+    private Item createItem(String description) {
+        Item item = new Item("MacBook Pro 16\" M2 Pro", "images/macbook-pro-16.jpg", new BigDecimal("2499.99"), description);
+        item.setId(123L);
+        return item;
+    }
+}
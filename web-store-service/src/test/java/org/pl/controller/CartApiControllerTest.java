@@ -0,0 +1,113 @@
+package org.pl.controller;
+
+import org.junit.jupiter.api.Test;
+import org.pl.dao.Item;
+import org.pl.dto.CartLineChangeDto;
+import org.springframework.http.MediaType;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CartApiControllerTest extends ControllerIntegrationTest {
+
+    @Test
+    void changeItemCount_shouldReturnChangedLineBadgeAndTotalDelta() {
+        when(itemService.getItemById(1L)).thenReturn(Mono.just(createItem(1L, "100.50")));
+        when(sessionItemsCountsService.changeItemCount(any(), eq(1L), eq("PLUS")))
+                .thenReturn(Mono.just(new CartLineChangeDto(1, 2, 5)));
+
+        webTestClient.post()
+                .uri("/api/cart/items/1?action=PLUS")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_JSON)
+                .expectBody()
+                .jsonPath("$.itemId").isEqualTo(1)
+                .jsonPath("$.count").isEqualTo(2)
+                .jsonPath("$.lineTotal").isEqualTo(201.0)
+                .jsonPath("$.totalCount").isEqualTo(5)
+                .jsonPath("$.totalSumDelta").isEqualTo(100.5);
+
+        verify(sessionItemsCountsService, never()).checkItemsCount(any());
+        verify(cartService, never()).getPricedCart(any());
+    }
+
+    @Test
+    void changeItemCount_minusAtZero_shouldNotChangeTotal() {
+        when(itemService.getItemById(1L)).thenReturn(Mono.just(createItem(1L, "100.50")));
+        when(sessionItemsCountsService.changeItemCount(any(), eq(1L), eq("MINUS")))
+                .thenReturn(Mono.just(new CartLineChangeDto(0, 0, 3)));
+
+        webTestClient.post()
+                .uri("/api/cart/items/1?action=MINUS")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.count").isEqualTo(0)
+                .jsonPath("$.totalCount").isEqualTo(3)
+                .jsonPath("$.totalSumDelta").isEqualTo(0.0);
+    }
+
+    @Test
+    void changeItemCount_delete_shouldSubtractWholeLine() {
+        when(itemService.getItemById(1L)).thenReturn(Mono.just(createItem(1L, "10.25")));
+        when(sessionItemsCountsService.changeItemCount(any(), eq(1L), eq("DELETE")))
+                .thenReturn(Mono.just(new CartLineChangeDto(4, 0, 1)));
+
+        webTestClient.post()
+                .uri("/api/cart/items/1?action=DELETE")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.lineTotal").isEqualTo(0.0)
+                .jsonPath("$.totalSumDelta").isEqualTo(-41.0);
+    }
+
+    @Test
+    void changeItemCount_withUnknownAction_shouldReturnBadRequest() {
+        when(itemService.getItemById(1L)).thenReturn(Mono.just(createItem(1L, "10.00")));
+        when(sessionItemsCountsService.changeItemCount(any(), eq(1L), eq("BUY")))
+                .thenReturn(Mono.error(new IllegalArgumentException("Unknown cart action: BUY")));
+
+        webTestClient.post()
+                .uri("/api/cart/items/1?action=BUY")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.error").isEqualTo("Unknown cart action: BUY");
+    }
+
+    @Test
+    void changeItemCount_forMissingItem_shouldReturnNotFoundWithoutChangingCart() {
+        when(itemService.getItemById(99L)).thenReturn(Mono.empty());
+
+        webTestClient.post()
+                .uri("/api/cart/items/99?action=PLUS")
+                .exchange()
+                .expectStatus().isNotFound();
+
+        verify(sessionItemsCountsService, never()).changeItemCount(any(), anyLong(), anyString());
+    }
+
+    @Test
+    void changeItemCount_withoutAuth_shouldRedirectToLogin() {
+        unauthenticatedClient().post()
+                .uri("/api/cart/items/1?action=PLUS")
+                .exchange()
+                .expectStatus().isFound();
+    }
+
+    private Item createItem(Long id, String price) {
+        Item item = new Item("Item " + id, "img.jpg", new BigDecimal(price), "Description");
+        item.setId(id);
+        return item;
+    }
+}
@@ -3,6 +3,8 @@ package org.pl.controller;
 import org.junit.jupiter.api.Test;
 import org.pl.dao.Item;
 import org.pl.dao.Order;
+import org.pl.dto.PricedCartDto;
+import org.pl.dto.PricedCartLineDto;
 import org.springframework.http.MediaType;
 import reactor.core.publisher.Mono;
 
@@ -10,6 +12,7 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
@@ -57,13 +60,20 @@ class CartControllerTest extends ControllerIntegrationTest {
         );
         itemAirPods.setId(3L);
 
-        List<Item> items = List.of(itemMacBook, itemAirPods);
         BigDecimal total = new BigDecimal("5249.97");
 
+        PricedCartDto pricedCart = new PricedCartDto(
+                List.of(
+                        new PricedCartLineDto(itemMacBook, cartItems.get(1L), new BigDecimal("4999.98")),
+                        new PricedCartLineDto(itemAirPods, cartItems.get(3L), new BigDecimal("249.99"))
+                ),
+                Set.of(),
+                3,
+                total
+        );
+
         // Настройка моков
-        when(sessionItemsCountsService.getCartItems(any())).thenReturn(Mono.just(cartItems));
-        when(cartService.getItemsByItemsCounts(any())).thenReturn(Mono.just(items));
-        when(cartService.getTotalItemsSum(any())).thenReturn(Mono.just(total));
+        when(cartService.getPricedCart(any())).thenReturn(Mono.just(pricedCart));
 
         // Выполнение запроса и проверки
         webTestClient.get()
@@ -88,9 +98,7 @@ class CartControllerTest extends ControllerIntegrationTest {
 
     @Test
     void testEmptyCartRendering() {
-        when(sessionItemsCountsService.getCartItems(any())).thenReturn(Mono.just(Map.of()));
-        when(cartService.getItemsByItemsCounts(any())).thenReturn(Mono.just(List.of()));
-        when(cartService.getTotalItemsSum(any())).thenReturn(Mono.just(BigDecimal.ZERO));
+        when(cartService.getPricedCart(any())).thenReturn(Mono.just(PricedCartDto.EMPTY));
 
         webTestClient.get()
                 .uri(cartAction)
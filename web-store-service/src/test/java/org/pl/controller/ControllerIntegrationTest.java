@@ -2,6 +2,8 @@ package org.pl.controller;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.pl.service.CartService;
+import org.pl.session.InMemorySessionHashOperations;
+import org.pl.service.ItemSearchIndex;
 import org.pl.service.ItemService;
 import org.pl.service.OrderItemService;
 import org.pl.service.SessionItemsCountsService;
@@ -9,6 +11,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Import;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
 import org.springframework.security.oauth2.core.user.OAuth2User;
@@ -24,6 +27,7 @@ import static org.springframework.security.test.web.reactive.server.SecurityMock
 
 @SpringBootTest
 @AutoConfigureWebTestClient
+@Import(InMemorySessionHashOperations.class)
 public abstract class ControllerIntegrationTest {
 
     /**
@@ -49,6 +53,9 @@ public abstract class ControllerIntegrationTest {
     @MockitoBean
     protected OrderItemService orderItemService;
 
+    @MockitoBean
+    protected ItemSearchIndex itemSearchIndex;
+
     /**
      * Настраивает WebTestClient с OAuth2 аутентификацией перед каждым тестом.
      * По умолчанию все запросы идут от имени аутентифицированного пользователя.
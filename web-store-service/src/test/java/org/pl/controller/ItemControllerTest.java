@@ -2,9 +2,21 @@ package org.pl.controller;
 
 import org.junit.jupiter.api.Test;
 import org.pl.dao.Item;
+import org.pl.dto.ItemCacheStatsDto;
+import org.pl.repository.ItemSort;
+import org.pl.service.ItemCursor;
+import org.pl.session.InMemorySessionHashOperations;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.MediaType;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.server.WebSession;
+import org.springframework.web.server.session.WebSessionStore;
 import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
@@ -19,6 +31,12 @@ import static org.mockito.Mockito.when;
 
 class ItemControllerTest extends ControllerIntegrationTest {
 
+    @Autowired
+    private WebSessionStore webSessionStore;
+
+    @Autowired
+    private InMemorySessionHashOperations sessionHashOperations;
+
     @Test
     void shouldRedirectToLogin_WhenAccessingItemsWithoutAuth() {
         unauthenticatedClient().get()
@@ -80,6 +98,21 @@ class ItemControllerTest extends ControllerIntegrationTest {
                 });
     }
 
+    @Test
+    void getCacheStats_shouldReturnHitRatiosPerTier() {
+        when(itemService.getCacheStats())
+                .thenReturn(new ItemCacheStatsDto(10, 90, 10, 0.9, 8, 2, 0.8));
+
+        webTestClient.get()
+                .uri("/items/cache-stats")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_JSON)
+                .expectBody()
+                .jsonPath("$.localHitRatio").isEqualTo(0.9)
+                .jsonPath("$.remoteHitRatio").isEqualTo(0.8);
+    }
+
     @Test
     void getItemsSorted_withSearchAndChunking_shouldWorkCorrectly() {
         List<Item> macItems = List.of(
@@ -261,6 +294,60 @@ class ItemControllerTest extends ControllerIntegrationTest {
                 });
     }
 
+    @Test
+    void getItemsSorted_withAfterCursor_shouldUseKeysetPagingAndLinkNextCursor() {
+        List<Item> items = createTestItems(4);
+        var slice = new SliceImpl<>(
+                List.of(items.subList(0, 3), items.subList(3, 4)),
+                PageRequest.of(2, 4),
+                true
+        );
+
+        when(itemService.getItemsAfter(eq("cursor"), any(), eq("NO"), eq(null))).thenReturn(Mono.just(slice));
+        when(sessionItemsCountsService.getCartItems(any())).thenReturn(Mono.just(Map.of()));
+        when(sessionItemsCountsService.checkItemsCount(any())).thenReturn(Mono.just(0));
+
+        webTestClient.get()
+                .uri("/items?pageNumber=3&pageSize=4&after=cursor")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .value(html -> {
+                    assertThat(html).contains("Item 1").contains("Item 4");
+                    // Общее число страниц при keyset-пагинации неизвестно
+                    assertThat(html).contains("Страница: 3<");
+                    assertThat(html).contains("after=" + ItemCursor.of(ItemSort.NO, items.get(3)).encode());
+                });
+    }
+
+    @Test
+    void catalogPages_shouldNotWriteSession() {
+        List<Item> items = createTestItems(3);
+        when(itemService.getItemsSorted(any(), eq("NO"), eq(null)))
+                .thenReturn(Mono.just(new PageImpl<>(List.of(items), PageRequest.of(0, 5), items.size())));
+        when(itemService.getItemById(1L)).thenReturn(Mono.just(items.getFirst()));
+        when(sessionItemsCountsService.getCartItems(any())).thenReturn(Mono.just(Map.of(1L, 2)));
+        when(sessionItemsCountsService.checkItemsCount(any())).thenReturn(Mono.just(2));
+
+        // Сессия после входа через Keycloak: SecurityContext уже сохранён в хранилище
+        WebSession session = webSessionStore.createWebSession().block();
+        OAuth2User user = createTestOAuth2User();
+        session.getAttributes().put("SPRING_SECURITY_CONTEXT", new SecurityContextImpl(
+                new OAuth2AuthenticationToken(user, user.getAuthorities(), "keycloak")));
+        session.save().block();
+        int savesBefore = sessionHashOperations.getWrittenFields().size();
+
+        WebTestClient client = unauthenticatedClient().mutate()
+                .defaultCookie("SESSION", session.getId())
+                .build();
+        for (int i = 0; i < 3; i++) {
+            client.get().uri("/items").exchange().expectStatus().isOk();
+            client.get().uri("/items/1").exchange().expectStatus().isOk();
+        }
+
+        assertThat(sessionHashOperations.getWrittenFields()).hasSize(savesBefore);
+    }
+
     private Item createItem(Long id, String title, String imgPath, String price) {
         Item item = new Item(
                 title,
@@ -284,4 +371,4 @@ class ItemControllerTest extends ControllerIntegrationTest {
         }
         return items;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,68 @@
+package org.pl.controller;
+
+import org.junit.jupiter.api.Test;
+import org.pl.dao.Item;
+import org.springframework.http.MediaType;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class PublicItemControllerTest extends ControllerIntegrationTest {
+
+    @Test
+    void getItemById_shouldReadItemOnceThroughItemService() {
+        Item item = new Item("Laptop Pro", "img1.jpg", new BigDecimal("999.99"), "Мощный ноутбук");
+        item.setId(1L);
+        when(itemService.getItemById(1L)).thenReturn(Mono.just(item));
+
+        unauthenticatedClient().get()
+                .uri("/public/items/1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .value(body -> assertThat(body).contains("Laptop Pro"));
+
+        verify(itemService, times(1)).getItemById(1L);
+    }
+
+    @Test
+    void suggest_shouldReturnTitlesFromIndexWithoutAuth() {
+        when(itemSearchIndex.suggest("mac", 10))
+                .thenReturn(List.of("MacBook Air M2", "MacBook Pro 16"));
+
+        unauthenticatedClient().get()
+                .uri("/public/items/suggest?q=mac")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_JSON)
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[0]").isEqualTo("MacBook Air M2");
+
+        verifyNoInteractions(itemService);
+    }
+
+    @Test
+    void suggest_shouldCapLimit() {
+        when(itemSearchIndex.suggest(anyString(), eq(20))).thenReturn(List.of());
+
+        unauthenticatedClient().get()
+                .uri("/public/items/suggest?q=a&limit=1000")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(0);
+
+        verify(itemSearchIndex).suggest("a", 20);
+    }
+}
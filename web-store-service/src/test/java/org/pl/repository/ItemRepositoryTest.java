@@ -1,6 +1,8 @@
 package org.pl.repository;
 
 import org.junit.jupiter.api.Test;
+import org.pl.dao.Item;
+import org.pl.service.ItemSearchIndex;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.data.r2dbc.DataR2dbcTest;
 import org.springframework.test.annotation.DirtiesContext;
@@ -8,6 +10,8 @@ import org.springframework.test.context.TestPropertySource;
 import reactor.test.StepVerifier;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 
@@ -41,5 +45,107 @@ class ItemRepositoryTest {
                 })
                 .verifyComplete();
     }
-}
 
+    @Test
+    void findByIdIn_shouldLoadAllRequestedItemsInOneQuery() {
+        StepVerifier.create(itemRepository.findByIdIn(List.of(1L, 3L, 5L, 100_000L))
+                        .map(Item::getId)
+                        .sort()
+                        .collectList())
+                .assertNext(ids -> assertThat(ids).isEqualTo(List.of(1L, 3L, 5L)))
+                .verifyComplete();
+    }
+
+    @Test
+    void findPage_shouldReturnOnlyRequestedPageSortedByPrice() {
+        StepVerifier.create(itemRepository.findPage(null, ItemSort.PRICE_ASC, 0, 5).collectList())
+                .assertNext(items -> {
+                    assertThat(items.size()).isEqualTo(5);
+                    for (int i = 1; i < items.size(); i++) {
+                        assertThat(items.get(i - 1).getPrice().compareTo(items.get(i).getPrice()))
+                                .isLessThanOrEqualTo(0);
+                    }
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void findPage_shouldApplyOffsetAfterSorting() {
+        StepVerifier.create(itemRepository.findPage(null, ItemSort.PRICE_DESC, 0, 3)
+                        .concatWith(itemRepository.findPage(null, ItemSort.PRICE_DESC, 3, 3))
+                        .collectList())
+                .assertNext(items -> {
+                    assertThat(items.size()).isEqualTo(6);
+                    for (int i = 1; i < items.size(); i++) {
+                        assertThat(items.get(i - 1).getPrice().compareTo(items.get(i).getPrice()))
+                                .isGreaterThanOrEqualTo(0);
+                    }
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void findPage_withTitle_shouldFilterAndSortAlphabetically() {
+        StepVerifier.create(itemRepository.findPage("macbook pro", ItemSort.ALPHA_DESC, 0, 10))
+                .assertNext(item -> assertThat(item.getTitle()).isEqualTo("MacBook Pro 16\" M5"))
+                .assertNext(item -> assertThat(item.getTitle()).isEqualTo("MacBook Pro 16\" M2 Pro"))
+                .verifyComplete();
+    }
+
+    @Test
+    void findPageWithTotal_shouldFindSameItemsAsSearchIndex() {
+        ItemSearchIndex index = new ItemSearchIndex(itemRepository);
+        itemRepository.findAll().doOnNext(index::index).blockLast();
+
+        // "ноутбук" есть только в описаниях, "apple ноутбук" требует оба токена
+        for (String query : List.of("ноутбук", "apple ноутбук", "apple", "MacBook Pro", "!!!")) {
+            List<Long> expected = index.search(query, ItemSort.PRICE_ASC, 0, 1000).items().stream()
+                    .map(Item::getId)
+                    .toList();
+            StepVerifier.create(itemRepository.findPageWithTotal(query, ItemSort.PRICE_ASC, 0, 1000))
+                    .assertNext(counted -> {
+                        assertThat(counted.items().stream().map(Item::getId).toList()).isEqualTo(expected);
+                        assertThat(counted.totalCount()).isEqualTo((long) expected.size());
+                    })
+                    .verifyComplete();
+        }
+    }
+
+    @Test
+    void findPageAfter_shouldWalkCatalogInSameOrderAsOffsetPaging() {
+        List<Item> offsetOrder = itemRepository.findPage(null, ItemSort.PRICE_DESC, 0, 1000).collectList().block();
+
+        List<Item> keysetOrder = new ArrayList<>();
+        List<Item> page = itemRepository.findPage(null, ItemSort.PRICE_DESC, 0, 4).collectList().block();
+        while (!page.isEmpty()) {
+            keysetOrder.addAll(page);
+            Item last = page.getLast();
+            page = itemRepository.findPageAfter(null, ItemSort.PRICE_DESC, last.getPrice(), last.getId(), 4)
+                    .collectList().block();
+        }
+
+        assertThat(keysetOrder.stream().map(Item::getId).toList())
+                .isEqualTo(offsetOrder.stream().map(Item::getId).toList());
+    }
+
+    @Test
+    void findPageWithTotal_shouldReturnPageAndTotalMatchCountInOneQuery() {
+        StepVerifier.create(itemRepository.findPageWithTotal("macbook", ItemSort.PRICE_ASC, 0, 1))
+                .assertNext(result -> {
+                    assertThat(result.items().size()).isEqualTo(1);
+                    assertThat(result.items().getFirst().getTitle()).containsIgnoringCase("macbook");
+                    assertThat(result.totalCount()).isGreaterThanOrEqualTo(2L);
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void findPageWithTotal_beyondLastPage_shouldStillReturnTotal() {
+        StepVerifier.create(itemRepository.findPageWithTotal("MacBook Pro", ItemSort.NO, 10, 5))
+                .assertNext(result -> {
+                    assertThat(result.items().isEmpty()).isTrue();
+                    assertThat(result.totalCount()).isEqualTo(2L);
+                })
+                .verifyComplete();
+    }
+}
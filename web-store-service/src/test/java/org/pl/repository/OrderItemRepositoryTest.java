@@ -1,12 +1,15 @@
 package org.pl.repository;
 
 import org.junit.jupiter.api.Test;
+import org.pl.dao.OrderItem;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.data.r2dbc.DataR2dbcTest;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.TestPropertySource;
 import reactor.test.StepVerifier;
 
+import java.util.List;
+
 @DataR2dbcTest
 @TestPropertySource(properties = {
         "spring.sql.init.mode=always",
@@ -30,5 +33,34 @@ class OrderItemRepositoryTest {
                 .expectNextMatches(count -> count >= 5)
                 .verifyComplete();
     }
-}
 
+    @Test
+    void insertAll_shouldInsertAllRowsInOneBatch() {
+        List<OrderItem> orderItems = List.of(
+                new OrderItem(3L, 2L, 1),
+                new OrderItem(3L, 7L, 4),
+                new OrderItem(3L, 9L, 2)
+        );
+        long before = orderItemRepository.findByOrderIdWithAssociations(3L).count().block();
+
+        StepVerifier.create(orderItemRepository.insertAll(orderItems))
+                .expectNext(3L)
+                .verifyComplete();
+
+        StepVerifier.create(orderItemRepository.findByOrderIdWithAssociations(3L)
+                        .filter(oi -> oi.getItemId().equals(7L))
+                        .map(OrderItem::getQuantity))
+                .expectNext(4)
+                .verifyComplete();
+        StepVerifier.create(orderItemRepository.findByOrderIdWithAssociations(3L).count())
+                .expectNext(before + 3)
+                .verifyComplete();
+    }
+
+    @Test
+    void insertAll_withEmptyList_shouldNotTouchDatabase() {
+        StepVerifier.create(orderItemRepository.insertAll(List.of()))
+                .expectNext(0L)
+                .verifyComplete();
+    }
+}
@@ -1,12 +1,18 @@
 package org.pl.repository;
 
 import org.junit.jupiter.api.Test;
+import org.pl.dao.Order;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.data.r2dbc.DataR2dbcTest;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.TestPropertySource;
 import reactor.test.StepVerifier;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
 @DataR2dbcTest
 @TestPropertySource(properties = {
         "spring.sql.init.mode=always",
@@ -18,10 +24,22 @@ class OrderRepositoryTest {
     private OrderRepository orderRepository;
 
     @Test
-    void findLastOrderNumber_shouldReturnLatestByDate() {
-        StepVerifier.create(orderRepository.findLastOrderNumber())
-                .expectNext("ORD-2024-005")
+    void findAllById_shouldReturnRequestedOrders() {
+        StepVerifier.create(orderRepository.findAllById(List.of(1L, 5L)).map(Order::getOrderNumber).collectList())
+                .expectNextMatches(numbers -> numbers.size() == 2
+                        && numbers.containsAll(List.of("ORD-2024-001", "ORD-2024-005")))
                 .verifyComplete();
     }
-}
 
+    @Test
+    void findMaxOrderSequence_shouldCompareNumbersNotStrings() {
+        StepVerifier.create(orderRepository.save(
+                        new Order("ORD-2031-1000", new BigDecimal("1.00"), LocalDateTime.now(), UUID.randomUUID()))
+                        .then(orderRepository.save(
+                                new Order("ORD-2031-999", new BigDecimal("1.00"), LocalDateTime.now(), UUID.randomUUID())))
+                        .then(orderRepository.findMaxOrderSequence("ORD-2031-")))
+                .expectNext(1000L)
+                .verifyComplete();
+        StepVerifier.create(orderRepository.findMaxOrderSequence("ORD-2032-")).verifyComplete();
+    }
+}
@@ -0,0 +1,74 @@
+package org.pl.service;
+
+import org.junit.jupiter.api.Test;
+import org.pl.exception.BalanceServiceException;
+import org.pl.webstore.client.payment.api.DefaultApi;
+import org.pl.webstore.client.payment.model.BalanceResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BalanceServiceTest {
+
+    private final DefaultApi defaultApi = mock(DefaultApi.class);
+    private final BalanceService balanceService = new BalanceService(defaultApi, 2, 120, 5000);
+    private final MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/buy"));
+
+    @Test
+    void refund_whenBalanceChangedConcurrently_shouldRereadAndRetryWithFreshVersion() {
+        when(defaultApi.getUserBalance(1L))
+                .thenReturn(Mono.just(balance("100.00", 3L)))
+                .thenReturn(Mono.just(balance("40.00", 4L)));
+        when(defaultApi.updateUserBalance(eq(1L), any(), eq("\"3\""))).thenReturn(Mono.error(preconditionFailed()));
+        when(defaultApi.updateUserBalance(eq(1L), any(), eq("\"4\""))).thenReturn(Mono.just(balance("65.00", 5L)));
+
+        StepVerifier.create(balanceService.refund(new BigDecimal("25.00"), exchange))
+                .assertNext(response -> assertThat(response.getVersion()).isEqualTo(5L))
+                .verifyComplete();
+
+        // Повтор считает новый баланс от перечитанного значения, а не от устаревшего
+        verify(defaultApi).updateUserBalance(eq(1L),
+                argThat(request -> request.getBalance().compareTo(new BigDecimal("65.00")) == 0), eq("\"4\""));
+    }
+
+    @Test
+    void update_whenConflictPersists_shouldGiveUpAfterMaxRetries() {
+        when(defaultApi.getUserBalance(1L)).thenReturn(Mono.just(balance("100.00", 3L)));
+        when(defaultApi.updateUserBalance(eq(1L), any(), anyString())).thenReturn(Mono.error(preconditionFailed()));
+
+        StepVerifier.create(balanceService.update(balance -> balance.add(BigDecimal.ONE), exchange))
+                .expectError(BalanceServiceException.class)
+                .verify();
+
+        verify(defaultApi, times(3)).updateUserBalance(eq(1L), any(), anyString());
+    }
+
+    private static WebClientResponseException preconditionFailed() {
+        return WebClientResponseException.create(
+                412, "Precondition Failed", HttpHeaders.EMPTY, new byte[0], StandardCharsets.UTF_8);
+    }
+
+    private static BalanceResponse balance(String amount, long version) {
+        BalanceResponse balanceResponse = new BalanceResponse();
+        balanceResponse.setUserId(1L);
+        balanceResponse.setBalance(new BigDecimal(amount));
+        balanceResponse.setVersion(version);
+        return balanceResponse;
+    }
+}
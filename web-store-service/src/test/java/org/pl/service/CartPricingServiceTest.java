@@ -0,0 +1,77 @@
+package org.pl.service;
+
+import org.junit.jupiter.api.Test;
+import org.pl.dao.Item;
+import org.pl.dto.PricedCartDto;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class CartPricingServiceTest {
+
+    private final ItemService itemService = mock(ItemService.class);
+    private final CartPricingService cartPricingService =
+            new CartPricingService(itemService, mock(SessionItemsCountsService.class));
+
+    @Test
+    void price_shouldLoadItemsOnceAndComputeSubtotalsAndTotal() {
+        when(itemService.getItemByIds(any())).thenReturn(Flux.just(
+                createItem(3L, "249.99"),
+                createItem(1L, "2499.99")
+        ));
+
+        StepVerifier.create(cartPricingService.price(Map.of(1L, 2, 3L, 1)))
+                .assertNext(pricedCart -> {
+                    assertThat(pricedCart.quantities()).containsExactly(Map.entry(1L, 2), Map.entry(3L, 1));
+                    assertThat(pricedCart.lines().getFirst().subtotal()).isEqualByComparingTo("4999.98");
+                    assertThat(pricedCart.totalCount()).isEqualTo(3);
+                    assertThat(pricedCart.totalSum()).isEqualByComparingTo("5249.97");
+                    assertThat(pricedCart.missingItemIds()).isEmpty();
+                })
+                .verifyComplete();
+
+        verify(itemService, times(1)).getItemByIds(argThat((Collection<Long> ids) -> Set.copyOf(ids).equals(Set.of(1L, 3L))));
+    }
+
+    @Test
+    void price_shouldSkipZeroQuantitiesAndReportMissingItems() {
+        when(itemService.getItemByIds(any())).thenReturn(Flux.just(createItem(1L, "10.00"), createItem(2L, "5.00")));
+
+        StepVerifier.create(cartPricingService.price(Map.of(1L, 1, 2L, 0, 7L, 4)))
+                .assertNext(pricedCart -> {
+                    assertThat(pricedCart.quantities()).containsOnlyKeys(1L);
+                    assertThat(pricedCart.missingItemIds()).containsExactly(7L);
+                    assertThat(pricedCart.totalSum()).isEqualByComparingTo("10.00");
+                    assertThat(pricedCart.isEmpty()).isFalse();
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void price_emptyCart_shouldNotLoadItems() {
+        StepVerifier.create(cartPricingService.price(Map.of()))
+                .expectNext(PricedCartDto.EMPTY)
+                .verifyComplete();
+
+        verifyNoInteractions(itemService);
+    }
+
+    private Item createItem(Long id, String price) {
+        Item item = new Item("Item " + id, "img.jpg", new BigDecimal(price), "Description");
+        item.setId(id);
+        return item;
+    }
+}
@@ -0,0 +1,256 @@
+package org.pl.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.pl.dao.Item;
+import org.pl.dao.Order;
+import org.pl.dto.PricedCartDto;
+import org.pl.dto.PricedCartLineDto;
+import org.pl.exception.BalanceServiceException;
+import org.pl.exception.HoldExpiredException;
+import org.pl.exception.InsufficientFundsException;
+import org.pl.exception.OrderCreationException;
+import org.pl.webstore.client.payment.api.DefaultApi;
+import org.pl.webstore.client.payment.model.BalanceResponse;
+import org.pl.webstore.client.payment.model.ErrorResponse;
+import org.pl.webstore.client.payment.model.HoldResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CartServiceTest {
+
+    private static final UUID USER_ID = UUID.randomUUID();
+    private static final UUID HOLD_ID = UUID.randomUUID();
+
+    private final CartPricingService cartPricingService = mock(CartPricingService.class);
+    private final OrderService orderService = mock(OrderService.class);
+    private final OrderItemService orderItemService = mock(OrderItemService.class);
+    private final SessionItemsCountsService sessionItemsCountsService = mock(SessionItemsCountsService.class);
+    private final DefaultApi defaultApi = mock(DefaultApi.class);
+    private final TransactionalOperator transactionalOperator = mock(TransactionalOperator.class);
+    private final CartService cartService = new CartService(
+            cartPricingService, orderService, orderItemService, sessionItemsCountsService,
+            new BalanceService(defaultApi, 3, 120, 100), transactionalOperator);
+
+    private final MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/buy"));
+    private PricedCartDto pricedCart;
+    private Order order;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        Item item = new Item("Keychron K2", "img.jpg", new BigDecimal("89.99"), "Клавиатура");
+        item.setId(15L);
+        pricedCart = new PricedCartDto(
+                List.of(new PricedCartLineDto(item, 2, new BigDecimal("179.98"))),
+                Set.of(), 2, new BigDecimal("179.98"));
+        order = new Order("ORD-2026-001", new BigDecimal("179.98"), LocalDateTime.now(), USER_ID);
+        order.setId(42L);
+
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(cartPricingService.priceCart(exchange)).thenReturn(Mono.just(pricedCart));
+        when(orderService.createOrder(any(), eq(USER_ID))).thenReturn(Mono.just(order));
+        when(orderService.deleteOrder(order)).thenReturn(Mono.empty());
+        when(orderItemService.saveOrder(order, pricedCart)).thenReturn(Mono.empty());
+        when(sessionItemsCountsService.clearCartItems(exchange)).thenReturn(Mono.empty());
+        when(defaultApi.holdUserBalance(eq(1L), any())).thenReturn(Mono.just(hold()));
+        when(defaultApi.captureHold(HOLD_ID)).thenReturn(Mono.just(balance("820.02")));
+        when(defaultApi.releaseHold(HOLD_ID)).thenReturn(Mono.empty());
+    }
+
+    @Test
+    void createSaveOrders_shouldHoldBeforeTransactionAndCaptureAfterCommit() {
+        StepVerifier.create(cartService.createSaveOrders(exchange, USER_ID))
+                .assertNext(savedOrder -> assertThat(savedOrder.getId()).isEqualTo(42L))
+                .verifyComplete();
+
+        InOrder inOrder = inOrder(defaultApi, orderService, orderItemService, sessionItemsCountsService);
+        inOrder.verify(defaultApi).holdUserBalance(eq(1L),
+                argThat(request -> request.getAmount().compareTo(new BigDecimal("179.98")) == 0));
+        inOrder.verify(orderService).createOrder(any(), eq(USER_ID));
+        inOrder.verify(orderItemService).saveOrder(order, pricedCart);
+        inOrder.verify(defaultApi).captureHold(HOLD_ID);
+        inOrder.verify(sessionItemsCountsService).clearCartItems(exchange);
+        verify(defaultApi, never()).releaseHold(any());
+    }
+
+    @Test
+    void createSaveOrders_whenFundsCannotBeHeld_shouldFailWithInsufficientFundsAndWriteNothing() {
+        ErrorResponse errorResponse = new ErrorResponse();
+        errorResponse.setCode("INSUFFICIENT_FUNDS");
+        errorResponse.setMessage("Недостаточно средств");
+        errorResponse.setBalance(new BigDecimal("100.00"));
+        WebClientResponseException conflict = WebClientResponseException.create(
+                409, "Conflict", HttpHeaders.EMPTY, new byte[0], StandardCharsets.UTF_8);
+        conflict.setBodyDecodeFunction(type -> errorResponse);
+        when(defaultApi.holdUserBalance(anyLong(), any())).thenReturn(Mono.error(conflict));
+
+        StepVerifier.create(cartService.createSaveOrders(exchange, USER_ID))
+                .expectErrorSatisfies(e -> {
+                    assertThat(e).isInstanceOf(InsufficientFundsException.class);
+                    InsufficientFundsException insufficientFunds = (InsufficientFundsException) e;
+                    assertThat(insufficientFunds.getCurrentBalance()).isEqualByComparingTo("100.00");
+                    assertThat(insufficientFunds.getMissingAmount()).isEqualByComparingTo("79.98");
+                })
+                .verify();
+
+        verify(orderService, never()).createOrder(any(), any());
+        verify(sessionItemsCountsService, never()).clearCartItems(exchange);
+    }
+
+    @Test
+    void createSaveOrders_whenOrderTransactionFails_shouldReleaseHold() {
+        when(orderItemService.saveOrder(order, pricedCart))
+                .thenReturn(Mono.error(new IllegalStateException("constraint violation")));
+
+        StepVerifier.create(cartService.createSaveOrders(exchange, USER_ID))
+                .expectError(OrderCreationException.class)
+                .verify();
+
+        verify(defaultApi).releaseHold(HOLD_ID);
+        verify(defaultApi, never()).captureHold(any());
+        verify(sessionItemsCountsService, never()).clearCartItems(exchange);
+    }
+
+    @Test
+    void createSaveOrders_whenHoldIsNotFoundOnCapture_shouldDeleteOrder() {
+        when(defaultApi.captureHold(HOLD_ID)).thenReturn(Mono.error(WebClientResponseException.create(
+                404, "Not Found", HttpHeaders.EMPTY, new byte[0], StandardCharsets.UTF_8)));
+
+        StepVerifier.create(cartService.createSaveOrders(exchange, USER_ID))
+                .expectError(HoldExpiredException.class)
+                .verify();
+
+        verify(defaultApi, times(1)).captureHold(HOLD_ID);
+        verify(orderService).deleteOrder(order);
+        verify(sessionItemsCountsService, never()).clearCartItems(exchange);
+    }
+
+    @Test
+    void createSaveOrders_whenCaptureTimesOut_shouldRetryAndKeepOrder() {
+        // Первый вызов не отвечает: платёжный сервис мог уже списать резерв, повтор вернёт тот же результат
+        when(defaultApi.captureHold(HOLD_ID)).thenReturn(Mono.never(), Mono.just(balance("820.02")));
+
+        StepVerifier.create(cartService.createSaveOrders(exchange, USER_ID))
+                .expectNext(order)
+                .verifyComplete();
+
+        verify(defaultApi, times(2)).captureHold(HOLD_ID);
+        verify(orderService, never()).deleteOrder(any());
+        verify(defaultApi, never()).releaseHold(any());
+        verify(sessionItemsCountsService).clearCartItems(exchange);
+    }
+
+    @Test
+    void createSaveOrders_whenCaptureOutcomeStaysUnknown_shouldKeepOrderAndHold() {
+        when(defaultApi.captureHold(HOLD_ID)).thenReturn(Mono.error(WebClientResponseException.create(
+                503, "Service Unavailable", HttpHeaders.EMPTY, new byte[0], StandardCharsets.UTF_8)));
+
+        StepVerifier.create(cartService.createSaveOrders(exchange, USER_ID))
+                .expectErrorSatisfies(e -> assertThat(e)
+                        .isInstanceOf(BalanceServiceException.class)
+                        .isNotInstanceOf(HoldExpiredException.class))
+                .verify();
+
+        verify(defaultApi, times(4)).captureHold(HOLD_ID);
+        verify(orderService, never()).deleteOrder(any());
+        verify(defaultApi, never()).releaseHold(any());
+        verify(sessionItemsCountsService, never()).clearCartItems(exchange);
+    }
+
+    @Test
+    void createSaveOrders_whenHoldIsNotFoundAfterUnconfirmedCapture_shouldKeepOrder() {
+        // Первая попытка могла списать резерв, а платёжный сервис - перезапуститься и забыть результат
+        when(defaultApi.captureHold(HOLD_ID)).thenReturn(
+                Mono.error(WebClientResponseException.create(
+                        503, "Service Unavailable", HttpHeaders.EMPTY, new byte[0], StandardCharsets.UTF_8)),
+                Mono.error(WebClientResponseException.create(
+                        404, "Not Found", HttpHeaders.EMPTY, new byte[0], StandardCharsets.UTF_8)));
+
+        StepVerifier.create(cartService.createSaveOrders(exchange, USER_ID))
+                .expectErrorSatisfies(e -> assertThat(e)
+                        .isInstanceOf(BalanceServiceException.class)
+                        .isNotInstanceOf(HoldExpiredException.class))
+                .verify();
+
+        verify(defaultApi, times(2)).captureHold(HOLD_ID);
+        verify(orderService, never()).deleteOrder(any());
+        verify(sessionItemsCountsService, never()).clearCartItems(exchange);
+    }
+
+    @Test
+    void createSaveOrders_whenRequestIsCancelledAfterCommit_shouldStillCapture() {
+        Sinks.One<BalanceResponse> captured = Sinks.one();
+        AtomicBoolean captureCancelled = new AtomicBoolean();
+        when(defaultApi.captureHold(HOLD_ID))
+                .thenReturn(captured.asMono().doOnCancel(() -> captureCancelled.set(true)));
+
+        // Клиент закрыл соединение, пока списание ещё не ответило
+        StepVerifier.create(cartService.createSaveOrders(exchange, USER_ID))
+                .then(() -> verify(defaultApi).captureHold(HOLD_ID))
+                .thenCancel()
+                .verify();
+        assertThat(captureCancelled).isFalse();
+        assertThat(captured.tryEmitValue(balance("820.02")).isSuccess()).isTrue();
+
+        verify(orderService, never()).deleteOrder(any());
+        verify(defaultApi, never()).releaseHold(any());
+    }
+
+    @Test
+    void createSaveOrders_whenCartCannotBeClearedAfterCapture_shouldKeepPaidOrder() {
+        when(sessionItemsCountsService.clearCartItems(exchange))
+                .thenReturn(Mono.error(new IllegalStateException("Redis недоступен")));
+
+        StepVerifier.create(cartService.createSaveOrders(exchange, USER_ID))
+                .expectNext(order)
+                .verifyComplete();
+
+        verify(orderService, never()).deleteOrder(any());
+        verify(defaultApi, never()).releaseHold(any());
+    }
+
+    private static HoldResponse hold() {
+        HoldResponse holdResponse = new HoldResponse();
+        holdResponse.setHoldId(HOLD_ID);
+        holdResponse.setUserId(1L);
+        holdResponse.setAmount(new BigDecimal("179.98"));
+        holdResponse.setAvailable(new BigDecimal("820.02"));
+        return holdResponse;
+    }
+
+    private static BalanceResponse balance(String amount) {
+        BalanceResponse balanceResponse = new BalanceResponse();
+        balanceResponse.setUserId(1L);
+        balanceResponse.setBalance(new BigDecimal(amount));
+        balanceResponse.setVersion(8L);
+        return balanceResponse;
+    }
+}
@@ -0,0 +1,188 @@
+package org.pl.service;
+
+import org.junit.jupiter.api.Test;
+import org.pl.dto.CartLineChangeDto;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CartTest {
+
+    private static final int THREADS = 8;
+    private static final int ITERATIONS = 20_000;
+
+    @Test
+    void add_shouldKeepItemsSortedAndMaintainTotal() {
+        Cart cart = new Cart();
+        cart.add(5L, 2);
+        cart.add(1L, 1);
+        cart.add(3L, 4);
+
+        assertThat(cart.toMap()).containsExactlyInAnyOrderEntriesOf(Map.of(1L, 1, 3L, 4, 5L, 2));
+        assertThat(cart.totalCount()).isEqualTo(7);
+
+        assertThat(cart.add(3L, -10)).isZero();
+        assertThat(cart.get(3L)).isZero();
+        assertThat(cart.size()).isEqualTo(2);
+        assertThat(cart.totalCount()).isEqualTo(3);
+
+        assertThat(cart.add(7L, -1)).isZero();
+        assertThat(cart.size()).isEqualTo(2);
+    }
+
+    @Test
+    void compareAndSet_shouldApplyOnlyForExpectedCount() {
+        Cart cart = new Cart();
+
+        assertThat(cart.compareAndSet(1L, 0, 3)).isTrue();
+        assertThat(cart.compareAndSet(1L, 2, 5)).isFalse();
+        assertThat(cart.get(1L)).isEqualTo(3);
+        assertThat(cart.compareAndSet(1L, 3, 0)).isTrue();
+        assertThat(cart.isEmpty()).isTrue();
+        assertThat(cart.totalCount()).isZero();
+    }
+
+    @Test
+    void remove_shouldReturnPreviousCount() {
+        Cart cart = new Cart();
+        cart.add(1L, 2);
+        cart.add(2L, 1);
+
+        assertThat(cart.remove(1L)).isEqualTo(2);
+        assertThat(cart.remove(1L)).isZero();
+        assertThat(cart.totalCount()).isEqualTo(1);
+    }
+
+    @Test
+    void changeLineAndRemoveLine_shouldReportPreviousCountAndTotal() {
+        Cart cart = new Cart();
+        cart.add(2L, 3);
+
+        assertThat(cart.changeLine(1L, 1)).isEqualTo(new CartLineChangeDto(0, 1, 4));
+        assertThat(cart.changeLine(1L, -5)).isEqualTo(new CartLineChangeDto(1, 0, 3));
+        assertThat(cart.changeLine(1L, -1).appliedDelta()).isZero();
+        assertThat(cart.removeLine(2L)).isEqualTo(new CartLineChangeDto(3, 0, 0));
+        assertThat(cart.removeLine(2L)).isEqualTo(new CartLineChangeDto(0, 0, 0));
+    }
+
+    @Test
+    void concurrentAdds_shouldNotLoseUpdates() throws Exception {
+        Cart cart = new Cart();
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < ITERATIONS; i++) {
+                // Общая позиция для всех потоков и своя позиция у каждого: гонки и за счётчик, и за вставку
+                cart.add(1L, 1);
+                cart.add(100L + thread, 1);
+                if (i % 2 == 0) {
+                    cart.add(1L, -1);
+                }
+            }
+        });
+
+        assertThat(cart.get(1L)).isEqualTo(THREADS * ITERATIONS / 2);
+        for (int thread = 0; thread < THREADS; thread++) {
+            assertThat(cart.get(100L + thread)).isEqualTo(ITERATIONS);
+        }
+        assertThat(cart.totalCount()).isEqualTo(THREADS * ITERATIONS / 2 + THREADS * ITERATIONS);
+    }
+
+    @Test
+    void concurrentCompareAndSet_shouldSucceedExactlyOncePerValue() throws Exception {
+        Cart cart = new Cart();
+        AtomicInteger successes = new AtomicInteger();
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < ITERATIONS; i++) {
+                int current = cart.get(1L);
+                if (cart.compareAndSet(1L, current, current + 1)) {
+                    successes.incrementAndGet();
+                }
+            }
+        });
+
+        assertThat(cart.get(1L)).isEqualTo(successes.get());
+        assertThat(cart.totalCount()).isEqualTo(successes.get());
+    }
+
+    @Test
+    void concurrentReadsDuringWrites_shouldSeeConsistentSnapshots() throws Exception {
+        Cart cart = new Cart();
+        AtomicInteger inconsistent = new AtomicInteger();
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < ITERATIONS; i++) {
+                if (thread % 2 == 0) {
+                    cart.add(i % 50, 1);
+                    cart.add(i % 50, -1);
+                } else {
+                    Map<Long, Integer> items = cart.toMap();
+                    if (items.values().stream().anyMatch(count -> count <= 0)) {
+                        inconsistent.incrementAndGet();
+                    }
+                }
+            }
+        });
+
+        assertThat(inconsistent).hasValue(0);
+        assertThat(cart.isEmpty()).isTrue();
+        assertThat(cart.totalCount()).isZero();
+    }
+
+    @Test
+    void inMemoryCartStore_parallelReactiveChanges_shouldNotLoseUpdates() {
+        InMemoryCartStore store = new InMemoryCartStore();
+        Flux.range(0, 10).concatMap(id -> store.changeCount("user", (long) id, 1000)).blockLast();
+
+        int changes = THREADS * 1000;
+        Flux.range(0, changes)
+                .parallel(THREADS)
+                .runOn(Schedulers.parallel())
+                .flatMap(i -> store.changeCount("user", (long) (i % 10), i % 4 == 3 ? -1 : 1))
+                .sequential()
+                .blockLast();
+
+        // 3 из 4 изменений - PLUS, 1 - MINUS; начальный запас не даёт количеству упереться в ноль
+        int expected = 10 * 1000 + changes * 3 / 4 - changes / 4;
+        Map<Long, Integer> items = store.getItems("user").block();
+        assertThat(items.values().stream().mapToInt(Integer::intValue).sum()).isEqualTo(expected);
+        assertThat(store.totalCount("user").block()).isEqualTo(expected);
+    }
+
+    private void runConcurrently(ThreadBody body) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                int index = thread;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    body.run(index);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private interface ThreadBody {
+        void run(int thread);
+    }
+}
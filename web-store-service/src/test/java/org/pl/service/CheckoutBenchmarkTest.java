@@ -0,0 +1,184 @@
+package org.pl.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.pl.dao.Order;
+import org.pl.dao.OrderItem;
+import org.pl.dto.PricedCartDto;
+import org.pl.repository.ItemRepository;
+import org.pl.repository.OrderItemRepository;
+import org.pl.repository.OrderRepository;
+import org.pl.webstore.client.payment.model.BalanceResponse;
+import org.pl.webstore.client.payment.model.HoldResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.r2dbc.DataR2dbcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Время оформления заказа из всей корзины (CartService.createSaveOrders) в зависимости от размера корзины:
+ * позиции заказа построчным save (как было) против одного пакетного insertAll.
+ * Измеряется весь путь checkout на H2: расчёт корзины с загрузкой товаров из БД (кэш всегда промахивается),
+ * выдача номера заказа, транзакция с заказом и позициями. Сессия и платёжный сервис заменены моками,
+ * отвечающими сразу, поэтому сетевые вызовы Redis и платёжного сервиса в замер не входят.
+ * Запуск: ./mvnw test -pl web-store-service -Dtest=CheckoutBenchmarkTest -Dbenchmark=true
+ */
+@DataR2dbcTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@Import({
+        CartService.class,
+        CartPricingService.class,
+        ItemService.class,
+        OrderService.class,
+        OrderNumberAllocator.class,
+        InMemoryOrderNumberBlockSource.class,
+        CheckoutBenchmarkTest.PerRowSaveConfig.class
+})
+@TestPropertySource(properties = {
+        "spring.sql.init.mode=always",
+        "spring.r2dbc.url=r2dbc:h2:mem:///checkoutbenchdb;DB_CLOSE_DELAY=-1",
+        "order-number.source=memory"
+})
+class CheckoutBenchmarkTest {
+
+    private static final int[] CART_SIZES = {1, 5, 20, 100, 500};
+    private static final UUID USER_ID = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final int WARMUP = 20;
+    private static final int RUNS = 100;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @Autowired
+    private AtomicBoolean perRowSave;
+
+    @MockitoBean
+    private SessionItemsCountsService sessionItemsCountsService;
+
+    @MockitoBean
+    private BalanceService balanceService;
+
+    @MockitoBean
+    private ItemCache itemCache;
+
+    @MockitoBean
+    private ItemSearchIndex itemSearchIndex;
+
+    @MockitoBean
+    private ItemBatchLoader itemBatchLoader;
+
+    private final ServerWebExchange exchange = mock(ServerWebExchange.class);
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        HoldResponse hold = new HoldResponse();
+        hold.setHoldId(UUID.randomUUID());
+        when(balanceService.hold(any(), any())).thenReturn(Mono.just(hold));
+        when(balanceService.capture(any(), any())).thenReturn(Mono.just(new BalanceResponse()));
+        when(sessionItemsCountsService.clearCartItems(any())).thenReturn(Mono.empty());
+        when(itemCache.getAll(any(), any())).thenReturn(Flux.empty());
+        when(itemCache.loadAll(any(), any())).thenAnswer(invocation -> invocation
+                .<Function<Collection<Long>, Flux<?>>>getArgument(1)
+                .apply(invocation.getArgument(0)));
+
+        int maxCartSize = CART_SIZES[CART_SIZES.length - 1];
+        databaseClient.sql("INSERT INTO items (title, img_path, price, description) "
+                        + "SELECT CONCAT('Bench ', X), NULL, MOD(X, 1000) + 0.99, CONCAT('Description ', X) "
+                        + "FROM SYSTEM_RANGE(1, :count)")
+                .bind("count", maxCartSize)
+                .then()
+                .block();
+    }
+
+    @Test
+    void comparePerRowSaveWithBatchInsertInCheckout() {
+        List<Long> itemIds = itemRepository.findAll().map(item -> item.getId()).collectList().block();
+        System.out.printf("%-10s %15s %15s%n", "cart size", "save, мкс", "batch, мкс");
+
+        for (int size : CART_SIZES) {
+            Map<Long, Integer> cart = itemIds.stream()
+                    .limit(size)
+                    .collect(Collectors.toMap(id -> id, id -> 1 + (int) (id % 3)));
+            when(sessionItemsCountsService.getCartItems(any())).thenReturn(Mono.just(cart));
+
+            perRowSave.set(true);
+            long saveMicros = measure();
+            perRowSave.set(false);
+            long batchMicros = measure();
+
+            System.out.printf("%-10d %15d %15d%n", size, saveMicros, batchMicros);
+        }
+    }
+
+    private long measure() {
+        for (int i = 0; i < WARMUP; i++) {
+            cartService.createSaveOrders(exchange, USER_ID).block();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            cartService.createSaveOrders(exchange, USER_ID).block();
+        }
+        return (System.nanoTime() - start) / RUNS / 1_000;
+    }
+
+    /**
+     * OrderItemService, который по флагу сохраняет позиции построчно, как до пакетной вставки
+     */
+    @TestConfiguration
+    static class PerRowSaveConfig {
+
+        @Bean
+        AtomicBoolean perRowSave() {
+            return new AtomicBoolean();
+        }
+
+        @Bean
+        OrderItemService orderItemService(
+                ItemService itemService,
+                OrderItemRepository orderItemRepository,
+                OrderRepository orderRepository,
+                AtomicBoolean perRowSave
+        ) {
+            return new OrderItemService(itemService, orderItemRepository, orderRepository) {
+                @Override
+                public Mono<Void> saveOrder(Order order, PricedCartDto pricedCart) {
+                    if (!perRowSave.get()) {
+                        return super.saveOrder(order, pricedCart);
+                    }
+                    return Flux.fromIterable(pricedCart.lines())
+                            .map(line -> new OrderItem(order.getId(), line.item().getId(), line.quantity()))
+                            .concatMap(orderItemRepository::save)
+                            .then();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.pl.service;
+
+import org.junit.jupiter.api.Test;
+import org.pl.dao.Item;
+import org.pl.repository.ItemRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ItemBatchLoaderTest {
+
+    private final ItemRepository itemRepository = mock(ItemRepository.class);
+    private final AtomicInteger queries = new AtomicInteger();
+
+    @Test
+    void load_shouldCoalesceConcurrentRequestsIntoOneQuery() {
+        ItemBatchLoader loader = createLoader(20, 100);
+
+        List<Item> items = Flux.fromIterable(List.of(1L, 2L, 1L, 3L, 2L, 1L))
+                .flatMap(loader::load)
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertThat(items).extracting(Item::getId).containsExactlyInAnyOrder(1L, 2L, 1L, 3L, 2L, 1L);
+        assertThat(queries.get()).isEqualTo(1);
+    }
+
+    @Test
+    void load_shouldDispatchFullBatchWithoutWaitingForWindow() {
+        ItemBatchLoader loader = createLoader(60_000, 2);
+
+        StepVerifier.create(Mono.zip(loader.load(1L), loader.load(2L)))
+                .assertNext(tuple -> {
+                    assertThat(tuple.getT1().getId()).isEqualTo(1L);
+                    assertThat(tuple.getT2().getId()).isEqualTo(2L);
+                })
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void load_shouldCompleteEmptyForMissingItem() {
+        ItemBatchLoader loader = createLoader(1, 100);
+
+        StepVerifier.create(loader.load(404L))
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void load_shouldHandEachSubscriberItsOwnCopy() {
+        ItemBatchLoader loader = createLoader(20, 100);
+
+        StepVerifier.create(Mono.zip(loader.load(1L), loader.load(1L)))
+                .assertNext(tuple -> {
+                    assertThat(tuple.getT1()).isNotSameAs(tuple.getT2());
+                    tuple.getT1().setPrice(BigDecimal.TEN);
+                    assertThat(tuple.getT2().getPrice()).isEqualTo(BigDecimal.ONE);
+                })
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertThat(queries.get()).isEqualTo(1);
+    }
+
+    @Test
+    void load_whenRepositoryThrowsBeforeSubscribe_shouldFailWaitersAndAllowRetry() {
+        ItemBatchLoader loader = createLoader(1, 100);
+        doThrow(new IllegalStateException("пул соединений исчерпан"))
+                .doAnswer(invocation -> Flux.just(createItem(7L)))
+                .when(itemRepository).findByIdIn(any());
+
+        StepVerifier.create(loader.load(7L))
+                .expectErrorMessage("пул соединений исчерпан")
+                .verify(Duration.ofSeconds(5));
+
+        // id не застрял в inFlight: повторный запрос идёт в БД заново
+        StepVerifier.create(loader.load(7L).map(Item::getId))
+                .expectNext(7L)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    private ItemBatchLoader createLoader(long windowMillis, int maxBatchSize) {
+        when(itemRepository.findByIdIn(any())).thenAnswer(invocation -> {
+            queries.incrementAndGet();
+            Collection<Long> ids = invocation.getArgument(0);
+            return Flux.fromIterable(List.copyOf(ids))
+                    .filter(id -> id != 404L)
+                    .map(this::createItem);
+        });
+        return new ItemBatchLoader(itemRepository, windowMillis, maxBatchSize);
+    }
+
+    private Item createItem(Long id) {
+        Item item = new Item("Item " + id, "img.jpg", BigDecimal.ONE, "");
+        item.setId(id);
+        return item;
+    }
+}
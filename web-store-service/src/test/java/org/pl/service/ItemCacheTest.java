@@ -0,0 +1,238 @@
+package org.pl.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.pl.dao.Item;
+import org.pl.dto.CachedItemDto;
+import org.pl.dto.ItemCacheStatsDto;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.longThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ItemCacheTest {
+
+    private final RedisCacheItemService redisCacheItemService = mock(RedisCacheItemService.class);
+    private final Sinks.Many<Long> invalidations = Sinks.many().multicast().directBestEffort();
+    private ItemCache itemCache;
+
+    @BeforeEach
+    void setUp() {
+        when(redisCacheItemService.invalidations()).thenReturn(invalidations.asFlux());
+        when(redisCacheItemService.getCachedItem(any())).thenReturn(Mono.empty());
+        when(redisCacheItemService.saveItemToCache(any(Item.class), anyLong())).thenReturn(Mono.just(true));
+        when(redisCacheItemService.deleteItemFromCache(any())).thenReturn(Mono.just(true));
+        when(redisCacheItemService.publishInvalidation(any())).thenReturn(Mono.just(1L));
+        itemCache = new ItemCache(redisCacheItemService, 100, Duration.ofMinutes(1), 1.0);
+        itemCache.subscribeToInvalidations();
+    }
+
+    @Test
+    void get_shouldServeRepeatedReadsFromLocalTier() {
+        when(redisCacheItemService.getCachedItem(1L)).thenReturn(Mono.just(freshEntry(1L)));
+
+        for (int i = 0; i < 3; i++) {
+            StepVerifier.create(itemCache.get(1L, this::failingLoader))
+                    .assertNext(item -> assertThat(item.getId()).isEqualTo(1L))
+                    .verifyComplete();
+        }
+
+        verify(redisCacheItemService, times(1)).getCachedItem(1L);
+        ItemCacheStatsDto stats = itemCache.stats();
+        assertThat(stats.localHits()).isEqualTo(2);
+        assertThat(stats.localMisses()).isEqualTo(1);
+        assertThat(stats.remoteHits()).isEqualTo(1);
+    }
+
+    @Test
+    void get_shouldHandEachCallerItsOwnCopy() {
+        itemCache.put(createItem(5L)).block();
+
+        Item first = itemCache.get(5L, this::failingLoader).block();
+        first.setPrice(BigDecimal.TEN);
+
+        StepVerifier.create(itemCache.get(5L, this::failingLoader))
+                .assertNext(item -> assertThat(item.getPrice()).isEqualByComparingTo(BigDecimal.ONE))
+                .verifyComplete();
+    }
+
+    @Test
+    void get_whenRedisFails_shouldLoadAndCountRemoteMiss() {
+        when(redisCacheItemService.getCachedItem(2L))
+                .thenReturn(Mono.error(new IllegalStateException("Redis is down")));
+
+        StepVerifier.create(itemCache.get(2L, id -> Mono.just(createItem(id))))
+                .assertNext(item -> assertThat(item.getId()).isEqualTo(2L))
+                .verifyComplete();
+
+        assertThat(itemCache.stats().remoteMisses()).isEqualTo(1);
+        assertThat(itemCache.stats().remoteHitRatio()).isEqualTo(0.0);
+    }
+
+    @Test
+    void get_concurrentMisses_shouldRunLoaderOnce() {
+        AtomicInteger loads = new AtomicInteger();
+        Sinks.One<Item> slowLoad = Sinks.one();
+
+        List<Mono<Item>> requests = List.of(
+                itemCache.get(3L, id -> {
+                    loads.incrementAndGet();
+                    return slowLoad.asMono();
+                }),
+                itemCache.get(3L, id -> {
+                    loads.incrementAndGet();
+                    return slowLoad.asMono();
+                }),
+                itemCache.get(3L, id -> {
+                    loads.incrementAndGet();
+                    return slowLoad.asMono();
+                })
+        );
+
+        StepVerifier.create(Flux.merge(requests).count())
+                .then(() -> slowLoad.tryEmitValue(createItem(3L)))
+                .expectNext(3L)
+                .verifyComplete();
+
+        assertThat(loads.get()).isEqualTo(1);
+        verify(redisCacheItemService).saveItemToCache(any(Item.class), anyLong());
+    }
+
+    @Test
+    void get_entryCloseToExpiry_shouldBeRefreshedEarlyInBackground() {
+        CachedItemDto expiring = new CachedItemDto(createItem(4L), 1_000, System.currentTimeMillis() - 1);
+        when(redisCacheItemService.getCachedItem(4L)).thenReturn(Mono.just(expiring));
+
+        StepVerifier.create(itemCache.get(4L, id -> Mono.just(createItem(id))))
+                .assertNext(item -> assertThat(item.getId()).isEqualTo(4L))
+                .verifyComplete();
+
+        verify(redisCacheItemService, timeout(1_000)).saveItemToCache(any(Item.class), anyLong());
+    }
+
+    @Test
+    void shouldRefreshEarly_freshEntry_shouldNotRefresh() {
+        assertThat(itemCache.shouldRefreshEarly(freshEntry(5L))).isFalse();
+    }
+
+    @Test
+    void getAll_shouldAskRedisOnlyForLocalMisses() {
+        itemCache.put(createItem(1L)).block();
+        when(redisCacheItemService.getCachedItems(List.of(2L, 3L)))
+                .thenReturn(Flux.just(freshEntry(2L)));
+
+        StepVerifier.create(itemCache.getAll(List.of(1L, 2L, 3L), this::failingBatchLoader).map(Item::getId).sort())
+                .expectNext(1L, 2L)
+                .verifyComplete();
+
+        assertThat(itemCache.stats().remoteHits()).isEqualTo(1);
+        assertThat(itemCache.stats().remoteMisses()).isEqualTo(1);
+    }
+
+    @Test
+    void getAll_entriesCloseToExpiry_shouldBeRefreshedEarlyInOneBatch() {
+        CachedItemDto expiring = new CachedItemDto(createItem(4L), 1_000, System.currentTimeMillis() - 1);
+        when(redisCacheItemService.getCachedItems(List.of(4L, 5L))).thenReturn(Flux.just(expiring, freshEntry(5L)));
+        when(redisCacheItemService.saveItemsToCache(anyCollection(), anyLong())).thenReturn(Mono.empty());
+        List<Collection<Long>> batches = new CopyOnWriteArrayList<>();
+
+        StepVerifier.create(itemCache.getAll(List.of(4L, 5L), ids -> {
+                    batches.add(List.copyOf(ids));
+                    return Flux.fromIterable(ids).map(this::createItem);
+                }).map(Item::getId).sort())
+                .expectNext(4L, 5L)
+                .verifyComplete();
+
+        verify(redisCacheItemService, timeout(1_000))
+                .saveItemsToCache(argThat(items -> items.size() == 1), anyLong());
+        assertThat(batches).containsExactly(List.of(4L));
+    }
+
+    @Test
+    void loadAll_shouldStoreMeasuredBatchLoadTime() {
+        when(redisCacheItemService.saveItemsToCache(anyCollection(), anyLong())).thenReturn(Mono.empty());
+
+        StepVerifier.create(itemCache.loadAll(List.of(6L, 7L), ids -> Flux.fromIterable(ids)
+                        .map(this::createItem)
+                        .delaySubscription(Duration.ofMillis(50))))
+                .expectNextCount(2)
+                .verifyComplete();
+
+        verify(redisCacheItemService).saveItemsToCache(anyCollection(), longThat(millis -> millis >= 50));
+        StepVerifier.create(itemCache.getAll(List.of(6L, 7L), this::failingBatchLoader))
+                .expectNextCount(2)
+                .verifyComplete();
+    }
+
+    @Test
+    void invalidationMessage_shouldDropItemFromLocalTier() {
+        itemCache.put(createItem(1L)).block();
+
+        invalidations.tryEmitNext(1L);
+
+        StepVerifier.create(itemCache.get(1L, id -> Mono.empty())).verifyComplete();
+        verify(redisCacheItemService).getCachedItem(1L);
+    }
+
+    @Test
+    void evict_shouldDeleteFromRedisAndPublishInvalidation() {
+        itemCache.put(createItem(1L)).block();
+        when(redisCacheItemService.getCachedItems(anyCollection())).thenReturn(Flux.empty());
+
+        itemCache.evict(1L).block();
+
+        verify(redisCacheItemService).deleteItemFromCache(1L);
+        verify(redisCacheItemService).publishInvalidation(1L);
+        StepVerifier.create(itemCache.getAll(List.of(1L), this::failingBatchLoader)).verifyComplete();
+    }
+
+    @Test
+    void cachedEntry_shouldSurviveRedisJsonSerialization() {
+        GenericJackson2JsonRedisSerializer serializer = new GenericJackson2JsonRedisSerializer();
+        CachedItemDto entry = freshEntry(7L);
+
+        Object restored = serializer.deserialize(serializer.serialize(entry));
+
+        assertThat(restored).isInstanceOf(CachedItemDto.class);
+        assertThat(((CachedItemDto) restored).item().getTitle()).isEqualTo("Item 7");
+        assertThat(((CachedItemDto) restored).expiresAtMillis()).isEqualTo(entry.expiresAtMillis());
+    }
+
+    private Mono<Item> failingLoader(Long id) {
+        return Mono.error(new AssertionError("loader must not be called"));
+    }
+
+    private Flux<Item> failingBatchLoader(Collection<Long> ids) {
+        return Flux.error(new AssertionError("loader must not be called"));
+    }
+
+    private CachedItemDto freshEntry(Long id) {
+        return new CachedItemDto(createItem(id), 5, System.currentTimeMillis() + 60_000);
+    }
+
+    private Item createItem(Long id) {
+        Item item = new Item("Item " + id, "img.jpg", BigDecimal.ONE, "");
+        item.setId(id);
+        return item;
+    }
+}
@@ -0,0 +1,79 @@
+package org.pl.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.pl.dao.Item;
+import org.pl.repository.ItemRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.r2dbc.DataR2dbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@DataR2dbcTest
+@Import(ItemSavedCallback.class)
+@TestPropertySource(properties = {
+        "spring.sql.init.mode=always",
+        "spring.r2dbc.url=r2dbc:h2:mem:///item_saved_callback_db;DB_CLOSE_DELAY=-1"
+})
+class ItemSavedCallbackTest {
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private ReactiveTransactionManager transactionManager;
+
+    @MockitoBean
+    private ItemSearchIndex itemSearchIndex;
+
+    @MockitoBean
+    private ItemCache itemCache;
+
+    @BeforeEach
+    void setUp() {
+        when(itemCache.evict(any())).thenReturn(Mono.empty());
+    }
+
+    @Test
+    void save_inTransaction_shouldRefreshIndexAndCacheOnlyAfterCommit() {
+        TransactionalOperator transactionalOperator = TransactionalOperator.create(transactionManager);
+        Item item = new Item("Logitech MX Keys", "mx.jpg", new BigDecimal("99.99"), "Клавиатура");
+
+        StepVerifier.create(transactionalOperator.transactional(itemRepository.save(item)
+                        .doOnNext(saved -> {
+                            verify(itemSearchIndex, never()).index(any());
+                            verify(itemCache, never()).evict(any());
+                        })))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        verify(itemSearchIndex).index(argThat(indexed -> "Logitech MX Keys".equals(indexed.getTitle())));
+        verify(itemCache).evict(item.getId());
+    }
+
+    @Test
+    void save_inRolledBackTransaction_shouldLeaveIndexAndCacheUntouched() {
+        TransactionalOperator transactionalOperator = TransactionalOperator.create(transactionManager);
+        Item item = new Item("Не сохранится", "none.jpg", new BigDecimal("1.00"), "Откат");
+
+        StepVerifier.create(transactionalOperator.transactional(itemRepository.save(item)
+                        .then(Mono.error(new IllegalStateException("rollback")))))
+                .verifyError(IllegalStateException.class);
+
+        verify(itemSearchIndex, never()).index(any());
+        verify(itemCache, never()).evict(any());
+    }
+}
@@ -0,0 +1,88 @@
+package org.pl.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.pl.dao.Item;
+import org.pl.repository.ItemRepository;
+import org.pl.repository.ItemSort;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.r2dbc.DataR2dbcTest;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Сравнение поиска LIKE '%term%' в H2 и поиска по ItemSearchIndex на 10k/100k/1M товаров.
+ * Запуск: ./mvnw test -pl web-store-service -Dtest=ItemSearchBenchmarkTest -Dbenchmark=true
+ */
+@DataR2dbcTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@TestPropertySource(properties = {
+        "spring.sql.init.mode=always",
+        "spring.r2dbc.url=r2dbc:h2:mem:///benchdb;DB_CLOSE_DELAY=-1"
+})
+class ItemSearchBenchmarkTest {
+
+    private static final int[] SIZES = {10_000, 100_000, 1_000_000};
+    private static final String[] WORDS = {"laptop", "monitor", "keyboard", "mouse", "headset", "tablet", "camera"};
+    private static final String QUERY = "keyboard 42";
+    private static final int WARMUP = 5;
+    private static final int RUNS = 20;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @Test
+    void compareLikeQueryWithInMemoryIndex() {
+        long inserted = 0;
+        System.out.printf("%-10s %15s %15s%n", "items", "LIKE, мкс", "index, мкс");
+
+        for (int size : SIZES) {
+            insertItems(inserted + 1, size);
+            inserted = size;
+
+            ItemSearchIndex index = new ItemSearchIndex(itemRepository);
+            itemRepository.findAll().doOnNext(index::index).blockLast();
+
+            long likeMicros = measure(() -> itemRepository
+                    .findPageWithTotal(QUERY, ItemSort.PRICE_ASC, 0, 20)
+                    .block()
+                    .items());
+            long indexMicros = measure(() -> index.search(QUERY, ItemSort.PRICE_ASC, 0, 20).items());
+
+            System.out.printf("%-10d %15d %15d%n", size, likeMicros, indexMicros);
+        }
+    }
+
+    private void insertItems(long from, long to) {
+        StringBuilder words = new StringBuilder("CASE MOD(X, ").append(WORDS.length).append(")");
+        for (int i = 0; i < WORDS.length; i++) {
+            words.append(" WHEN ").append(i).append(" THEN '").append(WORDS[i]).append("'");
+        }
+        words.append(" END");
+
+        databaseClient.sql("INSERT INTO items (title, img_path, price, description) "
+                        + "SELECT CONCAT('Bench ', " + words + ", ' ', X), NULL, MOD(X, 1000) + 0.99, "
+                        + "CONCAT('Description ', X) FROM SYSTEM_RANGE(:from, :to)")
+                .bind("from", from)
+                .bind("to", to)
+                .then()
+                .block();
+    }
+
+    private long measure(Supplier<List<Item>> search) {
+        for (int i = 0; i < WARMUP; i++) {
+            search.get();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            search.get();
+        }
+        return (System.nanoTime() - start) / RUNS / 1_000;
+    }
+}
@@ -0,0 +1,116 @@
+package org.pl.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.pl.dao.Item;
+import org.pl.repository.ItemRepository;
+import org.pl.repository.ItemSort;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class ItemSearchIndexTest {
+
+    private ItemSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ItemSearchIndex(mock(ItemRepository.class));
+        index.index(createItem(1L, "MacBook Pro 16\" M2 Pro", "2499.99", "Ноутбук Apple"));
+        index.index(createItem(2L, "MacBook Air M2", "1299.99", "Лёгкий ноутбук"));
+        index.index(createItem(3L, "Dell XPS 13", "999.99", "Альтернатива MacBook на Windows"));
+        index.index(createItem(4L, "Logitech MX Keys", "99.99", "Клавиатура"));
+    }
+
+    @Test
+    void search_shouldMatchSubstringsOfTitleTokens() {
+        assertThat(ids(index.search("book", ItemSort.NO))).containsExactlyInAnyOrder(1L, 2L, 3L);
+        assertThat(ids(index.search("XP", ItemSort.NO))).containsExactly(3L);
+    }
+
+    @Test
+    void search_shouldRequireEveryQueryToken() {
+        assertThat(ids(index.search("macbook m2", ItemSort.NO))).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(ids(index.search("macbook keys", ItemSort.NO))).isEmpty();
+    }
+
+    @Test
+    void search_withoutSort_shouldRankTitleMatchesAboveDescriptionMatches() {
+        assertThat(ids(index.search("macbook", ItemSort.NO)).getLast()).isEqualTo(3L);
+    }
+
+    @Test
+    void search_withSort_shouldOrderLikeSql() {
+        assertThat(ids(index.search("macbook", ItemSort.PRICE_ASC))).containsExactly(3L, 2L, 1L);
+        assertThat(ids(index.search("macbook", ItemSort.ALPHA_DESC))).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    void searchPage_shouldMatchSliceOfFullResultAndReportTotal() {
+        for (long id = 10; id < 60; id++) {
+            index.index(createItem(id, "Кабель USB-C " + id, String.valueOf(100 - id), id % 2 == 0 ? "macbook" : ""));
+        }
+        for (ItemSort sort : ItemSort.values()) {
+            List<Item> all = index.search("macbook", sort);
+            for (long offset = 0; offset <= all.size(); offset += 4) {
+                ItemSearchIndex.SearchPage page = index.search("macbook", sort, offset, 4);
+                int from = (int) offset;
+                assertThat(ids(page.items())).isEqualTo(ids(all.subList(from, Math.min(from + 4, all.size()))));
+                assertThat(page.total()).isEqualTo(all.size());
+            }
+        }
+    }
+
+    @Test
+    void searchAfter_shouldContinueFromCursorInSortOrder() {
+        for (ItemSort sort : ItemSort.values()) {
+            List<Item> all = index.search("macbook", sort);
+            assertThat(ids(index.searchAfter("macbook", sort, null, 2))).isEqualTo(ids(all.subList(0, 2)));
+            ItemCursor cursor = ItemCursor.of(sort, all.get(1));
+            assertThat(ids(index.searchAfter("macbook", sort, cursor, 10))).isEqualTo(ids(all.subList(2, all.size())));
+        }
+    }
+
+    @Test
+    void index_shouldReplacePreviousVersionAndRemove() {
+        index.index(createItem(4L, "Logitech MX Master", "89.99", "Мышь"));
+        assertThat(index.search("keys", ItemSort.NO)).isEmpty();
+        assertThat(ids(index.search("master", ItemSort.NO))).containsExactly(4L);
+
+        index.remove(4L);
+        assertThat(index.search("master", ItemSort.NO)).isEmpty();
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    @Test
+    void suggest_shouldReturnTitlePrefixMatchesBeforeWordPrefixMatches() {
+        assertThat(index.suggest("MacB", 10)).containsExactly("MacBook Air M2", "MacBook Pro 16\" M2 Pro");
+        assertThat(index.suggest("pro", 10)).containsExactly("MacBook Pro 16\" M2 Pro");
+        assertThat(index.suggest("m", 10))
+                .containsExactly("MacBook Air M2", "MacBook Pro 16\" M2 Pro", "Logitech MX Keys");
+        assertThat(index.suggest("m", 1)).containsExactly("MacBook Air M2");
+        assertThat(index.suggest("  ", 10)).isEmpty();
+    }
+
+    @Test
+    void suggest_shouldFollowIndexUpdates() {
+        index.index(createItem(4L, "Logitech MX Master", "89.99", "Мышь"));
+        assertThat(index.suggest("logitech", 10)).containsExactly("Logitech MX Master");
+
+        index.remove(4L);
+        assertThat(index.suggest("logitech", 10)).isEmpty();
+    }
+
+    private List<Long> ids(List<Item> items) {
+        return items.stream().map(Item::getId).toList();
+    }
+
+    private Item createItem(Long id, String title, String price, String description) {
+        Item item = new Item(title, "img.jpg", new BigDecimal(price), description);
+        item.setId(id);
+        return item;
+    }
+}
@@ -0,0 +1,120 @@
+package org.pl.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.pl.dao.Item;
+import org.pl.repository.ItemRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.LongStream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ItemServiceTest {
+
+    private final ItemRepository itemRepository = mock(ItemRepository.class);
+    private final ItemBatchLoader itemBatchLoader = mock(ItemBatchLoader.class);
+    private final ItemCache itemCache = mock(ItemCache.class);
+    private final ItemService itemService = new ItemService(
+            itemRepository,
+            mock(ItemSearchIndex.class),
+            itemBatchLoader,
+            itemCache
+    );
+
+    @BeforeEach
+    void setUp() {
+        when(itemRepository.findByIdIn(any())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return Flux.fromIterable(List.copyOf(ids)).map(this::createItem);
+        });
+        when(itemCache.getAll(anyCollection(), any())).thenReturn(Flux.empty());
+        when(itemCache.loadAll(anyCollection(), any())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            Function<Collection<Long>, Flux<Item>> loader = invocation.getArgument(1);
+            return loader.apply(ids);
+        });
+    }
+
+    @Test
+    void getItemByIds_shouldLoadDistinctIdsInBatches() {
+        List<Long> ids = LongStream.rangeClosed(1, ItemService.ID_BATCH_SIZE + 1).boxed().toList();
+        List<Long> withDuplicates = new ArrayList<>(ids);
+        withDuplicates.addAll(ids.subList(0, 10));
+
+        StepVerifier.create(itemService.getItemByIds(withDuplicates))
+                .expectNextCount(ids.size())
+                .verifyComplete();
+
+        verify(itemRepository, times(2)).findByIdIn(any());
+        verify(itemRepository, never()).findById(any(Long.class));
+    }
+
+    @Test
+    void getItemByIds_withEmptyIds_shouldNotQuery() {
+        StepVerifier.create(itemService.getItemByIds(List.of()))
+                .verifyComplete();
+
+        verify(itemRepository, never()).findByIdIn(any());
+    }
+
+    @Test
+    void getItemByIds_shouldQueryOnlyCacheMissesAndCacheThem() {
+        when(itemCache.getAll(anyCollection(), any()))
+                .thenReturn(Flux.just(createItem(1L), createItem(3L)));
+
+        StepVerifier.create(itemService.getItemByIds(List.of(1L, 2L, 3L)).map(Item::getId).sort())
+                .expectNext(1L, 2L, 3L)
+                .verifyComplete();
+
+        verify(itemRepository).findByIdIn(List.of(2L));
+        verify(itemCache).loadAll(eq(List.of(2L)), any());
+    }
+
+    @Test
+    void getItemById_shouldNotHitDatabaseOnCacheHit() {
+        when(itemCache.get(eq(5L), any())).thenReturn(Mono.just(createItem(5L)));
+
+        StepVerifier.create(itemService.getItemById(5L).map(Item::getId))
+                .expectNext(5L)
+                .verifyComplete();
+
+        verify(itemBatchLoader, never()).load(any());
+    }
+
+    @Test
+    void getItemById_onCacheMiss_shouldLoadThroughBatchLoader() {
+        Item item = createItem(6L);
+        when(itemBatchLoader.load(6L)).thenReturn(Mono.just(item));
+        when(itemCache.get(eq(6L), any())).thenAnswer(invocation -> {
+            Function<Long, Mono<Item>> loader = invocation.getArgument(1);
+            return loader.apply(6L);
+        });
+
+        StepVerifier.create(itemService.getItemById(6L))
+                .expectNext(item)
+                .verifyComplete();
+
+        verify(itemBatchLoader).load(6L);
+    }
+
+    private Item createItem(Long id) {
+        Item item = new Item("Item " + id, "img.jpg", BigDecimal.ONE, "");
+        item.setId(id);
+        return item;
+    }
+}
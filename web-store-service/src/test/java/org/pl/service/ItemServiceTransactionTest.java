@@ -0,0 +1,86 @@
+package org.pl.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.pl.dao.Item;
+import org.pl.repository.ItemRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.r2dbc.DataR2dbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@DataR2dbcTest
+@Import(ItemService.class)
+@TestPropertySource(properties = {
+        "spring.sql.init.mode=always",
+        "spring.r2dbc.url=r2dbc:h2:mem:///item_service_transaction_db;DB_CLOSE_DELAY=-1"
+})
+class ItemServiceTransactionTest {
+
+    @Autowired
+    private ItemService itemService;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private ReactiveTransactionManager transactionManager;
+
+    @MockitoBean
+    private ItemSearchIndex itemSearchIndex;
+
+    @MockitoBean
+    private ItemBatchLoader itemBatchLoader;
+
+    @MockitoBean
+    private ItemCache itemCache;
+
+    @MockitoBean
+    private ItemSavedCallback itemSavedCallback;
+
+    @BeforeEach
+    void setUp() {
+        when(itemSavedCallback.onAfterSave(any(), any(), any()))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+    }
+
+    @Test
+    void getItemById_inTransaction_shouldReadOnTransactionConnectionBypassingCacheAndBatch() {
+        TransactionalOperator transactionalOperator = TransactionalOperator.create(transactionManager);
+        Item item = new Item("Keychron K2", "k2.jpg", new BigDecimal("79.00"), "Клавиатура");
+
+        // Незакоммиченная строка видна только на соединении транзакции
+        StepVerifier.create(transactionalOperator.transactional(itemRepository.save(item)
+                        .flatMap(saved -> itemService.getItemById(saved.getId()))
+                        .map(Item::getTitle)))
+                .expectNext("Keychron K2")
+                .verifyComplete();
+
+        verify(itemCache, never()).get(any(), any());
+        verify(itemBatchLoader, never()).load(any());
+    }
+
+    @Test
+    void getItemById_outsideTransaction_shouldGoThroughCache() {
+        Item cached = new Item("Из кэша", "cached.jpg", BigDecimal.ONE, "");
+        cached.setId(42L);
+        when(itemCache.get(eq(42L), any())).thenReturn(Mono.just(cached));
+
+        StepVerifier.create(itemService.getItemById(42L).map(Item::getTitle))
+                .expectNext("Из кэша")
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,99 @@
+package org.pl.service;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrderNumberAllocatorTest {
+
+    @Test
+    void nextOrderNumber_shouldReserveOneBlockPerBlockSizeNumbers() {
+        CountingBlockSource source = new CountingBlockSource();
+        OrderNumberAllocator allocator = allocator(source, 5, "2026-03-01T10:00:00Z");
+
+        List<String> numbers = Flux.range(0, 12).concatMap(i -> allocator.nextOrderNumber()).collectList().block();
+
+        assertThat(numbers).startsWith("ORD-2026-001", "ORD-2026-002").endsWith("ORD-2026-012");
+        assertThat(source.calls.get()).isEqualTo(3);
+    }
+
+    @Test
+    void nextOrderNumber_shouldContinuePastThreeDigits() {
+        OrderNumberAllocator allocator = allocator(new CountingBlockSource(), 1000, "2026-03-01T10:00:00Z");
+
+        String last = Flux.range(0, 1001).concatMap(i -> allocator.nextOrderNumber()).last().block();
+
+        assertThat(last).isEqualTo("ORD-2026-1001");
+    }
+
+    @Test
+    void nextOrderNumber_shouldRestartNumberingInNewYear() {
+        CountingBlockSource source = new CountingBlockSource();
+        OrderNumberAllocator allocator = allocator(source, 20, "2026-12-31T23:59:00Z");
+        allocator.nextOrderNumber().block();
+        allocator.nextOrderNumber().block();
+
+        allocator.setClock(Clock.fixed(Instant.parse("2027-01-01T00:01:00Z"), ZoneOffset.UTC));
+
+        StepVerifier.create(allocator.nextOrderNumber())
+                .expectNext("ORD-2027-001")
+                .verifyComplete();
+    }
+
+    @Test
+    void nextOrderNumber_acrossNodesSharingSource_shouldNeverRepeat() {
+        InMemoryOrderNumberBlockSource source = new InMemoryOrderNumberBlockSource();
+        OrderNumberAllocator first = allocator(source, 7, "2026-03-01T10:00:00Z");
+        OrderNumberAllocator second = allocator(source, 7, "2026-03-01T10:00:00Z");
+
+        List<String> numbers = Flux.range(0, 2000)
+                .flatMap(i -> Mono.defer(() -> (i % 2 == 0 ? first : second).nextOrderNumber())
+                        .subscribeOn(Schedulers.parallel()))
+                .collectList()
+                .block();
+
+        assertThat(numbers).hasSize(2000).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void nextOrderNumber_afterFailedReservation_shouldRetryOnNextCall() {
+        AtomicInteger calls = new AtomicInteger();
+        OrderNumberBlockSource flaky = (year, blockSize) -> calls.incrementAndGet() == 1
+                ? Mono.error(new IllegalStateException("Redis недоступен"))
+                : Mono.just((long) blockSize);
+        OrderNumberAllocator allocator = allocator(flaky, 10, "2026-03-01T10:00:00Z");
+
+        StepVerifier.create(allocator.nextOrderNumber())
+                .expectError(IllegalStateException.class)
+                .verify();
+        StepVerifier.create(allocator.nextOrderNumber())
+                .expectNext("ORD-2026-001")
+                .verifyComplete();
+    }
+
+    private OrderNumberAllocator allocator(OrderNumberBlockSource source, int blockSize, String now) {
+        OrderNumberAllocator allocator = new OrderNumberAllocator(source, blockSize);
+        allocator.setClock(Clock.fixed(Instant.parse(now), ZoneOffset.UTC));
+        return allocator;
+    }
+
+    private static class CountingBlockSource extends InMemoryOrderNumberBlockSource {
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public Mono<Long> reserve(int year, int blockSize) {
+            calls.incrementAndGet();
+            return super.reserve(year, blockSize);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package org.pl.service;
+
+import org.junit.jupiter.api.Test;
+import org.pl.repository.OrderRepository;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RedisOrderNumberBlockSourceTest {
+
+    private final ReactiveStringRedisTemplate redisTemplate = mock(ReactiveStringRedisTemplate.class);
+    private final OrderRepository orderRepository = mock(OrderRepository.class);
+    private final RedisOrderNumberBlockSource blockSource = new RedisOrderNumberBlockSource(redisTemplate, orderRepository);
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reserve_whenCounterExists_shouldNotQueryDatabase() {
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of("order-number:2026")), eq(List.of("20"))))
+                .thenReturn(Flux.just(140L));
+
+        StepVerifier.create(blockSource.reserve(2026, 20)).expectNext(140L).verifyComplete();
+
+        verify(orderRepository, never()).findMaxOrderSequence(anyString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reserve_whenCounterWasLost_shouldContinueAfterLastOrderInDatabase() {
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of("order-number:2026")), eq(List.of("20"))))
+                .thenReturn(Flux.just(-1L));
+        when(orderRepository.findMaxOrderSequence("ORD-2026-")).thenReturn(Mono.just(517L));
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of("order-number:2026")), eq(List.of("517", "20"))))
+                .thenReturn(Flux.just(537L));
+
+        StepVerifier.create(blockSource.reserve(2026, 20)).expectNext(537L).verifyComplete();
+    }
+}
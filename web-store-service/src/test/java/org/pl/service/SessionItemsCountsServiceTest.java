@@ -0,0 +1,104 @@
+package org.pl.service;
+
+import org.junit.jupiter.api.Test;
+import org.pl.dto.CartLineChangeDto;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class SessionItemsCountsServiceTest {
+
+    private static final String USER_ID = "b4f2e6d1-5555-6666-7777-888888888888";
+
+    private final CartStore cartStore = mock(CartStore.class);
+    private final SessionItemsCountsService service = new SessionItemsCountsService(cartStore);
+
+    @Test
+    void updateItemCount_shouldMapActionsToSingleStoreCommands() {
+        when(cartStore.changeCount(USER_ID, 1L, 1)).thenReturn(Mono.just(new CartLineChangeDto(0, 1, 1)));
+        when(cartStore.changeCount(USER_ID, 1L, -1)).thenReturn(Mono.just(new CartLineChangeDto(1, 0, 0)));
+        when(cartStore.remove(USER_ID, 2L)).thenReturn(Mono.just(new CartLineChangeDto(0, 0, 0)));
+
+        StepVerifier.create(service.updateItemCount(userExchange(), 1L, "PLUS")).verifyComplete();
+        StepVerifier.create(service.updateItemCount(userExchange(), 1L, "MINUS")).verifyComplete();
+        StepVerifier.create(service.updateItemCount(userExchange(), 2L, "DELETE")).verifyComplete();
+
+        verify(cartStore).changeCount(USER_ID, 1L, 1);
+        verify(cartStore).changeCount(USER_ID, 1L, -1);
+        verify(cartStore).remove(USER_ID, 2L);
+    }
+
+    @Test
+    void updateItemCount_withUnknownAction_shouldDoNothing() {
+        StepVerifier.create(service.updateItemCount(userExchange(), 1L, "UNKNOWN")).verifyComplete();
+
+        verifyNoInteractions(cartStore);
+    }
+
+    @Test
+    void changeItemCount_shouldReturnLineChangeOrRejectUnknownAction() {
+        when(cartStore.changeCount(USER_ID, 1L, 1)).thenReturn(Mono.just(new CartLineChangeDto(2, 3, 5)));
+        when(cartStore.remove(USER_ID, 1L)).thenReturn(Mono.just(new CartLineChangeDto(3, 0, 2)));
+
+        StepVerifier.create(service.changeItemCount(userExchange(), 1L, "PLUS"))
+                .expectNext(new CartLineChangeDto(2, 3, 5))
+                .verifyComplete();
+        StepVerifier.create(service.changeItemCount(userExchange(), 1L, "DELETE"))
+                .expectNext(new CartLineChangeDto(3, 0, 2))
+                .verifyComplete();
+        StepVerifier.create(service.changeItemCount(userExchange(), 1L, "UNKNOWN"))
+                .verifyError(IllegalArgumentException.class);
+    }
+
+    @Test
+    void cartOperations_shouldUseUserIdAsCartKey() {
+        when(cartStore.getItems(USER_ID)).thenReturn(Mono.just(Map.of(1L, 2)));
+        when(cartStore.totalCount(USER_ID)).thenReturn(Mono.just(2));
+
+        StepVerifier.create(service.getCartItems(userExchange()))
+                .expectNext(Map.of(1L, 2))
+                .verifyComplete();
+        StepVerifier.create(service.checkItemsCount(userExchange()))
+                .expectNext(2)
+                .verifyComplete();
+    }
+
+    @Test
+    void anonymousExchange_shouldUseSessionScopedCart() {
+        when(cartStore.totalCount(anyString())).thenReturn(Mono.just(0));
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/cart"));
+
+        StepVerifier.create(service.checkItemsCount(exchange))
+                .expectNext(0)
+                .verifyComplete();
+
+        verify(cartStore).totalCount(exchange.getSession().map(session -> "session:" + session.getId()).block());
+    }
+
+    private ServerWebExchange userExchange() {
+        DefaultOAuth2User user = new DefaultOAuth2User(
+                List.of(new SimpleGrantedAuthority("ROLE_USER")),
+                Map.of("sub", USER_ID, "preferred_username", "testuser"),
+                "preferred_username"
+        );
+        OAuth2AuthenticationToken token = new OAuth2AuthenticationToken(user, user.getAuthorities(), "keycloak");
+        return MockServerWebExchange.from(MockServerHttpRequest.get("/cart"))
+                .mutate()
+                .principal(Mono.just(token))
+                .build();
+    }
+}
@@ -0,0 +1,70 @@
+package org.pl.session;
+
+import org.springframework.context.annotation.Primary;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Замена Redis для тестов: хеши сессий в памяти, общие для всех использующих экземпляр хранилищ.
+ * Запоминает поля каждой записи, чтобы тесты могли проверить, что пишется только дельта.
+ */
+@Primary
+public class InMemorySessionHashOperations implements SessionHashOperations {
+
+    private final Map<String, Map<String, byte[]>> hashes = new ConcurrentHashMap<>();
+    private final List<Set<String>> writtenFields = new CopyOnWriteArrayList<>();
+    private final List<Set<String>> removedFields = new CopyOnWriteArrayList<>();
+
+    @Override
+    public Mono<Map<String, byte[]>> entries(String key) {
+        return Mono.fromSupplier(() -> new HashMap<>(hashes.getOrDefault(key, Map.of())));
+    }
+
+    @Override
+    public Mono<Void> write(String key, Map<String, byte[]> changed, Collection<String> removed, Duration ttl) {
+        return Mono.fromRunnable(() -> {
+            writtenFields.add(Set.copyOf(changed.keySet()));
+            removedFields.add(Set.copyOf(removed));
+            Map<String, byte[]> hash = hashes.computeIfAbsent(key, k -> new ConcurrentHashMap<>());
+            hash.putAll(changed);
+            removed.forEach(hash::remove);
+        });
+    }
+
+    @Override
+    public Mono<Boolean> rename(String oldKey, String newKey) {
+        return Mono.fromSupplier(() -> {
+            Map<String, byte[]> hash = hashes.remove(oldKey);
+            if (hash == null) {
+                return false;
+            }
+            hashes.put(newKey, hash);
+            return true;
+        });
+    }
+
+    @Override
+    public Mono<Void> delete(String key) {
+        return Mono.fromRunnable(() -> hashes.remove(key));
+    }
+
+    public boolean contains(String key) {
+        return hashes.containsKey(key);
+    }
+
+    public List<Set<String>> getWrittenFields() {
+        return writtenFields;
+    }
+
+    public List<Set<String>> getRemovedFields() {
+        return removedFields;
+    }
+}
@@ -0,0 +1,62 @@
+package org.pl.session;
+
+import io.lettuce.core.RedisCommandExecutionException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.ReactiveKeyCommands;
+import org.springframework.data.redis.connection.ReactiveRedisConnection;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.ByteBuffer;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RedisSessionHashOperationsTest {
+
+    private ReactiveKeyCommands keyCommands;
+    private RedisSessionHashOperations hashOperations;
+
+    @BeforeEach
+    void setUp() {
+        ReactiveRedisConnectionFactory factory = mock(ReactiveRedisConnectionFactory.class);
+        ReactiveRedisConnection connection = mock(ReactiveRedisConnection.class);
+        keyCommands = mock(ReactiveKeyCommands.class);
+        when(factory.getReactiveConnection()).thenReturn(connection);
+        when(connection.keyCommands()).thenReturn(keyCommands);
+        when(connection.closeLater()).thenReturn(Mono.empty());
+        hashOperations = new RedisSessionHashOperations(factory);
+    }
+
+    @Test
+    void rename_whenKeyExists_shouldReturnTrue() {
+        when(keyCommands.rename(any(ByteBuffer.class), any(ByteBuffer.class))).thenReturn(Mono.just(true));
+
+        StepVerifier.create(hashOperations.rename("session:old", "session:new"))
+                .expectNext(true)
+                .verifyComplete();
+    }
+
+    @Test
+    void rename_whenKeyIsMissing_shouldReturnFalse() {
+        when(keyCommands.rename(any(ByteBuffer.class), any(ByteBuffer.class))).thenReturn(Mono.error(
+                new RedisSystemException("Error in execution", new RedisCommandExecutionException("ERR no such key"))));
+
+        StepVerifier.create(hashOperations.rename("session:old", "session:new"))
+                .expectNext(false)
+                .verifyComplete();
+    }
+
+    @Test
+    void rename_onOtherRedisError_shouldPropagateError() {
+        when(keyCommands.rename(any(ByteBuffer.class), any(ByteBuffer.class))).thenReturn(Mono.error(
+                new RedisSystemException("Error in execution", new RedisCommandExecutionException("READONLY"))));
+
+        StepVerifier.create(hashOperations.rename("session:old", "session:new"))
+                .verifyError(RedisSystemException.class);
+    }
+}
@@ -0,0 +1,154 @@
+package org.pl.session;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.web.server.WebSession;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.pl.session.RedisWebSessionStore.*;
+
+class RedisWebSessionStoreTest {
+
+    private InMemorySessionHashOperations hashOperations;
+    private RedisWebSessionStore store;
+
+    @BeforeEach
+    void setUp() {
+        hashOperations = new InMemorySessionHashOperations();
+        store = new RedisWebSessionStore(hashOperations, Duration.ofMinutes(30), Duration.ofMinutes(1), 512);
+    }
+
+    @Test
+    void save_newSession_shouldWriteAllFields() {
+        WebSession session = store.createWebSession().block();
+        session.getAttributes().put("toastMessage", "Корзина пуста");
+        session.getAttributes().put("visits", 3);
+        session.save().block();
+
+        assertThat(hashOperations.getWrittenFields().getLast()).containsExactlyInAnyOrder(
+                CREATION_TIME, LAST_ACCESSED_TIME, MAX_IDLE_TIME,
+                ATTRIBUTE_PREFIX + "toastMessage", ATTRIBUTE_PREFIX + "visits");
+
+        WebSession restored = store.retrieveSession(session.getId()).block();
+        assertThat(restored.getAttributes())
+                .containsExactlyInAnyOrderEntriesOf(Map.of("toastMessage", "Корзина пуста", "visits", 3));
+        assertThat(restored.getCreationTime().toEpochMilli()).isEqualTo(session.getCreationTime().toEpochMilli());
+    }
+
+    @Test
+    void save_restoredSession_shouldWriteOnlyChangedAndRemovedAttributes() {
+        WebSession session = store.createWebSession().block();
+        session.getAttributes().put("toastMessage", "Заказ оформлен");
+        session.getAttributes().put("toastType", "success");
+        session.getAttributes().put("visits", 1);
+        session.save().block();
+
+        WebSession restored = store.retrieveSession(session.getId()).block();
+        restored.getAttributes().put("visits", 2);
+        restored.getAttributes().put("toastType", "success");
+        restored.getAttributes().remove("toastMessage");
+        restored.save().block();
+
+        assertThat(hashOperations.getWrittenFields().getLast())
+                .containsExactlyInAnyOrder(LAST_ACCESSED_TIME, ATTRIBUTE_PREFIX + "visits");
+        assertThat(hashOperations.getRemovedFields().getLast())
+                .containsExactly(ATTRIBUTE_PREFIX + "toastMessage");
+
+    }
+
+    @Test
+    void save_unchangedSession_shouldWriteOnlyOncePerTouchInterval() {
+        Instant now = Instant.parse("2026-01-01T10:00:00Z");
+        store.setClock(Clock.fixed(now, ZoneId.of("GMT")));
+        WebSession session = store.createWebSession().block();
+        session.getAttributes().put("visits", 1);
+        session.save().block();
+
+        store.setClock(Clock.fixed(now.plusSeconds(30), ZoneId.of("GMT")));
+        WebSession restored = store.retrieveSession(session.getId())
+                .flatMap(store::updateLastAccessTime)
+                .block();
+        restored.save().block();
+        assertThat(hashOperations.getWrittenFields()).hasSize(1);
+
+        store.setClock(Clock.fixed(now.plusSeconds(61), ZoneId.of("GMT")));
+        store.updateLastAccessTime(restored).block();
+        restored.save().block();
+        assertThat(hashOperations.getWrittenFields()).hasSize(2);
+        assertThat(hashOperations.getWrittenFields().getLast()).containsExactly(LAST_ACCESSED_TIME);
+        assertThat(hashOperations.getRemovedFields().getLast()).isEmpty();
+    }
+
+    @Test
+    void save_shouldRoundTripSecurityContext() {
+        DefaultOAuth2User user = new DefaultOAuth2User(
+                List.of(new SimpleGrantedAuthority("ROLE_USER")),
+                Map.of("sub", "b4f2e6d1-5555-6666-7777-888888888888", "preferred_username", "testuser"),
+                "preferred_username");
+        SecurityContext context = new SecurityContextImpl(
+                new OAuth2AuthenticationToken(user, user.getAuthorities(), "keycloak"));
+
+        WebSession session = store.createWebSession().block();
+        session.getAttributes().put("SPRING_SECURITY_CONTEXT", context);
+        session.save().block();
+
+        SecurityContext restored = store.retrieveSession(session.getId()).block().getAttribute("SPRING_SECURITY_CONTEXT");
+        assertThat(restored.getAuthentication().getName()).isEqualTo("testuser");
+        assertThat(((OAuth2AuthenticationToken) restored.getAuthentication()).getPrincipal().<String>getAttribute("sub"))
+                .isEqualTo("b4f2e6d1-5555-6666-7777-888888888888");
+    }
+
+    @Test
+    void retrieveSession_idleLongerThanMaxIdleTime_shouldEvictSession() {
+        Instant now = Instant.parse("2026-01-01T10:00:00Z");
+        store.setClock(Clock.fixed(now, ZoneId.of("GMT")));
+        WebSession session = store.createWebSession().block();
+        session.getAttributes().put("visits", 1);
+        session.save().block();
+
+        store.setClock(Clock.fixed(now.plus(Duration.ofMinutes(29)), ZoneId.of("GMT")));
+        assertThat(store.retrieveSession(session.getId()).block()).isNotNull();
+
+        store.setClock(Clock.fixed(now.plus(Duration.ofMinutes(31)), ZoneId.of("GMT")));
+        assertThat(store.retrieveSession(session.getId()).block()).isNull();
+        assertThat(hashOperations.contains(buildSessionKey(session.getId()))).isFalse();
+    }
+
+    @Test
+    void changeSessionId_shouldMovePersistedSession() {
+        WebSession session = store.createWebSession().block();
+        session.getAttributes().put("visits", 1);
+        session.save().block();
+        String oldId = session.getId();
+
+        session.changeSessionId().block();
+
+        assertThat(session.getId()).isNotEqualTo(oldId);
+        assertThat(store.retrieveSession(oldId).block()).isNull();
+        assertThat(store.retrieveSession(session.getId()).block().getAttributes()).containsEntry("visits", 1);
+    }
+
+    @Test
+    void invalidate_shouldDeleteSession() {
+        WebSession session = store.createWebSession().block();
+        session.getAttributes().put("visits", 1);
+        session.save().block();
+
+        session.invalidate().block();
+
+        assertThat(session.isExpired()).isTrue();
+        assertThat(hashOperations.contains(buildSessionKey(session.getId()))).isFalse();
+    }
+}
@@ -0,0 +1,121 @@
+package org.pl.session;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.pl.WebStoreApplication;
+import org.pl.service.CartStore;
+import org.pl.service.InMemoryCartStore;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.server.WebSession;
+import org.springframework.web.server.session.WebSessionStore;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Два экземпляра приложения с общим хранилищем сессий и корзин (замены Redis в памяти):
+ * пользователь, вошедший на первом экземпляре, остаётся авторизованным на втором и видит свою корзину.
+ */
+class SessionReplicationTest {
+
+    private static final String USER_ID = "b4f2e6d1-5555-6666-7777-888888888888";
+
+    private static final InMemorySessionHashOperations sessions = new InMemorySessionHashOperations();
+    private static final InMemoryCartStore carts = new InMemoryCartStore();
+
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+
+    @BeforeAll
+    static void startNodes() {
+        nodeA = startNode("node_a_db");
+        nodeB = startNode("node_b_db");
+    }
+
+    @AfterAll
+    static void stopNodes() {
+        nodeA.close();
+        nodeB.close();
+    }
+
+    @Test
+    void loginAndCart_shouldSurviveSwitchToAnotherNode() {
+        String sessionId = login(nodeA);
+
+        client(nodeA).post()
+                .uri("/items")
+                .cookie("SESSION", sessionId)
+                .body(BodyInserters.fromFormData("id", "1").with("action", "PLUS"))
+                .exchange()
+                .expectStatus().is3xxRedirection()
+                .expectHeader().valueMatches("Location", "/items.*");
+
+        client(nodeB).get()
+                .uri("/cart")
+                .cookie("SESSION", sessionId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .value(body -> assertThat(body).contains("MacBook Pro 16"));
+
+        assertThat(carts.getItems(USER_ID).block()).containsEntry(1L, 1);
+    }
+
+    @Test
+    void anonymousRequest_onAnotherNode_shouldRedirectToLogin() {
+        client(nodeB).get()
+                .uri("/cart")
+                .cookie("SESSION", "unknown-session")
+                .exchange()
+                .expectStatus().is3xxRedirection();
+    }
+
+    /**
+     * Вход эмулируется записью SecurityContext в сессию через хранилище первого экземпляра,
+     * как это делает WebSessionServerSecurityContextRepository после ответа Keycloak
+     */
+    private static String login(ConfigurableApplicationContext node) {
+        DefaultOAuth2User user = new DefaultOAuth2User(
+                List.of(new SimpleGrantedAuthority("ROLE_USER")),
+                Map.of("sub", USER_ID, "preferred_username", "testuser"),
+                "preferred_username");
+        SecurityContextImpl context = new SecurityContextImpl(
+                new OAuth2AuthenticationToken(user, user.getAuthorities(), "keycloak"));
+
+        WebSession session = node.getBean(WebSessionStore.class).createWebSession().block();
+        session.getAttributes().put("SPRING_SECURITY_CONTEXT", context);
+        session.save().block();
+        return session.getId();
+    }
+
+    private static WebTestClient client(ConfigurableApplicationContext node) {
+        int port = ((WebServerApplicationContext) node).getWebServer().getPort();
+        return WebTestClient.bindToServer().baseUrl("http://localhost:" + port).build();
+    }
+
+    private static ConfigurableApplicationContext startNode(String database) {
+        return new SpringApplicationBuilder(WebStoreApplication.class)
+                .initializers(context -> {
+                    GenericApplicationContext registry = (GenericApplicationContext) context;
+                    registry.registerBean("sharedSessionHashOperations", SessionHashOperations.class,
+                            () -> sessions, definition -> definition.setPrimary(true));
+                    registry.registerBean("sharedCartStore", CartStore.class,
+                            () -> carts, definition -> definition.setPrimary(true));
+                })
+                .run("--server.port=0",
+                        "--spring.r2dbc.url=r2dbc:h2:mem:///" + database + "?options=DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                        "--spring.datasource.url=jdbc:h2:mem:" + database);
+    }
+}